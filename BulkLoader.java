@@ -0,0 +1,355 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Batched bulk ingestion for the courier_service tables.
+// Rows are written in explicit transactions of batchSize rows, either as a JDBC batch
+// or rewritten into a single multi-row INSERT ... VALUES (...), (...) statement.
+public class BulkLoader {
+
+    public record LocationRecord(String locationName, String locationType, Integer parentLocationId,
+                                 String address) {
+    }
+
+    public record DriverRecord(String driverName, String licenseNumber, String contactPhone,
+                               String contactEmail, int maxActiveShipments) {
+    }
+
+    public record ShipmentRecord(String senderName, String senderAddress, String senderPhone,
+                                 String recipientName, String recipientAddress, String recipientPhone,
+                                 int originLocationId, int destinationLocationId, String currentStatus,
+                                 Timestamp createdAt, Timestamp estimatedDelivery, Timestamp actualDelivery) {
+    }
+
+    public record PackageRecord(int shipmentId, double weight, String contentDescription, String packageType) {
+    }
+
+    public record StatusLogRecord(int shipmentId, String statusUpdate, Integer locationId,
+                                  Timestamp updateTimestamp, String agentName, String notes) {
+    }
+
+    public record AssignmentRecord(int driverId, int shipmentId, Timestamp assignedAt,
+                                   Timestamp estimatedDelivery, String status) {
+    }
+
+    // Receives the auto-increment key generated for each row, in input order
+    public interface KeyListener<T> {
+        void onKey(T row, int generatedId) throws SQLException;
+    }
+
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, int offset, T row) throws SQLException;
+    }
+
+    // Side effects of each batch: derived rows written inside the batch's transaction,
+    // and in-process caches brought in step with the database once it has committed
+    private interface BatchHook<T> {
+        default void beforeCommit(Connection conn, List<T> rows) throws SQLException {
+        }
+
+        default void afterCommit(List<T> rows) {
+        }
+    }
+
+    private static final BatchHook<LocationRecord> LOCATION_HOOK = new BatchHook<>() {
+        @Override
+        public void afterCommit(List<LocationRecord> rows) {
+            LocationDirectory.markStale();
+        }
+    };
+
+    private static final BatchHook<DriverRecord> DRIVER_HOOK = new BatchHook<>() {
+        @Override
+        public void afterCommit(List<DriverRecord> rows) {
+            DriverAssignmentEngine.markStale();
+        }
+    };
+
+    private static final BatchHook<ShipmentRecord> SHIPMENT_HOOK = new BatchHook<>() {
+        @Override
+        public void beforeCommit(Connection conn, List<ShipmentRecord> rows) throws SQLException {
+            VolumeRollup.recordShipments(conn, rows);
+            DeliveryStats.recordDeliveries(conn, DeliveryStats.deliveriesOf(rows));
+        }
+
+        @Override
+        public void afterCommit(List<ShipmentRecord> rows) {
+            OverdueMonitor.requestSync();
+        }
+    };
+
+    private static final BatchHook<StatusLogRecord> STATUS_LOG_HOOK = new BatchHook<>() {
+        @Override
+        public void afterCommit(List<StatusLogRecord> rows) {
+            TrackingCache cache = TrackingCache.shared();
+            for (StatusLogRecord row : rows) {
+                cache.invalidate(row.shipmentId());
+            }
+        }
+    };
+
+    private static final BatchHook<AssignmentRecord> ASSIGNMENT_HOOK = new BatchHook<>() {
+        @Override
+        public void afterCommit(List<AssignmentRecord> rows) {
+            DriverAssignmentEngine.markStale();
+        }
+    };
+
+    // MySQL rejects statements with more than 65535 placeholders
+    private static final int MAX_PLACEHOLDERS = 65535;
+
+    private static final String[] LOCATION_COLUMNS = {
+        "location_name", "location_type", "parent_location_id", "address"
+    };
+    private static final String[] DRIVER_COLUMNS = {
+        "driver_name", "license_number", "contact_phone", "contact_email", "max_active_shipments"
+    };
+    private static final String[] SHIPMENT_COLUMNS = {
+        "sender_name", "sender_address", "sender_phone", "recipient_name", "recipient_address",
+        "recipient_phone", "origin_location_id", "destination_location_id", "current_status",
+        "created_at", "estimated_delivery", "actual_delivery"
+    };
+    private static final String[] PACKAGE_COLUMNS = {
+        "shipment_id", "weight", "content_description", "package_type"
+    };
+    private static final String[] STATUS_LOG_COLUMNS = {
+        "shipment_id", "status_update", "location_id", "update_timestamp", "agent_name", "notes"
+    };
+    private static final String[] ASSIGNMENT_COLUMNS = {
+        "driver_id", "shipment_id", "assigned_at", "estimated_delivery", "status"
+    };
+
+    private final Connection conn;
+    private final int batchSize;
+    private final boolean multiRowInserts;
+
+    public BulkLoader(Connection conn, int batchSize, boolean multiRowInserts) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.conn = conn;
+        this.batchSize = batchSize;
+        this.multiRowInserts = multiRowInserts;
+    }
+
+    public long loadLocations(Iterator<? extends LocationRecord> rows,
+                              KeyListener<? super LocationRecord> keys) throws SQLException {
+        return load(rows, "locations", LOCATION_COLUMNS, BulkLoader::bindLocation, keys, LOCATION_HOOK);
+    }
+
+    public long loadDrivers(Iterator<? extends DriverRecord> rows,
+                            KeyListener<? super DriverRecord> keys) throws SQLException {
+        return load(rows, "drivers", DRIVER_COLUMNS, BulkLoader::bindDriver, keys, DRIVER_HOOK);
+    }
+
+    public long loadShipments(Iterator<? extends ShipmentRecord> rows,
+                              KeyListener<? super ShipmentRecord> keys) throws SQLException {
+        return load(rows, "shipments", SHIPMENT_COLUMNS, BulkLoader::bindShipment, keys, SHIPMENT_HOOK);
+    }
+
+    public long loadPackages(Iterator<? extends PackageRecord> rows) throws SQLException {
+        return load(rows, "packages", PACKAGE_COLUMNS, BulkLoader::bindPackage, null, null);
+    }
+
+    public long loadStatusLogs(Iterator<? extends StatusLogRecord> rows) throws SQLException {
+        return load(rows, "status_logs", STATUS_LOG_COLUMNS, BulkLoader::bindStatusLog, null, STATUS_LOG_HOOK);
+    }
+
+    public long loadAssignments(Iterator<? extends AssignmentRecord> rows) throws SQLException {
+        return load(rows, "driver_assignments", ASSIGNMENT_COLUMNS, BulkLoader::bindAssignment, null, ASSIGNMENT_HOOK);
+    }
+
+    // Each batch commits on its own; a failure rolls back only the batch in flight
+    private <T> long load(Iterator<? extends T> rows, String table, String[] columns,
+                          Binder<T> binder, KeyListener<? super T> keys,
+                          BatchHook<T> hook) throws SQLException {
+        int rowsPerStatement = multiRowInserts
+            ? Math.min(batchSize, MAX_PLACEHOLDERS / columns.length)
+            : batchSize;
+        int keyMode = keys != null ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS;
+
+        boolean previousAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+
+        List<T> pending = new ArrayList<>(rowsPerStatement);
+        long loaded = 0;
+        String operation = "load." + table;
+
+        try (PreparedStatement full = conn.prepareStatement(
+                 insertSql(table, columns, multiRowInserts ? rowsPerStatement : 1), keyMode)) {
+            while (rows.hasNext()) {
+                pending.add(rows.next());
+                if (pending.size() == rowsPerStatement) {
+                    flush(full, pending, columns.length, binder, keys, hook, operation);
+                    loaded += pending.size();
+                    pending.clear();
+                }
+            }
+
+            if (!pending.isEmpty()) {
+                if (multiRowInserts) {
+                    try (PreparedStatement tail = conn.prepareStatement(
+                             insertSql(table, columns, pending.size()), keyMode)) {
+                        flush(tail, pending, columns.length, binder, keys, hook, operation);
+                    }
+                } else {
+                    flush(full, pending, columns.length, binder, keys, hook, operation);
+                }
+                loaded += pending.size();
+            }
+        } catch (Throwable e) {
+            // Whatever failed (a binder, listener, hook or the row source), the batch in
+            // flight must be rolled back here: restoring autocommit would commit it
+            try {
+                conn.rollback();
+            } catch (SQLException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        } finally {
+            conn.setAutoCommit(previousAutoCommit);
+        }
+
+        return loaded;
+    }
+
+    private <T> void flush(PreparedStatement ps, List<T> pending, int columnCount,
+                           Binder<T> binder, KeyListener<? super T> keys,
+                           BatchHook<T> hook, String operation) throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start(operation);
+        try {
+            write(ps, pending, columnCount, binder, keys, hook);
+            sample.finish(pending.size());
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+        if (hook != null) {
+            hook.afterCommit(pending);
+        }
+    }
+
+    // Inserts one batch and commits it, with the hook's derived rows in the same transaction
+    private <T> void write(PreparedStatement ps, List<T> pending, int columnCount,
+                           Binder<T> binder, KeyListener<? super T> keys,
+                           BatchHook<T> hook) throws SQLException {
+        if (multiRowInserts) {
+            int offset = 1;
+            for (T row : pending) {
+                binder.bind(ps, offset, row);
+                offset += columnCount;
+            }
+            ps.executeUpdate();
+        } else {
+            for (T row : pending) {
+                binder.bind(ps, 1, row);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        if (keys != null) {
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                for (T row : pending) {
+                    if (!rs.next()) {
+                        throw new SQLException("Driver returned fewer generated keys than inserted rows");
+                    }
+                    keys.onKey(row, rs.getInt(1));
+                }
+            }
+        }
+
+        if (hook != null) {
+            hook.beforeCommit(conn, pending);
+        }
+        conn.commit();
+    }
+
+    private static String insertSql(String table, String[] columns, int rowCount) {
+        StringBuilder sql = new StringBuilder(64 + rowCount * (columns.length * 2 + 3));
+        sql.append("INSERT INTO ").append(table).append(" (")
+           .append(String.join(", ", columns)).append(") VALUES ");
+
+        StringBuilder tuple = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            tuple.append(i == 0 ? "?" : ", ?");
+        }
+        tuple.append(')');
+
+        for (int r = 0; r < rowCount; r++) {
+            if (r > 0) {
+                sql.append(", ");
+            }
+            sql.append(tuple);
+        }
+        return sql.toString();
+    }
+
+    private static void bindLocation(PreparedStatement ps, int i, LocationRecord l) throws SQLException {
+        ps.setString(i, l.locationName());
+        ps.setString(i + 1, l.locationType());
+        if (l.parentLocationId() != null) {
+            ps.setInt(i + 2, l.parentLocationId());
+        } else {
+            ps.setNull(i + 2, Types.INTEGER);
+        }
+        ps.setString(i + 3, l.address());
+    }
+
+    private static void bindDriver(PreparedStatement ps, int i, DriverRecord d) throws SQLException {
+        ps.setString(i, d.driverName());
+        ps.setString(i + 1, d.licenseNumber());
+        ps.setString(i + 2, d.contactPhone());
+        ps.setString(i + 3, d.contactEmail());
+        ps.setInt(i + 4, d.maxActiveShipments());
+    }
+
+    private static void bindShipment(PreparedStatement ps, int i, ShipmentRecord s) throws SQLException {
+        ps.setString(i, s.senderName());
+        ps.setString(i + 1, s.senderAddress());
+        ps.setString(i + 2, s.senderPhone());
+        ps.setString(i + 3, s.recipientName());
+        ps.setString(i + 4, s.recipientAddress());
+        ps.setString(i + 5, s.recipientPhone());
+        ps.setInt(i + 6, s.originLocationId());
+        ps.setInt(i + 7, s.destinationLocationId());
+        ps.setString(i + 8, s.currentStatus() != null ? s.currentStatus() : "pending");
+        ps.setTimestamp(i + 9, orNow(s.createdAt()));
+        ps.setTimestamp(i + 10, s.estimatedDelivery());
+        ps.setTimestamp(i + 11, s.actualDelivery());
+    }
+
+    private static void bindPackage(PreparedStatement ps, int i, PackageRecord p) throws SQLException {
+        ps.setInt(i, p.shipmentId());
+        ps.setDouble(i + 1, p.weight());
+        ps.setString(i + 2, p.contentDescription());
+        ps.setString(i + 3, p.packageType());
+    }
+
+    private static void bindStatusLog(PreparedStatement ps, int i, StatusLogRecord l) throws SQLException {
+        ps.setInt(i, l.shipmentId());
+        ps.setString(i + 1, l.statusUpdate());
+        if (l.locationId() != null) {
+            ps.setInt(i + 2, l.locationId());
+        } else {
+            ps.setNull(i + 2, Types.INTEGER);
+        }
+        ps.setTimestamp(i + 3, orNow(l.updateTimestamp()));
+        ps.setString(i + 4, l.agentName());
+        ps.setString(i + 5, l.notes());
+    }
+
+    private static void bindAssignment(PreparedStatement ps, int i, AssignmentRecord a) throws SQLException {
+        ps.setInt(i, a.driverId());
+        ps.setInt(i + 1, a.shipmentId());
+        ps.setTimestamp(i + 2, orNow(a.assignedAt()));
+        ps.setTimestamp(i + 3, a.estimatedDelivery());
+        ps.setString(i + 4, a.status() != null ? a.status() : "active");
+    }
+
+    // An explicit NULL would bypass the column's DEFAULT CURRENT_TIMESTAMP
+    private static Timestamp orNow(Timestamp ts) {
+        return ts != null ? ts : new Timestamp(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,426 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded JDBC connection pool used by create.getConnection().
+// Borrowed connections are proxies: calling close() hands the physical
+// connection back to the pool instead of tearing down the TCP session.
+// Before it goes back, the statements the borrower left open are closed, an
+// open transaction is rolled back, and read-only mode, isolation level and
+// catalog are put back to what the connection had when it was opened, so
+// nothing one borrower set leaks into the next one's session.
+public class ConnectionPool {
+
+    // Snapshot of pool counters, used by the diagnostic menu
+    public record Stats(int active, int idle, int total, int waiters,
+                        long acquired, long timeouts, long created, long evicted,
+                        double avgAcquireMillis, double maxAcquireMillis) {
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final boolean validateOnBorrow;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private int total;      // physical connections open or being opened
+    private int waiters;    // threads blocked in borrow()
+    private boolean closed;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(String url, String username, String password,
+                          int minSize, int maxSize, long acquireTimeoutMillis,
+                          long idleTimeoutMillis, boolean validateOnBorrow) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validateOnBorrow = validateOnBorrow;
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+
+        fillToMinimum();
+    }
+
+    // Borrow a connection, waiting up to the acquire timeout for one to be returned
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+
+        while (true) {
+            PooledConnection candidate = null;
+            boolean openNew = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        openNew = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeouts.increment();
+                        throw new SQLTransientConnectionException(
+                            "Timed out after " + acquireTimeoutMillis + " ms waiting for a pooled connection");
+                    }
+                    waiters++;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a pooled connection", e);
+                    } finally {
+                        waiters--;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // Network work happens outside the lock so other borrowers are not blocked
+            if (openNew) {
+                candidate = openPhysical();
+            } else if (validateOnBorrow && !isUsable(candidate)) {
+                discard(candidate);
+                continue;
+            }
+
+            recordAcquire(System.nanoTime() - start);
+            return candidate.lease();
+        }
+    }
+
+    public Stats getStats() {
+        lock.lock();
+        try {
+            long count = acquired.sum();
+            double avg = count == 0 ? 0.0 : acquireNanos.sum() / (double) count / 1_000_000.0;
+            return new Stats(total - idle.size(), idle.size(), total, waiters,
+                count, timeouts.sum(), created.sum(), evicted.sum(),
+                avg, maxAcquireNanos.get() / 1_000_000.0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // Close idle connections and stop handing out new ones; leased connections close on return
+    public void close() {
+        evictor.shutdownNow();
+        lock.lock();
+        try {
+            closed = true;
+            for (PooledConnection pc : idle) {
+                closeQuietly(pc.physical);
+                total--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection openPhysical() throws SQLException {
+        try {
+            Connection physical = DriverManager.getConnection(url, username, password);
+            PooledConnection pc;
+            try {
+                pc = new PooledConnection(physical);
+            } catch (SQLException e) {
+                closeQuietly(physical);
+                throw e;
+            }
+            created.increment();
+            return pc;
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= minSize) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                giveBack(openPhysical());
+            } catch (SQLException e) {
+                System.err.println("Warning: Could not pre-open pooled connection: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        try {
+            return pc.physical.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // Called by the proxy when the borrower closes its logical connection;
+    // a connection that cannot be reset is discarded instead
+    private void release(PooledConnection pc, List<Statement> statements, boolean sessionChanged) {
+        boolean healthy = true;
+        try {
+            if (pc.physical.isClosed()) {
+                healthy = false;
+            } else {
+                for (Statement stmt : statements) {
+                    stmt.close();
+                }
+                if (!pc.physical.getAutoCommit()) {
+                    pc.physical.rollback();
+                    pc.physical.setAutoCommit(true);
+                }
+                if (sessionChanged) {
+                    pc.restoreDefaults();
+                }
+            }
+        } catch (SQLException e) {
+            healthy = false;
+        }
+
+        if (healthy) {
+            giveBack(pc);
+        } else {
+            discard(pc);
+        }
+    }
+
+    private void giveBack(PooledConnection pc) {
+        lock.lock();
+        try {
+            if (closed) {
+                total--;
+                closeQuietly(pc.physical);
+                return;
+            }
+            pc.lastUsed = System.nanoTime();
+            // Most recently used first, so the tail of the deque is what idles out
+            idle.addFirst(pc);
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        closeQuietly(pc.physical);
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        lock.lock();
+        try {
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total > minSize) {
+                PooledConnection pc = it.next();
+                if (pc.lastUsed - cutoff > 0) {
+                    break;
+                }
+                it.remove();
+                total--;
+                evicted.increment();
+                closeQuietly(pc.physical);
+            }
+        } finally {
+            lock.unlock();
+        }
+        fillToMinimum();
+    }
+
+    private void recordAcquire(long nanos) {
+        acquired.increment();
+        acquireNanos.add(nanos);
+        maxAcquireNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            // Connection is being thrown away anyway
+        }
+    }
+
+    // One physical connection; each lease hands out a fresh proxy so a stale
+    // reference held by a previous borrower cannot touch the next borrower's session
+    private final class PooledConnection {
+        final Connection physical;
+        // Session settings as opened, restored after a borrower changed them
+        private final boolean readOnly;
+        private final int isolation;
+        private final String catalog;
+        long lastUsed = System.nanoTime();
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.readOnly = physical.isReadOnly();
+            this.isolation = physical.getTransactionIsolation();
+            this.catalog = physical.getCatalog();
+        }
+
+        void restoreDefaults() throws SQLException {
+            physical.setReadOnly(readOnly);
+            physical.setTransactionIsolation(isolation);
+            if (catalog != null) {
+                physical.setCatalog(catalog);
+            }
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new LeaseHandler(this));
+        }
+    }
+
+    private final class LeaseHandler implements InvocationHandler {
+        // Statements are pruned of closed ones once this many are tracked
+        private static final int PRUNE_THRESHOLD = 64;
+
+        private final PooledConnection pc;
+        private final List<Statement> statements = new ArrayList<>();
+        private boolean sessionChanged;
+        private boolean returned;
+
+        LeaseHandler(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pc, statements, sessionChanged);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pc.physical.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + pc.physical + "]";
+                case "setReadOnly", "setTransactionIsolation", "setCatalog", "setSchema":
+                    sessionChanged = true;
+                    break;
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            Object result;
+            try {
+                result = method.invoke(pc.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement stmt) {
+                track(stmt);
+            }
+            return result;
+        }
+
+        private void track(Statement stmt) throws SQLException {
+            if (statements.size() >= PRUNE_THRESHOLD) {
+                Iterator<Statement> it = statements.iterator();
+                while (it.hasNext()) {
+                    if (it.next().isClosed()) {
+                        it.remove();
+                    }
+                }
+            }
+            statements.add(stmt);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Deterministic synthetic data for load-testing the courier_service schema.
+// The same seed, sizes and reference time always produce the same rows.
+// Shipments are generated and written chunk by chunk, so memory use stays
+// bounded by the chunk size no matter how many shipments are requested.
+public class DataGenerator {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+
+    private static final String[] FIRST_NAMES = {
+        "Aarav", "Vivaan", "Aditya", "Vihaan", "Arjun", "Sai", "Reyansh", "Krishna", "Ishaan", "Rohan",
+        "Ananya", "Diya", "Priya", "Kavya", "Isha", "Neha", "Pooja", "Sneha", "Riya", "Meera",
+        "Rajesh", "Sunil", "Manoj", "Deepak", "Vinod", "Ramesh", "Suresh", "Amit", "Rahul", "Kiran"
+    };
+    private static final String[] LAST_NAMES = {
+        "Sharma", "Verma", "Gupta", "Singh", "Kumar", "Patel", "Reddy", "Nair", "Iyer", "Das",
+        "Mehta", "Joshi", "Jain", "Agarwal", "Mishra", "Pandey", "Yadav", "Tiwari", "Bhanage", "Shah"
+    };
+    private static final String[] CITIES = {
+        "Mumbai", "Delhi", "Bangalore", "Hyderabad", "Chennai", "Kolkata", "Pune", "Ahmedabad",
+        "Jaipur", "Lucknow", "Surat", "Kanpur", "Nagpur", "Indore", "Bhopal", "Patna",
+        "Vadodara", "Ludhiana", "Agra", "Nashik", "Kochi", "Coimbatore", "Visakhapatnam", "Chandigarh"
+    };
+    private static final String[] STATE_CODES = {
+        "MH", "DL", "KA", "TG", "TN", "WB", "MH", "GJ", "RJ", "UP", "GJ", "UP",
+        "MH", "MP", "MP", "BR", "GJ", "PB", "UP", "MH", "KL", "TN", "AP", "CH"
+    };
+    private static final String[] AREAS = {
+        "Sector", "Phase", "Nagar", "Colony", "Road", "Layout", "Park", "Market"
+    };
+    private static final String[] CONTENTS = {
+        "Electronics - Mobile Phone", "Books - Textbooks", "Clothing - Cotton Kurtas", "Documents - Legal Papers",
+        "Food Items - Snacks", "Medicine - Health Supplements", "Handicrafts - Decorative Items",
+        "Cosmetics - Skincare Products", "Stationery - Notebooks & Pens", "Gift Items - Photo Frame"
+    };
+    private static final String[] PACKAGE_TYPES = {
+        "Standard", "Standard", "Standard", "Fragile", "Perishable", "Delicate"
+    };
+
+    // Hierarchy sizing: roughly 1 hub per 25 locations and 1 sub_hub per 5
+    private static final int LOCATIONS_PER_HUB = 25;
+    private static final int LOCATIONS_PER_SUB_HUB = 5;
+
+    private final long seed;
+    private final long referenceTime;
+    private final int historyDays;
+    private final int batchSize;
+    private final int chunkSize;
+
+    public DataGenerator(long seed, long referenceTime, int historyDays, int batchSize, int chunkSize) {
+        this.seed = seed;
+        this.referenceTime = referenceTime;
+        this.historyDays = historyDays;
+        this.batchSize = batchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    // Generate the full dataset on one connection; tables must already exist
+    public void generate(Connection conn, int locationCount, int driverCount, long shipmentCount) throws SQLException {
+        if (locationCount < 2 || driverCount < 1 || shipmentCount < 0) {
+            throw new IllegalArgumentException("Need at least 2 locations and 1 driver");
+        }
+        BulkLoader loader = new BulkLoader(conn, batchSize, true);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        long start = System.nanoTime();
+        int[] locationIds = generateLocations(loader, random.split(), locationCount);
+        System.out.println("✓ Generated " + locationIds.length + " locations");
+
+        int[] driverIds = generateDrivers(conn, loader, random.split(), driverCount);
+        System.out.println("✓ Generated " + driverIds.length + " drivers");
+
+        generateShipments(loader, random.split(), shipmentCount, locationIds, driverIds, start);
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("✓ Generated %,d shipments in %.1f s%n", shipmentCount, seconds);
+    }
+
+    private int[] generateLocations(BulkLoader loader, SplittableRandom random, int count) throws SQLException {
+        int hubCount = Math.max(1, count / LOCATIONS_PER_HUB);
+        int subHubCount = Math.max(0, Math.min(count - hubCount, count / LOCATIONS_PER_SUB_HUB));
+        int pointCount = count - hubCount - subHubCount;
+
+        int[] hubs = loadLocationLevel(loader, random, "hub", hubCount, null);
+        int[] subHubs = loadLocationLevel(loader, random, "sub_hub", subHubCount, hubs);
+        int[] points = loadLocationLevel(loader, random, "delivery_point", pointCount,
+            subHubs.length > 0 ? subHubs : hubs);
+
+        int[] all = new int[count];
+        System.arraycopy(hubs, 0, all, 0, hubs.length);
+        System.arraycopy(subHubs, 0, all, hubs.length, subHubs.length);
+        System.arraycopy(points, 0, all, hubs.length + subHubs.length, points.length);
+        return all;
+    }
+
+    private int[] loadLocationLevel(BulkLoader loader, SplittableRandom random, String type,
+                                    int count, int[] parents) throws SQLException {
+        List<BulkLoader.LocationRecord> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int city = random.nextInt(CITIES.length);
+            Integer parent = parents == null ? null : parents[random.nextInt(parents.length)];
+            String label = switch (type) {
+                case "hub" -> " Central Hub ";
+                case "sub_hub" -> " Sub Hub ";
+                default -> " Delivery Point ";
+            };
+            rows.add(new BulkLoader.LocationRecord(CITIES[city] + label + (i + 1), type, parent,
+                address(random, city)));
+        }
+
+        int[] ids = new int[count];
+        int[] next = {0};
+        loader.loadLocations(rows.iterator(), (row, id) -> ids[next[0]++] = id);
+        return ids;
+    }
+
+    // Drivers left by an earlier run with the same seed are reused rather than inserted
+    // again, since license_number is UNIQUE; everything else is simply added alongside
+    private int[] generateDrivers(Connection conn, BulkLoader loader, SplittableRandom random, int count)
+            throws SQLException {
+        List<BulkLoader.DriverRecord> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            int city = random.nextInt(CITIES.length);
+            // Seed and index keep license numbers unique across runs with different seeds
+            String license = STATE_CODES[city] + licenseInfix() + (i + 1);
+            rows.add(new BulkLoader.DriverRecord(first + " " + last, license, phone(random),
+                first.toLowerCase() + "." + last.toLowerCase() + (i + 1) + "@courier.in",
+                3 + random.nextInt(8)));
+        }
+
+        Map<String, Integer> existing = existingDrivers(conn);
+        int[] ids = new int[count];
+        List<BulkLoader.DriverRecord> missing = new ArrayList<>();
+        List<Integer> missingSlots = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Integer id = existing.get(rows.get(i).licenseNumber());
+            if (id != null) {
+                ids[i] = id;
+            } else {
+                missing.add(rows.get(i));
+                missingSlots.add(i);
+            }
+        }
+        if (missing.size() < count) {
+            System.out.println("✓ Reusing " + (count - missing.size()) + " drivers from an earlier run with this seed");
+        }
+
+        int[] next = {0};
+        loader.loadDrivers(missing.iterator(), (row, id) -> ids[missingSlots.get(next[0]++)] = id);
+        return ids;
+    }
+
+    // license_number -> driver_id for drivers generated earlier with this seed
+    private Map<String, Integer> existingDrivers(Connection conn) throws SQLException {
+        Map<String, Integer> result = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT driver_id, license_number FROM drivers WHERE license_number LIKE ?")) {
+            pstmt.setString(1, "__" + licenseInfix() + "%");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    result.put(rs.getString(2), rs.getInt(1));
+                }
+            }
+        }
+        return result;
+    }
+
+    private String licenseInfix() {
+        return "DL" + Long.toHexString(seed).toUpperCase() + "-";
+    }
+
+    private void generateShipments(BulkLoader loader, SplittableRandom random, long count,
+                                   int[] locationIds, int[] driverIds, long startNanos) throws SQLException {
+        long historyMillis = historyDays * DAY;
+        long generated = 0;
+
+        List<BulkLoader.ShipmentRecord> shipments = new ArrayList<>(chunkSize);
+        List<BulkLoader.PackageRecord> packages = new ArrayList<>(chunkSize * 2);
+        List<BulkLoader.StatusLogRecord> logs = new ArrayList<>(chunkSize * 4);
+        List<BulkLoader.AssignmentRecord> assignments = new ArrayList<>(chunkSize);
+
+        while (generated < count) {
+            int size = (int) Math.min(chunkSize, count - generated);
+            shipments.clear();
+            for (int i = 0; i < size; i++) {
+                shipments.add(nextShipment(random, locationIds, historyMillis));
+            }
+
+            packages.clear();
+            logs.clear();
+            assignments.clear();
+            loader.loadShipments(shipments.iterator(), (s, id) -> {
+                addPackages(random, id, packages);
+                addStatusLogs(random, id, s, locationIds, logs);
+                addAssignment(random, id, s, driverIds, assignments);
+            });
+            loader.loadPackages(packages.iterator());
+            loader.loadStatusLogs(logs.iterator());
+            loader.loadAssignments(assignments.iterator());
+
+            generated += size;
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            System.out.printf("  %,d / %,d shipments (%,.0f shipments/s)%n",
+                generated, count, generated / Math.max(seconds, 1e-9));
+        }
+    }
+
+    private BulkLoader.ShipmentRecord nextShipment(SplittableRandom random, int[] locationIds, long historyMillis) {
+        int origin = locationIds[random.nextInt(locationIds.length)];
+        int destination = origin;
+        while (destination == origin && locationIds.length > 1) {
+            destination = locationIds[random.nextInt(locationIds.length)];
+        }
+
+        long created = referenceTime - (long) (random.nextDouble() * historyMillis);
+        // Promised transit of 1-5 days, in whole hours
+        long estimated = created + (24 + random.nextInt(97)) * HOUR;
+
+        String status;
+        Timestamp actual = null;
+        if (estimated <= referenceTime) {
+            double roll = random.nextDouble();
+            if (roll < 0.86) {
+                status = "delivered";
+                // Most arrive around the promise, a long tail arrives late
+                long skew = (long) ((random.nextDouble() * random.nextDouble() * 72 - 12) * HOUR);
+                long delivered = Math.max(created + 2 * HOUR, Math.min(estimated + skew, referenceTime));
+                actual = new Timestamp(delivered);
+            } else if (roll < 0.89) {
+                status = "returned";
+            } else {
+                status = "delayed";
+            }
+        } else {
+            long age = referenceTime - created;
+            status = age < 6 * HOUR || random.nextDouble() < 0.25 ? "pending" : "in_transit";
+        }
+
+        int senderCity = random.nextInt(CITIES.length);
+        int recipientCity = random.nextInt(CITIES.length);
+        return new BulkLoader.ShipmentRecord(
+            personName(random), address(random, senderCity), phone(random),
+            personName(random), address(random, recipientCity), phone(random),
+            origin, destination, status,
+            new Timestamp(created), new Timestamp(estimated), actual);
+    }
+
+    private void addPackages(SplittableRandom random, int shipmentId, List<BulkLoader.PackageRecord> out) {
+        int count = 1 + (random.nextInt(10) < 7 ? 0 : random.nextInt(3));
+        for (int i = 0; i < count; i++) {
+            double weight = Math.round((0.1 + random.nextDouble() * random.nextDouble() * 20) * 100) / 100.0;
+            out.add(new BulkLoader.PackageRecord(shipmentId, weight,
+                CONTENTS[random.nextInt(CONTENTS.length)], PACKAGE_TYPES[random.nextInt(PACKAGE_TYPES.length)]));
+        }
+    }
+
+    private void addStatusLogs(SplittableRandom random, int shipmentId, BulkLoader.ShipmentRecord s,
+                               int[] locationIds, List<BulkLoader.StatusLogRecord> out) {
+        long created = s.createdAt().getTime();
+        out.add(new BulkLoader.StatusLogRecord(shipmentId, "pending", s.originLocationId(),
+            s.createdAt(), "System", "Shipment created"));
+
+        String status = s.currentStatus();
+        if (status.equals("pending")) {
+            return;
+        }
+
+        // Final scan time bounds the transit scans in between
+        long end = switch (status) {
+            case "delivered" -> s.actualDelivery().getTime();
+            case "delayed" -> s.estimatedDelivery().getTime() + HOUR;
+            case "returned" -> Math.min(referenceTime, s.estimatedDelivery().getTime() + 2 * DAY);
+            default -> Math.max(created + HOUR, referenceTime - random.nextInt(6) * HOUR);
+        };
+        long span = Math.max(end - created, 2 * HOUR);
+        String agent = personName(random);
+
+        long pickup = created + Math.max(HOUR / 2, span / 8);
+        out.add(new BulkLoader.StatusLogRecord(shipmentId, "in_transit", s.originLocationId(),
+            new Timestamp(pickup), agent, "Package picked up"));
+
+        int hops = random.nextInt(3);
+        for (int h = 1; h <= hops; h++) {
+            int hub = locationIds[random.nextInt(locationIds.length)];
+            long at = pickup + (end - pickup) * h / (hops + 1);
+            out.add(new BulkLoader.StatusLogRecord(shipmentId, "in_transit", hub,
+                new Timestamp(at), agent, "Package arrived at transit hub"));
+        }
+
+        switch (status) {
+            case "delivered" -> out.add(new BulkLoader.StatusLogRecord(shipmentId, "delivered",
+                s.destinationLocationId(), new Timestamp(end), agent, "Package delivered successfully"));
+            case "returned" -> out.add(new BulkLoader.StatusLogRecord(shipmentId, "returned",
+                s.originLocationId(), new Timestamp(end), agent, "Package returned - recipient unavailable"));
+            case "delayed" -> out.add(new BulkLoader.StatusLogRecord(shipmentId, "delayed",
+                s.destinationLocationId(), new Timestamp(end), agent, "Delivery delayed"));
+            default -> {
+            }
+        }
+    }
+
+    private void addAssignment(SplittableRandom random, int shipmentId, BulkLoader.ShipmentRecord s,
+                               int[] driverIds, List<BulkLoader.AssignmentRecord> out) {
+        String assignmentStatus = switch (s.currentStatus()) {
+            case "delivered" -> "completed";
+            case "returned" -> random.nextInt(4) == 0 ? "cancelled" : "completed";
+            default -> "active";
+        };
+        out.add(new BulkLoader.AssignmentRecord(driverIds[random.nextInt(driverIds.length)], shipmentId,
+            s.createdAt(), s.estimatedDelivery(), assignmentStatus));
+    }
+
+    private static String personName(SplittableRandom random) {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    private static String address(SplittableRandom random, int city) {
+        return (1 + random.nextInt(999)) + ", " + AREAS[random.nextInt(AREAS.length)] + " "
+            + (1 + random.nextInt(60)) + ", " + CITIES[city] + " " + (110000 + random.nextInt(790000));
+    }
+
+    private static String phone(SplittableRandom random) {
+        return "+91-9" + (100000000 + random.nextInt(900000000));
+    }
+
+    // Usage: java DataGenerator <locations> <drivers> <shipments> [seed] [historyDays]
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java DataGenerator <locations> <drivers> <shipments> [seed] [historyDays]");
+            return;
+        }
+        if (!create.setPasswordFromEnvironment()) {
+            return;
+        }
+
+        int locations = Integer.parseInt(args[0]);
+        int drivers = Integer.parseInt(args[1]);
+        long shipments = Long.parseLong(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+        int historyDays = args.length > 4 ? Integer.parseInt(args[4]) : 180;
+
+        try (Connection conn = create.getConnection()) {
+            newDefault(seed, historyDays).generate(conn, locations, drivers, shipments);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            create.shutdown();
+        }
+    }
+
+    // Reference time is the start of the current hour, so reruns within the hour match exactly
+    public static DataGenerator newDefault(long seed, int historyDays) {
+        long referenceTime = System.currentTimeMillis() / HOUR * HOUR;
+        return new DataGenerator(seed, referenceTime, historyDays,
+            Integer.getInteger("courier.gen.batchSize", 1000),
+            Integer.getInteger("courier.gen.chunkSize", 10000));
+    }
+}
@@ -0,0 +1,1229 @@
+import com.mysql.cj.jdbc.JdbcStatement;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Bulk export and import of shipments and status_logs.
+//
+// Export streams rows through a server-side cursor into a FileChannel, in one
+// of two formats:
+//   csv  MySQL's LOAD DATA dialect: a header line, fields separated by ',',
+//        strings enclosed in '"', '\' escapes and \N for NULL. Newlines inside
+//        values are escaped, so every record is exactly one line.
+//   bin  Compact columnar file: a header naming the columns, then blocks of up
+//        to 8192 rows in which each column is stored contiguously behind a
+//        null bitmap (ints as int32, datetimes as int64 epoch seconds, strings
+//        as varint length + UTF-8), ended by an empty block.
+// Memory stays bounded by the fetch size and one block, whatever the table size.
+//
+// Import detects the format, splits the file into chunks at record boundaries
+// and streams each chunk through LOAD DATA LOCAL INFILE, in parallel on
+// dedicated connections. The server must allow it (SET GLOBAL local_infile = 1).
+// Rows whose key already exists are skipped, or replaced with --replace. Shipments
+// cannot be replaced: REPLACE deletes the old row, which cascades to its packages
+// and status logs (or fails on its driver assignments).
+// Each chunk commits on its own, so a failed import can leave earlier chunks loaded.
+// created_at and update_timestamp round-trip in the session time zone, so export
+// and import should run against servers with the same time_zone setting.
+//
+// Usage:
+//   java DataTransfer export <shipments|status_logs> <file> [--format csv|bin] [--fetch-size n]
+//   java DataTransfer import <shipments|status_logs> <file> [--threads n] [--chunk-mb n]
+//                            [--rebuild-indexes] [--skip-fk-checks] [--replace]
+public class DataTransfer {
+
+    public enum Format { CSV, BINARY }
+
+    public record Stats(long rows, long bytes, long elapsedNanos) {
+        public double seconds() {
+            return elapsedNanos / 1e9;
+        }
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1024 * 1024);
+        }
+    }
+
+    // rebuildIndexes drops the table's secondary indexes for the load and adds them
+    // back in one ALTER TABLE afterwards (InnoDB has no DISABLE KEYS); skipForeignKeyChecks
+    // turns off foreign key checks on the load connections
+    public record ImportOptions(int threads, long chunkBytes, boolean rebuildIndexes,
+                                boolean skipForeignKeyChecks, boolean replace) {
+        public static ImportOptions defaults() {
+            return new ImportOptions(Integer.getInteger("courier.transfer.threads", 4),
+                Long.getLong("courier.transfer.chunkMb", 16) * 1024 * 1024, false, false, false);
+        }
+    }
+
+    private enum Type { INT, STRING, DATETIME }
+
+    private record Column(String name, Type type) {
+    }
+
+    private record TableSpec(String name, String key, List<Column> columns) {
+    }
+
+    // created_date is generated from created_at, so it is neither exported nor loaded
+    private static final TableSpec SHIPMENTS = new TableSpec("shipments", "shipment_id", List.of(
+        new Column("shipment_id", Type.INT),
+        new Column("sender_name", Type.STRING),
+        new Column("sender_address", Type.STRING),
+        new Column("sender_phone", Type.STRING),
+        new Column("recipient_name", Type.STRING),
+        new Column("recipient_address", Type.STRING),
+        new Column("recipient_phone", Type.STRING),
+        new Column("origin_location_id", Type.INT),
+        new Column("destination_location_id", Type.INT),
+        new Column("current_status", Type.STRING),
+        new Column("created_at", Type.DATETIME),
+        new Column("estimated_delivery", Type.DATETIME),
+        new Column("actual_delivery", Type.DATETIME)));
+
+    private static final TableSpec STATUS_LOGS = new TableSpec("status_logs", "log_id", List.of(
+        new Column("log_id", Type.INT),
+        new Column("shipment_id", Type.INT),
+        new Column("status_update", Type.STRING),
+        new Column("location_id", Type.INT),
+        new Column("update_timestamp", Type.DATETIME),
+        new Column("agent_name", Type.STRING),
+        new Column("notes", Type.STRING)));
+
+    private static final byte[] MAGIC = {'C', 'S', 'T', 'B'};
+    private static final int VERSION = 1;
+    private static final int BLOCK_ROWS = 8192;
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final int FETCH_SIZE = Integer.getInteger("courier.transfer.fetchSize", 5000);
+
+    // MySQL refuses to drop an index that a foreign key needs
+    private static final int ER_DROP_INDEX_FK = 1553;
+
+    // Plain B-tree secondary indexes; unique indexes stay, they keep the data correct
+    private static final String SECONDARY_INDEX_QUERY = """
+        SELECT INDEX_NAME, COLUMN_NAME, SUB_PART
+        FROM information_schema.STATISTICS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?
+          AND NON_UNIQUE = 1 AND INDEX_TYPE = 'BTREE'
+        ORDER BY INDEX_NAME, SEQ_IN_INDEX
+        """;
+
+    private DataTransfer() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 3 || !(args[0].equals("export") || args[0].equals("import"))) {
+            System.out.println("Usage: java DataTransfer export <shipments|status_logs> <file> "
+                + "[--format csv|bin] [--fetch-size n]");
+            System.out.println("       java DataTransfer import <shipments|status_logs> <file> "
+                + "[--threads n] [--chunk-mb n] [--rebuild-indexes] [--skip-fk-checks] [--replace]");
+            return;
+        }
+        Map<String, String> options = parseOptions(args, 3);
+        if (!create.setPasswordFromEnvironment()) {
+            return;
+        }
+
+        Path file = Path.of(args[2]);
+        try {
+            if (args[0].equals("export")) {
+                Format format = "bin".equals(options.get("format")) ? Format.BINARY : Format.CSV;
+                int fetchSize = Integer.parseInt(options.getOrDefault("fetch-size", String.valueOf(FETCH_SIZE)));
+                Stats stats = export(args[1], file, format, fetchSize);
+                System.out.println("✓ Exported " + describe(stats) + " to " + file);
+            } else {
+                ImportOptions defaults = ImportOptions.defaults();
+                ImportOptions importOptions = new ImportOptions(
+                    Integer.parseInt(options.getOrDefault("threads", String.valueOf(defaults.threads()))),
+                    options.containsKey("chunk-mb")
+                        ? Long.parseLong(options.get("chunk-mb")) * 1024 * 1024 : defaults.chunkBytes(),
+                    options.containsKey("rebuild-indexes"),
+                    options.containsKey("skip-fk-checks"),
+                    options.containsKey("replace"));
+                Stats stats = importFile(args[1], file, importOptions);
+                System.out.println("✓ Imported " + describe(stats) + " from " + file);
+            }
+        } catch (SQLException | IOException e) {
+            System.out.println("✗ " + (args[0].equals("export") ? "Export" : "Import") + " failed: "
+                + e.getMessage());
+            e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            System.out.println("✗ " + e.getMessage());
+        } finally {
+            create.shutdown();
+        }
+    }
+
+    // Streams the whole table to file in primary key order
+    public static Stats export(String table, Path file, Format format, int fetchSize)
+            throws SQLException, IOException {
+        TableSpec spec = spec(table);
+        String sql = "SELECT " + columnList(spec.columns()) + " FROM " + spec.name() + " ORDER BY " + spec.key();
+        QueryMetrics.Sample sample = QueryMetrics.start("export." + spec.name());
+        long start = System.nanoTime();
+        long rows = 0;
+        try (Connection conn = ShipmentQueries.connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                 ResultSet.CONCUR_READ_ONLY);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                 StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            pstmt.setFetchSize(fetchSize > 0 ? fetchSize : Integer.MIN_VALUE);
+            ChannelSink sink = new ChannelSink(channel);
+            RowEncoder encoder = format == Format.CSV
+                ? new CsvEncoder(sink, spec.columns(), true)
+                : new BinaryEncoder(sink, spec.columns());
+            encoder.begin();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    copyRow(rs, spec.columns(), encoder);
+                    rows++;
+                }
+            }
+            encoder.end();
+            sink.flush();
+            sample.finish(rows);
+            return new Stats(rows, channel.size(), System.nanoTime() - start);
+        } catch (SQLException | IOException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Loads a file written by export; rollups and in-process caches are refreshed afterwards
+    public static Stats importFile(String table, Path file, ImportOptions options)
+            throws SQLException, IOException {
+        TableSpec spec = spec(table);
+        if (options.replace() && spec == SHIPMENTS) {
+            throw new IllegalArgumentException("--replace is not supported for shipments: replacing a shipment "
+                + "deletes its packages and status logs");
+        }
+        QueryMetrics.Sample sample = QueryMetrics.start("import." + spec.name());
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<IndexDef> dropped = options.rebuildIndexes() ? dropSecondaryIndexes(spec) : List.of();
+            long rows;
+            try {
+                rows = isBinary(channel) ? loadBinary(spec, channel, options) : loadCsv(spec, channel, options);
+            } finally {
+                // Put the indexes back even if the load failed part way
+                restoreIndexes(spec, dropped);
+            }
+            sample.finish(rows);
+            afterImport(spec);
+            return new Stats(rows, channel.size(), System.nanoTime() - start);
+        } catch (SQLException | IOException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    private static String describe(Stats stats) {
+        return String.format("%,d rows (%.1f MB) in %.1f s — %,.0f rows/s, %.1f MB/s",
+            stats.rows(), stats.bytes() / (1024.0 * 1024), stats.seconds(),
+            stats.rowsPerSecond(), stats.megabytesPerSecond());
+    }
+
+    private static TableSpec spec(String table) {
+        return switch (table) {
+            case "shipments" -> SHIPMENTS;
+            case "status_logs" -> STATUS_LOGS;
+            default -> throw new IllegalArgumentException("Unsupported table: " + table
+                + " (expected shipments or status_logs)");
+        };
+    }
+
+    private static String columnList(List<Column> columns) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (Column column : columns) {
+            joiner.add(column.name());
+        }
+        return joiner.toString();
+    }
+
+    // Columns named in a file header, checked against the table
+    private static List<Column> resolveColumns(TableSpec spec, List<String> names) throws IOException {
+        List<Column> columns = new ArrayList<>();
+        for (String name : names) {
+            Column match = null;
+            for (Column column : spec.columns()) {
+                if (column.name().equals(name)) {
+                    match = column;
+                }
+            }
+            if (match == null) {
+                throw new IOException("Column " + name + " is not a " + spec.name() + " column");
+            }
+            columns.add(match);
+        }
+        return columns;
+    }
+
+    private static void copyRow(ResultSet rs, List<Column> columns, RowEncoder out)
+            throws SQLException, IOException {
+        for (int i = 0; i < columns.size(); i++) {
+            switch (columns.get(i).type()) {
+                case INT -> {
+                    int value = rs.getInt(i + 1);
+                    if (rs.wasNull()) {
+                        out.putNull(i);
+                    } else {
+                        out.putInt(i, value);
+                    }
+                }
+                case STRING -> {
+                    String value = rs.getString(i + 1);
+                    if (value == null) {
+                        out.putNull(i);
+                    } else {
+                        out.putString(i, value);
+                    }
+                }
+                case DATETIME -> {
+                    LocalDateTime value = rs.getObject(i + 1, LocalDateTime.class);
+                    if (value == null) {
+                        out.putNull(i);
+                    } else {
+                        out.putDateTime(i, value.toEpochSecond(ZoneOffset.UTC));
+                    }
+                }
+            }
+        }
+        out.endRow();
+    }
+
+    // ---- Import ----
+
+    private static boolean isBinary(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+        readFully(channel, head, 0);
+        return Arrays.equals(head.array(), MAGIC);
+    }
+
+    // CSV chunks are byte ranges of the file, cut after a newline and read in place
+    private static long loadCsv(TableSpec spec, FileChannel channel, ImportOptions options)
+            throws SQLException, IOException {
+        long size = channel.size();
+        long headerEnd = lineEnd(channel, 0);
+        ByteBuffer header = ByteBuffer.allocate((int) headerEnd);
+        readFully(channel, header, 0);
+        String headerLine = new String(header.array(), StandardCharsets.UTF_8).strip();
+        List<Column> columns = resolveColumns(spec, Arrays.asList(headerLine.split(",")));
+
+        try (ParallelLoader loader = new ParallelLoader(loadSql(spec, columns, options.replace()), options)) {
+            long pos = headerEnd;
+            while (pos < size) {
+                long end = lineEnd(channel, Math.min(size, pos + options.chunkBytes()) - 1);
+                if (!loader.submit(new RangeInputStream(channel, pos, end))) {
+                    break;
+                }
+                pos = end;
+            }
+            return loader.finish();
+        }
+    }
+
+    // Binary blocks are decoded on this thread and re-encoded as CSV chunks in memory
+    private static long loadBinary(TableSpec spec, FileChannel channel, ImportOptions options)
+            throws SQLException, IOException {
+        ByteSource source = new ByteSource(channel);
+        List<Column> columns = readBinaryHeader(spec, source);
+        Block block = new Block(columns);
+        int initialBytes = (int) Math.min(options.chunkBytes() + BUFFER_BYTES, Integer.MAX_VALUE - 8);
+
+        try (ParallelLoader loader = new ParallelLoader(loadSql(spec, columns, options.replace()), options)) {
+            MemorySink sink = new MemorySink(initialBytes);
+            CsvEncoder csv = new CsvEncoder(sink, columns, false);
+            while (block.read(source)) {
+                for (int row = 0; row < block.rows; row++) {
+                    block.emitRow(row, csv);
+                }
+                if (sink.size() >= options.chunkBytes()) {
+                    if (!loader.submit(sink.toInputStream())) {
+                        break;
+                    }
+                    sink = new MemorySink(initialBytes);
+                    csv = new CsvEncoder(sink, columns, false);
+                }
+            }
+            if (sink.size() > 0) {
+                loader.submit(sink.toInputStream());
+            }
+            return loader.finish();
+        }
+    }
+
+    private static List<Column> readBinaryHeader(TableSpec spec, ByteSource source) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        for (int i = 0; i < magic.length; i++) {
+            magic[i] = source.get();
+        }
+        int version = source.get();
+        if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+            throw new IOException("Not a version " + VERSION + " binary export");
+        }
+        int count = source.getVarInt();
+        List<String> names = new ArrayList<>();
+        List<Type> types = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            types.add(Type.values()[source.get()]);
+            names.add(source.getString());
+        }
+        List<Column> columns = resolveColumns(spec, names);
+        for (int i = 0; i < count; i++) {
+            if (columns.get(i).type() != types.get(i)) {
+                throw new IOException("Column " + names.get(i) + " has type " + types.get(i)
+                    + " in the file but " + columns.get(i).type() + " in " + spec.name());
+            }
+        }
+        return columns;
+    }
+
+    // Fills buf from position onwards, stopping early only at the end of the file
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                return;
+            }
+        }
+    }
+
+    // Position just past the first newline at or after from, or the end of the file
+    private static long lineEnd(FileChannel channel, long from) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = from;
+        while (true) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+    }
+
+    // The file name is a placeholder: Connector/J sends the stream set on the statement instead
+    private static String loadSql(TableSpec spec, List<Column> columns, boolean replace) {
+        return """
+            LOAD DATA LOCAL INFILE 'chunk.csv' %sINTO TABLE %s
+            CHARACTER SET utf8mb4
+            FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '"' ESCAPED BY '\\\\'
+            LINES TERMINATED BY '\\n'
+            (%s)
+            """.formatted(replace ? "REPLACE " : "", spec.name(), columnList(columns));
+    }
+
+    // LOAD DATA skips the write-path hooks, so derived data is refreshed wholesale
+    private static void afterImport(TableSpec spec) throws SQLException {
+        TrackingCache.shared().invalidateAll();
+        if (spec == SHIPMENTS) {
+            OverdueMonitor.markStale();
+            DriverAssignmentEngine.markStale();
+            long volumeRows = VolumeRollup.rebuild();
+            long hubRows = DeliveryStats.rebuild();
+            System.out.println("✓ Rebuilt report rollups (" + volumeRows + " day/origin rows, "
+                + hubRows + " destinations)");
+        } else {
+            // Imported logs are usually older than the route leg watermark; only a full pass sees them
+            System.out.println("Note: run 'java RouteLegAnalytics --rebuild' to include imported logs in route leg stats");
+        }
+    }
+
+    // Feeds chunks to one LOAD DATA connection per worker through a bounded queue,
+    // so a producer that decodes chunks in memory never runs far ahead of the loads
+    private static final class ParallelLoader implements AutoCloseable {
+        private static final InputStream END = InputStream.nullInputStream();
+
+        private final String loadSql;
+        private final ImportOptions options;
+        private final BlockingQueue<InputStream> queue;
+        private final ExecutorService workers;
+        private final List<Future<Long>> results = new ArrayList<>();
+        private volatile boolean failed;
+        private boolean ended;
+
+        ParallelLoader(String loadSql, ImportOptions options) {
+            this.loadSql = loadSql;
+            this.options = options;
+            int threads = Math.max(1, options.threads());
+            this.queue = new ArrayBlockingQueue<>(threads);
+            this.workers = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "data-transfer");
+                t.setDaemon(true);
+                return t;
+            });
+            for (int i = 0; i < threads; i++) {
+                results.add(workers.submit(this::work));
+            }
+        }
+
+        // Returns false once a worker has failed; finish() reports the failure
+        boolean submit(InputStream chunk) throws IOException {
+            if (failed) {
+                return false;
+            }
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing a chunk");
+            }
+            return true;
+        }
+
+        // Rows loaded by all workers
+        long finish() throws SQLException, IOException {
+            end();
+            long rows = 0;
+            SQLException failure = null;
+            for (Future<Long> result : results) {
+                try {
+                    rows += result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    SQLException error = cause instanceof SQLException sql ? sql : new SQLException(cause);
+                    if (failure == null) {
+                        failure = error;
+                    } else {
+                        failure.addSuppressed(error);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for chunk loads");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            end();
+            workers.shutdown();
+        }
+
+        private void end() throws IOException {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            for (int i = 0; i < results.size(); i++) {
+                submitEnd();
+            }
+        }
+
+        private void submitEnd() throws IOException {
+            try {
+                queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while stopping chunk loads");
+            }
+        }
+
+        private long work() throws SQLException, InterruptedException {
+            long rows = 0;
+            try (Connection conn = create.openConnection("allowLoadLocalInfile=true");
+                 Statement stmt = conn.createStatement()) {
+                if (options.skipForeignKeyChecks()) {
+                    stmt.execute("SET foreign_key_checks = 0");
+                }
+                JdbcStatement loadStmt = stmt.unwrap(JdbcStatement.class);
+                InputStream chunk;
+                while ((chunk = queue.take()) != END) {
+                    if (failed) {
+                        continue;
+                    }
+                    loadStmt.setLocalInfileInputStream(chunk);
+                    rows += stmt.executeUpdate(loadSql);
+                }
+                return rows;
+            } catch (SQLException e) {
+                failed = true;
+                // Keep taking chunks so the producer is never left blocked on a full queue
+                while (queue.take() != END) {
+                }
+                throw e;
+            }
+        }
+    }
+
+    // Reads bytes [start, end) of a channel shared with other chunks, using positional reads
+    private static final class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        private long pos;
+        private final long end;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.pos = start;
+            this.end = end;
+            buf.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buf.hasRemaining()) {
+                if (pos >= end) {
+                    return -1;
+                }
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), end - pos));
+                int n = channel.read(buf, pos);
+                if (n < 0) {
+                    throw new EOFException("File shrank during import");
+                }
+                pos += n;
+                buf.flip();
+            }
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+    }
+
+    // ---- Index drop and rebuild ----
+
+    private record IndexDef(String name, List<String> parts) {
+    }
+
+    private static List<IndexDef> dropSecondaryIndexes(TableSpec spec) throws SQLException {
+        Map<String, List<String>> indexes = new LinkedHashMap<>();
+        Set<String> functional = new HashSet<>();
+        List<IndexDef> dropped = new ArrayList<>();
+        try (Connection conn = ShipmentQueries.connect()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SECONDARY_INDEX_QUERY)) {
+                pstmt.setString(1, spec.name());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String index = rs.getString("INDEX_NAME");
+                        String column = rs.getString("COLUMN_NAME");
+                        int subPart = rs.getInt("SUB_PART");
+                        if (column == null) {
+                            functional.add(index);
+                            continue;
+                        }
+                        String part = "`" + column + "`" + (rs.wasNull() ? "" : "(" + subPart + ")");
+                        indexes.computeIfAbsent(index, k -> new ArrayList<>()).add(part);
+                    }
+                }
+            }
+            try (Statement stmt = conn.createStatement()) {
+                for (Map.Entry<String, List<String>> index : indexes.entrySet()) {
+                    if (functional.contains(index.getKey())) {
+                        continue;
+                    }
+                    try {
+                        stmt.executeUpdate("ALTER TABLE " + spec.name() + " DROP INDEX `" + index.getKey() + "`");
+                        dropped.add(new IndexDef(index.getKey(), index.getValue()));
+                    } catch (SQLException e) {
+                        if (e.getErrorCode() != ER_DROP_INDEX_FK) {
+                            restoreIndexes(spec, dropped);
+                            throw e;
+                        }
+                        System.out.println("Keeping index " + index.getKey() + " (needed by a foreign key)");
+                    }
+                }
+            }
+        }
+        System.out.println("✓ Dropped " + dropped.size() + " secondary indexes on " + spec.name());
+        return dropped;
+    }
+
+    // One ALTER TABLE, so InnoDB builds every index in a single sorted pass over the table
+    private static void restoreIndexes(TableSpec spec, List<IndexDef> indexes) throws SQLException {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        StringJoiner clauses = new StringJoiner(", ");
+        for (IndexDef index : indexes) {
+            clauses.add("ADD INDEX `" + index.name() + "` (" + String.join(", ", index.parts()) + ")");
+        }
+        long start = System.nanoTime();
+        try (Connection conn = ShipmentQueries.connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + spec.name() + " " + clauses);
+        }
+        System.out.printf("✓ Rebuilt %d secondary indexes on %s in %.1f s%n",
+            indexes.size(), spec.name(), (System.nanoTime() - start) / 1e9);
+    }
+
+    // ---- Encoding ----
+
+    // Values of one row arrive in column order, followed by endRow()
+    private interface RowEncoder {
+        void begin() throws IOException;
+
+        void putNull(int column) throws IOException;
+
+        void putInt(int column, int value) throws IOException;
+
+        void putString(int column, String value) throws IOException;
+
+        // Seconds since 1970-01-01T00:00 of the value as stored (no time zone shift)
+        void putDateTime(int column, long epochSecond) throws IOException;
+
+        void endRow() throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private static final class CsvEncoder implements RowEncoder {
+        private final ByteSink sink;
+        private final List<Column> columns;
+        private final boolean header;
+
+        CsvEncoder(ByteSink sink, List<Column> columns, boolean header) {
+            this.sink = sink;
+            this.columns = columns;
+            this.header = header;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            if (header) {
+                for (int i = 0; i < columns.size(); i++) {
+                    separator(i);
+                    sink.putUtf8(columns.get(i).name());
+                }
+                sink.put((byte) '\n');
+            }
+        }
+
+        @Override
+        public void putNull(int column) throws IOException {
+            separator(column);
+            sink.put((byte) '\\');
+            sink.put((byte) 'N');
+        }
+
+        @Override
+        public void putInt(int column, int value) throws IOException {
+            separator(column);
+            sink.putDecimal(value);
+        }
+
+        @Override
+        public void putString(int column, String value) throws IOException {
+            separator(column);
+            sink.put((byte) '"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"', '\\' -> {
+                        sink.put((byte) '\\');
+                        sink.put((byte) c);
+                    }
+                    case '\n' -> {
+                        sink.put((byte) '\\');
+                        sink.put((byte) 'n');
+                    }
+                    case '\r' -> {
+                        sink.put((byte) '\\');
+                        sink.put((byte) 'r');
+                    }
+                    case '\0' -> {
+                        sink.put((byte) '\\');
+                        sink.put((byte) '0');
+                    }
+                    default -> {
+                        if (c < 0x80) {
+                            sink.put((byte) c);
+                        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                            sink.putCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+                        } else {
+                            sink.putCodePoint(c);
+                        }
+                    }
+                }
+            }
+            sink.put((byte) '"');
+        }
+
+        @Override
+        public void putDateTime(int column, long epochSecond) throws IOException {
+            separator(column);
+            LocalDateTime t = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+            sink.putDigits(t.getYear(), 4);
+            sink.put((byte) '-');
+            sink.putDigits(t.getMonthValue(), 2);
+            sink.put((byte) '-');
+            sink.putDigits(t.getDayOfMonth(), 2);
+            sink.put((byte) ' ');
+            sink.putDigits(t.getHour(), 2);
+            sink.put((byte) ':');
+            sink.putDigits(t.getMinute(), 2);
+            sink.put((byte) ':');
+            sink.putDigits(t.getSecond(), 2);
+        }
+
+        @Override
+        public void endRow() throws IOException {
+            sink.put((byte) '\n');
+        }
+
+        @Override
+        public void end() {
+        }
+
+        private void separator(int column) throws IOException {
+            if (column > 0) {
+                sink.put((byte) ',');
+            }
+        }
+    }
+
+    private static final class BinaryEncoder implements RowEncoder {
+        private final ByteSink sink;
+        private final List<Column> columns;
+        private final Block block;
+
+        BinaryEncoder(ByteSink sink, List<Column> columns) {
+            this.sink = sink;
+            this.columns = columns;
+            this.block = new Block(columns);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            sink.put(MAGIC);
+            sink.put((byte) VERSION);
+            sink.putVarInt(columns.size());
+            for (Column column : columns) {
+                sink.put((byte) column.type().ordinal());
+                sink.putString(column.name());
+            }
+        }
+
+        @Override
+        public void putNull(int column) {
+            block.nulls[column][block.rows] = true;
+        }
+
+        @Override
+        public void putInt(int column, int value) {
+            block.nulls[column][block.rows] = false;
+            block.ints[column][block.rows] = value;
+        }
+
+        @Override
+        public void putString(int column, String value) {
+            block.nulls[column][block.rows] = false;
+            block.strings[column][block.rows] = value;
+        }
+
+        @Override
+        public void putDateTime(int column, long epochSecond) {
+            block.nulls[column][block.rows] = false;
+            block.seconds[column][block.rows] = epochSecond;
+        }
+
+        @Override
+        public void endRow() throws IOException {
+            if (++block.rows == BLOCK_ROWS) {
+                block.write(sink);
+            }
+        }
+
+        @Override
+        public void end() throws IOException {
+            if (block.rows > 0) {
+                block.write(sink);
+            }
+            sink.putInt(0);
+        }
+    }
+
+    // Up to BLOCK_ROWS rows held column by column, as written to and read from binary files
+    private static final class Block {
+        final List<Column> columns;
+        final boolean[][] nulls;
+        final int[][] ints;
+        final long[][] seconds;
+        final String[][] strings;
+        int rows;
+
+        Block(List<Column> columns) {
+            this.columns = columns;
+            int n = columns.size();
+            nulls = new boolean[n][BLOCK_ROWS];
+            ints = new int[n][];
+            seconds = new long[n][];
+            strings = new String[n][];
+            for (int i = 0; i < n; i++) {
+                switch (columns.get(i).type()) {
+                    case INT -> ints[i] = new int[BLOCK_ROWS];
+                    case DATETIME -> seconds[i] = new long[BLOCK_ROWS];
+                    case STRING -> strings[i] = new String[BLOCK_ROWS];
+                }
+            }
+        }
+
+        void write(ByteSink sink) throws IOException {
+            sink.putInt(rows);
+            for (int c = 0; c < columns.size(); c++) {
+                boolean[] isNull = nulls[c];
+                for (int i = 0; i < rows; i += 8) {
+                    int bits = 0;
+                    for (int j = 0; j < 8 && i + j < rows; j++) {
+                        if (isNull[i + j]) {
+                            bits |= 1 << j;
+                        }
+                    }
+                    sink.put((byte) bits);
+                }
+                for (int i = 0; i < rows; i++) {
+                    if (isNull[i]) {
+                        continue;
+                    }
+                    switch (columns.get(c).type()) {
+                        case INT -> sink.putInt(ints[c][i]);
+                        case DATETIME -> sink.putLong(seconds[c][i]);
+                        case STRING -> sink.putString(strings[c][i]);
+                    }
+                }
+                if (strings[c] != null) {
+                    Arrays.fill(strings[c], 0, rows, null);
+                }
+            }
+            rows = 0;
+        }
+
+        // False at the terminating empty block
+        boolean read(ByteSource source) throws IOException {
+            rows = source.getInt();
+            if (rows < 0 || rows > BLOCK_ROWS) {
+                throw new IOException("Corrupt block header: " + rows + " rows");
+            }
+            for (int c = 0; c < columns.size(); c++) {
+                boolean[] isNull = nulls[c];
+                for (int i = 0; i < rows; i += 8) {
+                    int bits = source.get();
+                    for (int j = 0; j < 8 && i + j < rows; j++) {
+                        isNull[i + j] = (bits & (1 << j)) != 0;
+                    }
+                }
+                for (int i = 0; i < rows; i++) {
+                    if (isNull[i]) {
+                        continue;
+                    }
+                    switch (columns.get(c).type()) {
+                        case INT -> ints[c][i] = source.getInt();
+                        case DATETIME -> seconds[c][i] = source.getLong();
+                        case STRING -> strings[c][i] = source.getString();
+                    }
+                }
+            }
+            return rows > 0;
+        }
+
+        void emitRow(int row, RowEncoder out) throws IOException {
+            for (int c = 0; c < columns.size(); c++) {
+                if (nulls[c][row]) {
+                    out.putNull(c);
+                    continue;
+                }
+                switch (columns.get(c).type()) {
+                    case INT -> out.putInt(c, ints[c][row]);
+                    case DATETIME -> out.putDateTime(c, seconds[c][row]);
+                    case STRING -> out.putString(c, strings[c][row]);
+                }
+            }
+            out.endRow();
+        }
+    }
+
+    // Buffered byte output with the encodings both formats need; subclasses decide
+    // what happens when the buffer fills
+    private abstract static class ByteSink {
+        protected ByteBuffer buf;
+
+        ByteSink(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        // Afterwards at least bytes are free in buf
+        protected abstract void makeRoom(int bytes) throws IOException;
+
+        final void put(byte b) throws IOException {
+            if (!buf.hasRemaining()) {
+                makeRoom(1);
+            }
+            buf.put(b);
+        }
+
+        final void put(byte[] bytes) throws IOException {
+            for (byte b : bytes) {
+                put(b);
+            }
+        }
+
+        final void putInt(int value) throws IOException {
+            if (buf.remaining() < 4) {
+                makeRoom(4);
+            }
+            buf.putInt(value);
+        }
+
+        final void putLong(long value) throws IOException {
+            if (buf.remaining() < 8) {
+                makeRoom(8);
+            }
+            buf.putLong(value);
+        }
+
+        final void putVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        // Varint byte length followed by UTF-8
+        final void putString(String value) throws IOException {
+            putVarInt(utf8Length(value));
+            putUtf8(value);
+        }
+
+        final void putUtf8(String value) throws IOException {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    put((byte) c);
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    putCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+                } else {
+                    putCodePoint(c);
+                }
+            }
+        }
+
+        // Unpaired surrogates are written as '?', as String.getBytes does
+        final void putCodePoint(int cp) throws IOException {
+            if (cp < 0x80) {
+                put((byte) cp);
+            } else if (cp < 0x800) {
+                put((byte) (0xC0 | (cp >> 6)));
+                put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate((char) cp) && cp <= 0xFFFF) {
+                put((byte) '?');
+            } else if (cp < 0x10000) {
+                put((byte) (0xE0 | (cp >> 12)));
+                put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                put((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                put((byte) (0xF0 | (cp >> 18)));
+                put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                put((byte) (0x80 | (cp & 0x3F)));
+            }
+        }
+
+        final void putDecimal(int value) throws IOException {
+            if (value < 0) {
+                put((byte) '-');
+                if (value == Integer.MIN_VALUE) {
+                    put("2147483648".getBytes(StandardCharsets.US_ASCII));
+                    return;
+                }
+                value = -value;
+            }
+            int digits = 1;
+            for (int v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            putDigits(value, digits);
+        }
+
+        // Zero-padded to width
+        final void putDigits(int value, int width) throws IOException {
+            if (buf.remaining() < width) {
+                makeRoom(width);
+            }
+            int at = buf.position();
+            for (int i = width - 1; i >= 0; i--) {
+                buf.put(at + i, (byte) ('0' + value % 10));
+                value /= 10;
+            }
+            buf.position(at + width);
+        }
+
+        private static int utf8Length(String value) {
+            int bytes = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    bytes++;
+                } else if (c < 0x800) {
+                    bytes += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    bytes += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    bytes++;
+                } else {
+                    bytes += 3;
+                }
+            }
+            return bytes;
+        }
+    }
+
+    // Direct buffer drained into the file whenever it fills
+    private static final class ChannelSink extends ByteSink {
+        private final FileChannel channel;
+
+        ChannelSink(FileChannel channel) {
+            super(ByteBuffer.allocateDirect(BUFFER_BYTES));
+            this.channel = channel;
+        }
+
+        @Override
+        protected void makeRoom(int bytes) throws IOException {
+            flush();
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+    }
+
+    // Heap buffer that grows, holding one chunk for LOAD DATA
+    private static final class MemorySink extends ByteSink {
+        MemorySink(int initialBytes) {
+            super(ByteBuffer.allocate(initialBytes));
+        }
+
+        @Override
+        protected void makeRoom(int bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+            buf.flip();
+            larger.put(buf);
+            buf = larger;
+        }
+
+        int size() {
+            return buf.position();
+        }
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf.array(), 0, buf.position());
+        }
+    }
+
+    // Sequential reader over a channel for binary imports
+    private static final class ByteSource {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_BYTES);
+
+        ByteSource(FileChannel channel) {
+            this.channel = channel;
+            buf.flip();
+        }
+
+        private void require(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) {
+                return;
+            }
+            buf.compact();
+            while (buf.position() < bytes) {
+                if (channel.read(buf) < 0) {
+                    throw new EOFException("Binary export is truncated");
+                }
+            }
+            buf.flip();
+        }
+
+        byte get() throws IOException {
+            require(1);
+            return buf.get();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buf.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return buf.getLong();
+        }
+
+        int getVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt varint");
+        }
+
+        String getString() throws IOException {
+            int length = getVarInt();
+            byte[] bytes = new byte[length];
+            int off = 0;
+            while (off < length) {
+                require(1);
+                int n = Math.min(buf.remaining(), length - off);
+                buf.get(bytes, off, n);
+                off += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // --name value pairs; a flag followed by another option or nothing is stored with value "true"
+    private static Map<String, String> parseOptions(String[] args, int from) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                boolean hasValue = i + 1 < args.length && !args[i + 1].startsWith("--");
+                options.put(args[i].substring(2), hasValue ? args[++i] : "true");
+            }
+        }
+        return options;
+    }
+}
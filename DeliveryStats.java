@@ -0,0 +1,258 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Running per-destination delivery-time aggregates behind the hub delivery report.
+// hub_delivery_stats keeps count and hour sums for averages; hub_delivery_histogram
+// keeps counts per delivery-time bucket for percentiles. Both are updated in the
+// same transaction that sets actual_delivery, so the report reads O(hubs) rows
+// instead of re-scanning every delivered shipment.
+public class DeliveryStats {
+
+    // A shipment that has just been given its actual_delivery time
+    public record Delivery(int destinationLocationId, Timestamp createdAt, Timestamp estimatedDelivery,
+                           Timestamp actualDelivery) {
+    }
+
+    // Upper bounds (exclusive) of the delivery-time buckets, in hours; the last bucket is open-ended
+    static final int[] BUCKET_BOUNDS_HOURS = {
+        1, 2, 4, 6, 8, 12, 16, 20, 24, 30, 36, 42, 48, 60, 72, 84, 96, 120, 144, 168, 216, 264, 336, 504, 720
+    };
+
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    // Bumped whenever this process changes the aggregates, so readers that keep
+    // derived copies (LocationRollups) know to reload them
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    private DeliveryStats() {
+    }
+
+    static long version() {
+        return VERSION.get();
+    }
+
+    // Add deliveries to the running aggregates on the caller's transaction
+    public static void recordDeliveries(Connection conn, List<Delivery> deliveries) throws SQLException {
+        if (deliveries.isEmpty()) {
+            return;
+        }
+
+        // destination -> {count, sumTotal, sumVariance, varianceCount}; TreeMap keeps lock order stable
+        Map<Integer, long[]> totals = new TreeMap<>();
+        Map<Long, Integer> buckets = new TreeMap<>();
+        for (Delivery d : deliveries) {
+            long totalHours = hoursBetween(d.createdAt(), d.actualDelivery());
+            long[] t = totals.computeIfAbsent(d.destinationLocationId(), k -> new long[4]);
+            t[0]++;
+            t[1] += totalHours;
+            if (d.estimatedDelivery() != null) {
+                t[2] += hoursBetween(d.estimatedDelivery(), d.actualDelivery());
+                t[3]++;
+            }
+            long key = ((long) d.destinationLocationId() << 16) | bucketOf(totalHours);
+            buckets.merge(key, 1, Integer::sum);
+        }
+
+        StringBuilder sql = new StringBuilder("""
+            INSERT INTO hub_delivery_stats
+                (destination_location_id, delivered_count, sum_total_hours, sum_variance_hours, variance_count)
+            VALUES""");
+        for (int i = 0; i < totals.size(); i++) {
+            sql.append(i == 0 ? " (?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+        }
+        sql.append("""
+             ON DUPLICATE KEY UPDATE
+                delivered_count = delivered_count + VALUES(delivered_count),
+                sum_total_hours = sum_total_hours + VALUES(sum_total_hours),
+                sum_variance_hours = sum_variance_hours + VALUES(sum_variance_hours),
+                variance_count = variance_count + VALUES(variance_count)
+            """);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Map.Entry<Integer, long[]> e : totals.entrySet()) {
+                long[] t = e.getValue();
+                pstmt.setInt(p++, e.getKey());
+                pstmt.setLong(p++, t[0]);
+                pstmt.setLong(p++, t[1]);
+                pstmt.setLong(p++, t[2]);
+                pstmt.setLong(p++, t[3]);
+            }
+            pstmt.executeUpdate();
+        }
+
+        StringBuilder histSql = new StringBuilder(
+            "INSERT INTO hub_delivery_histogram (destination_location_id, bucket, shipment_count) VALUES ");
+        for (int i = 0; i < buckets.size(); i++) {
+            histSql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        histSql.append(" ON DUPLICATE KEY UPDATE shipment_count = shipment_count + VALUES(shipment_count)");
+        try (PreparedStatement pstmt = conn.prepareStatement(histSql.toString())) {
+            int p = 1;
+            for (Map.Entry<Long, Integer> e : buckets.entrySet()) {
+                pstmt.setInt(p++, (int) (e.getKey() >>> 16));
+                pstmt.setInt(p++, (int) (e.getKey() & 0xFFFF));
+                pstmt.setInt(p++, e.getValue());
+            }
+            pstmt.executeUpdate();
+        }
+        VERSION.incrementAndGet();
+    }
+
+    static final String HISTOGRAM_QUERY = """
+        SELECT destination_location_id, bucket, shipment_count
+        FROM hub_delivery_histogram
+        ORDER BY destination_location_id, bucket
+    """;
+
+    // Per-destination delivery-time percentiles in hours: {p50, p90, p99}
+    // timeoutSeconds limits the query, 0 for no limit; it is cleared again before
+    // the statement can go back to the connection's statement cache
+    public static Map<Integer, double[]> loadPercentiles(Connection conn, int timeoutSeconds) throws SQLException {
+        Map<Integer, double[]> result = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(HISTOGRAM_QUERY)) {
+            pstmt.setQueryTimeout(timeoutSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int current = -1;
+                long[] counts = null;
+                while (rs.next()) {
+                    int destination = rs.getInt(1);
+                    if (destination != current) {
+                        if (counts != null) {
+                            result.put(current, percentiles(counts));
+                        }
+                        current = destination;
+                        counts = new long[BUCKET_BOUNDS_HOURS.length + 1];
+                    }
+                    int bucket = rs.getInt(2);
+                    if (bucket >= 0 && bucket < counts.length) {
+                        counts[bucket] += rs.getLong(3);
+                    }
+                }
+                if (counts != null) {
+                    result.put(current, percentiles(counts));
+                }
+            } finally {
+                pstmt.setQueryTimeout(0);
+            }
+        }
+        return result;
+    }
+
+    // Recompute both tables from shipments, e.g. after deliveries were recorded outside the application
+    public static long rebuild() throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("rebuild.hubDeliveryStats");
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM hub_delivery_histogram");
+                stmt.executeUpdate("DELETE FROM hub_delivery_stats");
+                long rows = stmt.executeUpdate("""
+                    INSERT INTO hub_delivery_stats
+                        (destination_location_id, delivered_count, sum_total_hours, sum_variance_hours, variance_count)
+                    SELECT destination_location_id, COUNT(*),
+                           SUM(TIMESTAMPDIFF(HOUR, created_at, actual_delivery)),
+                           COALESCE(SUM(TIMESTAMPDIFF(HOUR, estimated_delivery, actual_delivery)), 0),
+                           COUNT(estimated_delivery)
+                    FROM shipments
+                    WHERE actual_delivery IS NOT NULL
+                    GROUP BY destination_location_id
+                """);
+                stmt.executeUpdate(
+                    "INSERT INTO hub_delivery_histogram (destination_location_id, bucket, shipment_count) "
+                    + "SELECT destination_location_id, b, COUNT(*) FROM ("
+                    + "SELECT destination_location_id, " + bucketCaseSql("TIMESTAMPDIFF(HOUR, created_at, actual_delivery)")
+                    + " AS b FROM shipments WHERE actual_delivery IS NOT NULL) t "
+                    + "GROUP BY destination_location_id, b");
+                conn.commit();
+                VERSION.incrementAndGet();
+                sample.finish(rows);
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Deliveries among a batch of newly inserted shipments
+    static List<Delivery> deliveriesOf(List<? extends BulkLoader.ShipmentRecord> shipments) {
+        List<Delivery> deliveries = new ArrayList<>();
+        for (BulkLoader.ShipmentRecord s : shipments) {
+            if (s.actualDelivery() != null && s.createdAt() != null) {
+                deliveries.add(new Delivery(s.destinationLocationId(), s.createdAt(),
+                    s.estimatedDelivery(), s.actualDelivery()));
+            }
+        }
+        return deliveries;
+    }
+
+    static int bucketOf(long hours) {
+        for (int i = 0; i < BUCKET_BOUNDS_HOURS.length; i++) {
+            if (hours < BUCKET_BOUNDS_HOURS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_HOURS.length;
+    }
+
+    static double[] percentiles(long[] counts) {
+        return percentiles(counts, BUCKET_BOUNDS_HOURS);
+    }
+
+    // {p50, p90, p99} by linear interpolation inside the bucket holding each rank;
+    // bounds are the exclusive upper bounds and counts has one more, open-ended bucket
+    static double[] percentiles(long[] counts, int[] bounds) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        double[] quantiles = {0.50, 0.90, 0.99};
+        double[] result = new double[quantiles.length];
+        if (total == 0) {
+            return result;
+        }
+
+        for (int q = 0; q < quantiles.length; q++) {
+            double rank = quantiles[q] * total;
+            long seen = 0;
+            for (int b = 0; b < counts.length; b++) {
+                if (counts[b] == 0) {
+                    continue;
+                }
+                if (seen + counts[b] >= rank) {
+                    double lower = b == 0 ? 0 : bounds[b - 1];
+                    // The open-ended last bucket is reported at its lower bound
+                    double upper = b < bounds.length ? bounds[b] : lower;
+                    double fraction = (rank - seen) / counts[b];
+                    result[q] = lower + (upper - lower) * fraction;
+                    break;
+                }
+                seen += counts[b];
+            }
+        }
+        return result;
+    }
+
+    // Same truncation toward zero as MySQL's TIMESTAMPDIFF(HOUR, ...)
+    private static long hoursBetween(Timestamp from, Timestamp to) {
+        return (to.getTime() - from.getTime()) / HOUR_MILLIS;
+    }
+
+    private static String bucketCaseSql(String hoursExpr) {
+        StringBuilder sb = new StringBuilder("CASE");
+        for (int i = 0; i < BUCKET_BOUNDS_HOURS.length; i++) {
+            sb.append(" WHEN ").append(hoursExpr).append(" < ").append(BUCKET_BOUNDS_HOURS[i])
+              .append(" THEN ").append(i);
+        }
+        sb.append(" ELSE ").append(BUCKET_BOUNDS_HOURS.length).append(" END");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,454 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Assigns pending shipments to drivers without exceeding
+// drivers.max_active_shipments. Each driver's active load is an in-memory
+// counter reserved with compare-and-set, so any number of dispatcher threads
+// can assign at once without over-allocating a driver. Drivers who have
+// carried shipments from a shipment's origin before are tried first.
+// Counters are loaded from the database (active assignments per driver) on
+// first use and again after anything else writes drivers or assignments;
+// assignments made here are written in batched transactions.
+public class DriverAssignmentEngine {
+
+    public record PendingShipment(int shipmentId, int originLocationId, Timestamp estimatedDelivery) {
+    }
+
+    public record Assignment(int driverId, int shipmentId, Timestamp estimatedDelivery) {
+    }
+
+    // unassigned: no driver had capacity, or the shipment was taken by someone else first
+    public record Result(List<Assignment> assigned, List<PendingShipment> unassigned) {
+    }
+
+    // Snapshot of driver capacity, used by the console report
+    public record Stats(int drivers, long capacity, long active, int fullDrivers, int originsWithAffinity) {
+    }
+
+    private static final class DriverLoad {
+        final int driverId;
+        final int capacity;
+        final AtomicInteger active;
+
+        DriverLoad(int driverId, int capacity, int active) {
+            this.driverId = driverId;
+            this.capacity = capacity;
+            this.active = new AtomicInteger(active);
+        }
+
+        boolean tryReserve() {
+            int current = active.get();
+            while (current < capacity) {
+                if (active.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                current = active.get();
+            }
+            return false;
+        }
+
+        void release() {
+            active.updateAndGet(n -> Math.max(0, n - 1));
+        }
+    }
+
+    // Replaced as a whole on reconcile; byOrigin lists drivers by how often they served that origin
+    private record State(Map<Integer, DriverLoad> drivers, DriverLoad[] all, Map<Integer, DriverLoad[]> byOrigin) {
+    }
+
+    private static final String DRIVER_LOAD_QUERY = """
+        SELECT d.driver_id, d.max_active_shipments, COUNT(da.assignment_id) AS active_assignments
+        FROM drivers d
+        LEFT JOIN driver_assignments da ON da.driver_id = d.driver_id AND da.status = 'active'
+        GROUP BY d.driver_id, d.max_active_shipments
+        ORDER BY d.driver_id
+    """;
+
+    private static final String AFFINITY_QUERY = """
+        SELECT s.origin_location_id, da.driver_id, COUNT(*) AS assignments
+        FROM driver_assignments da
+        JOIN shipments s ON s.shipment_id = da.shipment_id
+        GROUP BY s.origin_location_id, da.driver_id
+        ORDER BY s.origin_location_id, assignments DESC, da.driver_id
+    """;
+
+    static final String UNASSIGNED_QUERY = """
+        SELECT s.shipment_id, s.origin_location_id, s.estimated_delivery
+        FROM shipments s
+        WHERE s.current_status = 'pending' AND s.shipment_id > ?
+          AND NOT EXISTS (SELECT 1 FROM driver_assignments da
+                          WHERE da.shipment_id = s.shipment_id AND da.status = 'active')
+        ORDER BY s.shipment_id
+        LIMIT ?
+    """;
+
+    private static final String INSERT_COLUMNS =
+        "INSERT INTO driver_assignments (driver_id, shipment_id, assigned_at, estimated_delivery, status) VALUES ";
+
+    // Matches the column default for drivers inserted with max_active_shipments NULL
+    private static final int DEFAULT_CAPACITY = 5;
+
+    private static DriverAssignmentEngine shared;
+
+    private final int batchSize;
+    private final int affinityDrivers;
+    // Assigners hold the read lock from reservation to commit, so a reconcile never
+    // replaces the counters while a reservation is still in flight
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Shipments some thread is assigning right now
+    private final Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+    // Spreads concurrent dispatchers over different drivers
+    private final AtomicInteger cursor = new AtomicInteger();
+    private volatile State state;
+    private volatile boolean stale = true;
+
+    public DriverAssignmentEngine(int batchSize, int affinityDrivers) {
+        if (batchSize < 1 || affinityDrivers < 0) {
+            throw new IllegalArgumentException("Invalid assignment settings: batchSize=" + batchSize
+                + ", affinityDrivers=" + affinityDrivers);
+        }
+        this.batchSize = batchSize;
+        this.affinityDrivers = affinityDrivers;
+    }
+
+    public static synchronized DriverAssignmentEngine shared() {
+        if (shared == null) {
+            shared = new DriverAssignmentEngine(
+                Integer.getInteger("courier.assign.batchSize", 200),
+                Integer.getInteger("courier.assign.affinityDrivers", 5));
+        }
+        return shared;
+    }
+
+    // Drivers or assignments were written elsewhere: reload counters before the next assignment
+    public static synchronized void markStale() {
+        if (shared != null) {
+            shared.stale = true;
+        }
+    }
+
+    // Assignments of these drivers were completed or cancelled in the database
+    public static void released(List<Integer> driverIds) {
+        DriverAssignmentEngine engine;
+        synchronized (DriverAssignmentEngine.class) {
+            engine = shared;
+        }
+        if (engine != null) {
+            for (int driverId : driverIds) {
+                engine.release(driverId);
+            }
+        }
+    }
+
+    // Marks the active assignments of delivered shipments completed, inside the caller's
+    // transaction; returns the drivers to pass to released() once it commits
+    static List<Integer> completeAssignments(Connection conn, Set<Integer> shipmentIds) throws SQLException {
+        List<Integer> driverIds = new ArrayList<>();
+        if (shipmentIds.isEmpty()) {
+            return driverIds;
+        }
+        String in = placeholders(shipmentIds.size());
+        try (PreparedStatement select = conn.prepareStatement(
+                 "SELECT driver_id FROM driver_assignments WHERE status = 'active' AND shipment_id IN ("
+                 + in + ") FOR UPDATE");
+             PreparedStatement update = conn.prepareStatement(
+                 "UPDATE driver_assignments SET status = 'completed' WHERE status = 'active' AND shipment_id IN ("
+                 + in + ")")) {
+            int p = 1;
+            for (int id : shipmentIds) {
+                select.setInt(p, id);
+                update.setInt(p, id);
+                p++;
+            }
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    driverIds.add(rs.getInt(1));
+                }
+            }
+            update.executeUpdate();
+        }
+        return driverIds;
+    }
+
+    // Assigns up to limit pending shipments that have no active driver, oldest first
+    public Result assignPending(int limit) throws SQLException {
+        List<PendingShipment> pending = new ArrayList<>();
+        int afterId = 0;
+        QueryMetrics.Sample sample = QueryMetrics.start("unassignedPending");
+        try (Connection conn = ShipmentQueries.connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(UNASSIGNED_QUERY)) {
+            while (pending.size() < limit) {
+                int want = Math.min(batchSize, limit - pending.size());
+                pstmt.setInt(1, afterId);
+                pstmt.setInt(2, want);
+                int read = 0;
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        afterId = rs.getInt("shipment_id");
+                        pending.add(new PendingShipment(afterId, rs.getInt("origin_location_id"),
+                            rs.getTimestamp("estimated_delivery")));
+                        read++;
+                    }
+                }
+                if (read < want) {
+                    break;
+                }
+            }
+            sample.finish(pending.size());
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+        return assign(pending);
+    }
+
+    // Safe to call from many threads; each batch of up to batchSize shipments commits on its own
+    public Result assign(List<PendingShipment> shipments) throws SQLException {
+        if (stale) {
+            reconcile();
+        }
+        List<Assignment> assigned = new ArrayList<>();
+        List<PendingShipment> unassigned = new ArrayList<>();
+        for (int from = 0; from < shipments.size(); from += batchSize) {
+            List<PendingShipment> batch = shipments.subList(from, Math.min(shipments.size(), from + batchSize));
+            lock.readLock().lock();
+            try {
+                assignBatch(batch, assigned, unassigned);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return new Result(assigned, unassigned);
+    }
+
+    // Reloads capacity, active load and origin affinity from the database
+    public void reconcile() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            stale = false;
+            try (Connection conn = ShipmentQueries.connect()) {
+                state = loadState(conn);
+            }
+        } catch (SQLException e) {
+            stale = true;
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void release(int driverId) {
+        State s = state;
+        DriverLoad load = s != null ? s.drivers().get(driverId) : null;
+        if (load != null) {
+            load.release();
+        }
+    }
+
+    // Null until the first assignment or reconcile
+    public Stats getStats() {
+        State s = state;
+        if (s == null) {
+            return null;
+        }
+        long capacity = 0;
+        long active = 0;
+        int full = 0;
+        for (DriverLoad load : s.all()) {
+            int current = load.active.get();
+            capacity += load.capacity;
+            active += current;
+            if (current >= load.capacity) {
+                full++;
+            }
+        }
+        return new Stats(s.all().length, capacity, active, full, s.byOrigin().size());
+    }
+
+    private void assignBatch(List<PendingShipment> batch, List<Assignment> assigned,
+                             List<PendingShipment> unassigned) throws SQLException {
+        State s = state;
+        Map<Integer, PendingShipment> byShipment = new HashMap<>();
+        Map<Integer, DriverLoad> reserved = new HashMap<>();
+        List<Integer> ownClaims = new ArrayList<>();
+        try {
+            for (PendingShipment shipment : batch) {
+                if (!claimed.add(shipment.shipmentId())) {
+                    unassigned.add(shipment);
+                    continue;
+                }
+                ownClaims.add(shipment.shipmentId());
+                DriverLoad driver = reserve(s, shipment.originLocationId());
+                if (driver == null) {
+                    unassigned.add(shipment);
+                    continue;
+                }
+                byShipment.put(shipment.shipmentId(), shipment);
+                reserved.put(shipment.shipmentId(), driver);
+            }
+            if (reserved.isEmpty()) {
+                return;
+            }
+
+            List<Assignment> written = persist(byShipment, reserved);
+            assigned.addAll(written);
+            for (Assignment a : written) {
+                reserved.remove(a.shipmentId());
+                byShipment.remove(a.shipmentId());
+            }
+            // Assigned or no longer pending in the database since they were read
+            unassigned.addAll(byShipment.values());
+        } finally {
+            for (DriverLoad driver : reserved.values()) {
+                driver.release();
+            }
+            claimed.removeAll(ownClaims);
+        }
+    }
+
+    // Drivers who know the origin first, best-ranked first until they are full,
+    // then anyone with spare capacity, rotating so the load spreads evenly
+    private DriverLoad reserve(State s, int originLocationId) {
+        DriverLoad[] preferred = s.byOrigin().get(originLocationId);
+        if (preferred != null) {
+            DriverLoad driver = reserveFrom(preferred, 0);
+            if (driver != null) {
+                return driver;
+            }
+        }
+        return reserveFrom(s.all(), cursor.getAndIncrement() & Integer.MAX_VALUE);
+    }
+
+    private static DriverLoad reserveFrom(DriverLoad[] drivers, int start) {
+        for (int i = 0; i < drivers.length; i++) {
+            DriverLoad driver = drivers[(start + i) % drivers.length];
+            if (driver.tryReserve()) {
+                return driver;
+            }
+        }
+        return null;
+    }
+
+    // One transaction: lock the shipments, skip any that stopped being assignable, insert the rest
+    private static List<Assignment> persist(Map<Integer, PendingShipment> byShipment,
+                                            Map<Integer, DriverLoad> reserved) throws SQLException {
+        List<Assignment> written = new ArrayList<>();
+        QueryMetrics.Sample sample = QueryMetrics.start("assign.persist");
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            conn.setAutoCommit(false);
+            try {
+                for (int shipmentId : lockAssignable(conn, reserved.keySet())) {
+                    written.add(new Assignment(reserved.get(shipmentId).driverId, shipmentId,
+                        byShipment.get(shipmentId).estimatedDelivery()));
+                }
+                if (!written.isEmpty()) {
+                    insert(conn, written);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            sample.finish(written.size());
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+        return written;
+    }
+
+    private static List<Integer> lockAssignable(Connection conn, Set<Integer> shipmentIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(new TreeSet<>(shipmentIds));
+        String sql = """
+            SELECT s.shipment_id
+            FROM shipments s
+            WHERE s.current_status = 'pending' AND s.shipment_id IN (%s)
+              AND NOT EXISTS (SELECT 1 FROM driver_assignments da
+                              WHERE da.shipment_id = s.shipment_id AND da.status = 'active')
+            ORDER BY s.shipment_id
+            FOR UPDATE
+        """.formatted(placeholders(ids.size()));
+        List<Integer> assignable = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    assignable.add(rs.getInt(1));
+                }
+            }
+        }
+        return assignable;
+    }
+
+    private static void insert(Connection conn, List<Assignment> rows) throws SQLException {
+        StringBuilder sql = new StringBuilder(INSERT_COLUMNS);
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, 'active')" : ", (?, ?, ?, ?, 'active')");
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Assignment a : rows) {
+                pstmt.setInt(p++, a.driverId());
+                pstmt.setInt(p++, a.shipmentId());
+                pstmt.setTimestamp(p++, now);
+                pstmt.setTimestamp(p++, a.estimatedDelivery());
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    private State loadState(Connection conn) throws SQLException {
+        Map<Integer, DriverLoad> drivers = new HashMap<>();
+        List<DriverLoad> all = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(DRIVER_LOAD_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                int capacity = rs.getInt("max_active_shipments");
+                if (rs.wasNull()) {
+                    capacity = DEFAULT_CAPACITY;
+                }
+                DriverLoad load = new DriverLoad(rs.getInt("driver_id"), capacity, rs.getInt("active_assignments"));
+                drivers.put(load.driverId, load);
+                all.add(load);
+            }
+        }
+
+        Map<Integer, List<DriverLoad>> byOrigin = new HashMap<>();
+        if (affinityDrivers > 0) {
+            try (PreparedStatement pstmt = conn.prepareStatement(AFFINITY_QUERY);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    List<DriverLoad> list = byOrigin.computeIfAbsent(rs.getInt("origin_location_id"),
+                        k -> new ArrayList<>());
+                    DriverLoad load = drivers.get(rs.getInt("driver_id"));
+                    if (load != null && list.size() < affinityDrivers) {
+                        list.add(load);
+                    }
+                }
+            }
+        }
+
+        Map<Integer, DriverLoad[]> origins = new HashMap<>();
+        byOrigin.forEach((origin, list) -> origins.put(origin, list.toArray(new DriverLoad[0])));
+        return new State(Map.copyOf(drivers), all.toArray(new DriverLoad[0]), Map.copyOf(origins));
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,539 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Headless server mode: the reports in functions as JSON over HTTP, on the
+// JDK's built-in HttpServer. Each request runs on its own virtual thread when
+// the runtime has them (JDK 21+), so a request blocked on JDBC does not hold a
+// platform thread; older runtimes fall back to a fixed pool. Connections come
+// from the shared pool and tracking lookups go through TrackingCache.
+//
+// Usage: COURIER_DB_PASSWORD=... java HttpQueryService
+//   GET /shipments/{id}/tracking       tracking view and status history
+//   GET /shipments/tracking?ids=1,2,3  tracking views for many shipments in one request
+//   GET /drivers/{id}/pending          pending shipments for a driver
+//   GET /shipments/delayed             currently delayed shipments (streamed)
+//   GET /shipments?pageToken=&pageSize= one page of all shipments
+//   GET /shipments/all                 every shipment (streamed from a cursor)
+//   GET /hubs/delivery-times           delivery time stats per destination
+//   GET /reports/daily-volume          shipments per day and origin, last 30 days
+//   GET /regions/{id}/delivery-times   delivery time stats for a location and its sub-locations (0 for all)
+//   GET /regions/{id}/daily-volume     shipments per day leaving a location or its sub-locations
+//   GET /reports/route-legs?limit=     busiest route legs with transit time percentiles
+//   GET /dashboard                     status counts, hub, delayed and volume reports at once
+//   GET /health                        pool and cache counters
+//   GET /metrics                       query metrics in Prometheus text format
+public class HttpQueryService {
+
+    private static final int PORT = Integer.getInteger("courier.http.port", 8080);
+    private static final int BACKLOG = Integer.getInteger("courier.http.backlog", 1024);
+    // Only used when virtual threads are unavailable
+    private static final int FALLBACK_THREADS = Integer.getInteger("courier.http.threads", 200);
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_TRACKING_IDS = Integer.getInteger("courier.http.maxTrackingIds", 1000);
+
+    private static final Pattern TRACKING = Pattern.compile("/shipments/(\\d+)/tracking");
+    private static final Pattern PENDING = Pattern.compile("/drivers/(\\d+)/pending");
+    private static final Pattern REGION_DELIVERY = Pattern.compile("/regions/(\\d+)/delivery-times");
+    private static final Pattern REGION_VOLUME = Pattern.compile("/regions/(\\d+)/daily-volume");
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public HttpQueryService(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (!create.setPasswordFromEnvironment()) {
+            return;
+        }
+        HttpQueryService service = new HttpQueryService(PORT);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop, "http-shutdown"));
+        service.start();
+        ShipmentArchiver.startIfEnabled();
+        System.out.println("✓ Query service listening on port " + PORT);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        create.shutdown();
+    }
+
+    // Virtual threads are looked up reflectively so the project still builds on JDK 17
+    static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads not available; using " + FALLBACK_THREADS + " request threads");
+            return Executors.newFixedThreadPool(FALLBACK_THREADS);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "Only GET is supported");
+            exchange.close();
+            return;
+        }
+        try {
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+            Matcher m;
+            if ((m = TRACKING.matcher(path)).matches()) {
+                tracking(exchange, Integer.parseInt(m.group(1)));
+            } else if ((m = PENDING.matcher(path)).matches()) {
+                pendingForDriver(exchange, Integer.parseInt(m.group(1)));
+            } else if ((m = REGION_DELIVERY.matcher(path)).matches()) {
+                regionDeliveryTimes(exchange, Integer.parseInt(m.group(1)));
+            } else if ((m = REGION_VOLUME.matcher(path)).matches()) {
+                regionDailyVolume(exchange, Integer.parseInt(m.group(1)));
+            } else if (path.equals("/shipments/tracking")) {
+                trackingBatch(exchange, query);
+            } else if (path.equals("/shipments/delayed")) {
+                delayed(exchange);
+            } else if (path.equals("/shipments/all")) {
+                allShipments(exchange);
+            } else if (path.equals("/shipments")) {
+                shipmentsPage(exchange, query);
+            } else if (path.equals("/hubs/delivery-times")) {
+                hubDeliveryTimes(exchange);
+            } else if (path.equals("/reports/daily-volume")) {
+                dailyVolume(exchange);
+            } else if (path.equals("/reports/route-legs")) {
+                routeLegs(exchange, query);
+            } else if (path.equals("/dashboard")) {
+                dashboard(exchange);
+            } else if (path.equals("/health")) {
+                health(exchange);
+            } else if (path.equals("/metrics")) {
+                metrics(exchange);
+            } else {
+                sendError(exchange, 404, "Unknown path: " + path);
+            }
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "Invalid number: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            // Bad page tokens and page sizes
+            sendError(exchange, 400, e.getMessage());
+        } catch (SQLTransientConnectionException e) {
+            // Pool exhausted: tell clients to retry rather than report a server fault
+            sendError(exchange, 503, e.getMessage());
+        } catch (SQLException | RowCursor.CursorException e) {
+            sendError(exchange, 500, e.getMessage());
+        } catch (IOException e) {
+            // Client went away mid-response; nothing left to tell it
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            sendError(exchange, 500, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        // Not reached when sendError aborts a streamed response, so its body is never terminated
+        exchange.close();
+    }
+
+    private void tracking(HttpExchange exchange, int shipmentId) throws IOException, SQLException {
+        Optional<ShipmentQueries.TrackingView> found = TrackingCache.shared().get(shipmentId);
+        if (found.isEmpty()) {
+            sendError(exchange, 404, "Shipment not found: " + shipmentId);
+            return;
+        }
+        JsonWriter json = begin(exchange);
+        writeTracking(json, found.get());
+        json.flush();
+    }
+
+    // ids=1,2,3: every view in one response, with cache misses fetched in one batch
+    private void trackingBatch(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (String part : query.getOrDefault("ids", "").split(",")) {
+            if (!part.isBlank()) {
+                ids.add(Integer.parseInt(part.trim()));
+            }
+        }
+        if (ids.isEmpty() || ids.size() > MAX_TRACKING_IDS) {
+            throw new IllegalArgumentException("ids must list 1 to " + MAX_TRACKING_IDS + " shipment IDs");
+        }
+        Map<Integer, ShipmentQueries.TrackingView> views = TrackingCache.shared().getAll(ids);
+        JsonWriter json = begin(exchange);
+        json.beginObject().name("items").beginArray();
+        for (ShipmentQueries.TrackingView v : views.values()) {
+            writeTracking(json, v);
+        }
+        json.endArray().name("notFound").beginArray();
+        for (int id : new LinkedHashSet<>(ids)) {
+            if (!views.containsKey(id)) {
+                json.value(id);
+            }
+        }
+        json.endArray().endObject();
+        json.flush();
+    }
+
+    private static void writeTracking(JsonWriter json, ShipmentQueries.TrackingView v) throws IOException {
+        json.beginObject()
+            .field("shipmentId", v.shipmentId())
+            .field("senderName", v.senderName())
+            .field("recipientName", v.recipientName())
+            .field("currentStatus", v.currentStatus())
+            .field("createdAt", v.createdAt())
+            .field("estimatedDelivery", v.estimatedDelivery())
+            .field("actualDelivery", v.actualDelivery())
+            .name("history").beginArray();
+        for (ShipmentQueries.StatusLogEntry e : v.history()) {
+            json.beginObject()
+                .field("updateTimestamp", e.updateTimestamp())
+                .field("status", e.statusUpdate())
+                .field("locationId", e.locationId())
+                .field("locationName", e.locationName())
+                .field("locationType", e.locationType())
+                .field("agentName", e.agentName())
+                .field("notes", e.notes())
+                .endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private void pendingForDriver(HttpExchange exchange, int driverId) throws IOException, SQLException {
+        List<ShipmentQueries.PendingShipment> rows = ShipmentQueries.getPendingShipmentsForDriver(driverId);
+        JsonWriter json = begin(exchange);
+        json.beginArray();
+        for (ShipmentQueries.PendingShipment p : rows) {
+            json.beginObject()
+                .field("shipmentId", p.shipmentId())
+                .field("senderName", p.senderName())
+                .field("recipientName", p.recipientName())
+                .field("currentStatus", p.currentStatus())
+                .field("createdAt", p.createdAt())
+                .field("estimatedDelivery", p.estimatedDelivery())
+                .field("origin", p.origin())
+                .field("destination", p.destination())
+                .endObject();
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    private void delayed(HttpExchange exchange) throws IOException, SQLException {
+        List<ShipmentQueries.DelayedShipment> rows = OverdueMonitor.delayedShipments();
+        JsonWriter json = begin(exchange);
+        json.beginArray();
+        for (ShipmentQueries.DelayedShipment d : rows) {
+            writeDelayed(json, d);
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    private void allShipments(HttpExchange exchange) throws IOException, SQLException {
+        try (RowCursor<ShipmentQueries.ShipmentSummary> rows = ShipmentQueries.streamAllShipments()) {
+            JsonWriter json = begin(exchange);
+            json.beginArray();
+            while (rows.hasNext()) {
+                writeSummary(json, rows.next());
+            }
+            json.endArray();
+            json.flush();
+        }
+    }
+
+    private void shipmentsPage(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        int pageSize = Integer.parseInt(query.getOrDefault("pageSize", String.valueOf(DEFAULT_PAGE_SIZE)));
+        ShipmentQueries.Page<ShipmentQueries.ShipmentSummary> page =
+            ShipmentQueries.listShipments(query.get("pageToken"), pageSize);
+        JsonWriter json = begin(exchange);
+        json.beginObject().name("items").beginArray();
+        for (ShipmentQueries.ShipmentSummary s : page.items()) {
+            writeSummary(json, s);
+        }
+        json.endArray().field("nextPageToken", page.nextToken()).endObject();
+        json.flush();
+    }
+
+    private void hubDeliveryTimes(HttpExchange exchange) throws IOException, SQLException {
+        List<ShipmentQueries.HubDeliveryStats> rows = ShipmentQueries.getAverageDeliveryTimePerHub();
+        JsonWriter json = begin(exchange);
+        writeHubStats(json, rows);
+        json.flush();
+    }
+
+    private void dailyVolume(HttpExchange exchange) throws IOException, SQLException {
+        List<ShipmentQueries.DailyVolume> rows = ShipmentQueries.getDailyShipmentVolumeByOrigin();
+        JsonWriter json = begin(exchange);
+        writeDailyVolume(json, rows);
+        json.flush();
+    }
+
+    // Unknown location IDs are a 400 through IllegalArgumentException
+    private void regionDeliveryTimes(HttpExchange exchange, int locationId) throws IOException, SQLException {
+        List<LocationRollups.RegionDeliveryStats> rows = LocationRollups.deliveryStats(locationId);
+        JsonWriter json = begin(exchange);
+        json.beginArray();
+        for (LocationRollups.RegionDeliveryStats r : rows) {
+            json.beginObject()
+                .field("locationId", r.locationId())
+                .field("locationName", r.locationName())
+                .field("locationType", r.locationType())
+                .field("depth", r.depth())
+                .field("totalDeliveries", r.totalDeliveries())
+                .field("avgTotalHours", r.avgTotalHours())
+                .field("avgVarianceHours", r.avgVarianceHours())
+                .field("p50Hours", r.p50Hours())
+                .field("p90Hours", r.p90Hours())
+                .field("p99Hours", r.p99Hours())
+                .endObject();
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    private void regionDailyVolume(HttpExchange exchange, int locationId) throws IOException, SQLException {
+        List<ShipmentQueries.DailyVolume> rows = LocationRollups.dailyVolume(locationId);
+        JsonWriter json = begin(exchange);
+        writeDailyVolume(json, rows);
+        json.flush();
+    }
+
+    // Reads the stored aggregates; RouteLegAnalytics runs update them
+    private void routeLegs(HttpExchange exchange, Map<String, String> query) throws IOException, SQLException {
+        int limit = Integer.parseInt(query.getOrDefault("limit", String.valueOf(DEFAULT_PAGE_SIZE)));
+        List<RouteLegAnalytics.LegStats> rows = RouteLegAnalytics.topLegs(limit);
+        JsonWriter json = begin(exchange);
+        json.beginArray();
+        for (RouteLegAnalytics.LegStats l : rows) {
+            json.beginObject()
+                .field("fromLocationId", l.fromLocationId())
+                .field("fromLocation", l.fromLocation())
+                .field("toLocationId", l.toLocationId())
+                .field("toLocation", l.toLocation())
+                .field("legCount", l.legCount())
+                .field("avgHours", l.avgHours())
+                .field("minHours", l.minHours())
+                .field("maxHours", l.maxHours())
+                .field("p50Hours", l.p50Hours())
+                .field("p90Hours", l.p90Hours())
+                .field("p99Hours", l.p99Hours())
+                .endObject();
+        }
+        json.endArray();
+        json.flush();
+    }
+
+    // All dashboard sections; a failed section is null with its error alongside
+    private void dashboard(HttpExchange exchange) throws IOException {
+        OpsDashboard.Snapshot snapshot = OpsDashboard.capture();
+        JsonWriter json = begin(exchange);
+        json.beginObject()
+            .field("capturedAt", new java.sql.Timestamp(snapshot.capturedAt()))
+            .field("totalMillis", snapshot.totalMillis());
+
+        OpsDashboard.Section<List<ShipmentQueries.StatusCount>> counts = snapshot.statusCounts();
+        json.name("statusCounts");
+        if (counts.ok()) {
+            json.beginObject();
+            for (ShipmentQueries.StatusCount c : counts.value()) {
+                json.field(c.status(), c.shipmentCount());
+            }
+            json.endObject();
+        } else {
+            json.nullValue();
+        }
+
+        json.name("hubDelivery");
+        if (snapshot.hubDelivery().ok()) {
+            writeHubStats(json, snapshot.hubDelivery().value());
+        } else {
+            json.nullValue();
+        }
+
+        json.name("delayed");
+        if (snapshot.delayed().ok()) {
+            json.beginArray();
+            for (ShipmentQueries.DelayedShipment d : snapshot.delayed().value()) {
+                writeDelayed(json, d);
+            }
+            json.endArray();
+        } else {
+            json.nullValue();
+        }
+
+        json.name("dailyVolume");
+        if (snapshot.dailyVolume().ok()) {
+            writeDailyVolume(json, snapshot.dailyVolume().value());
+        } else {
+            json.nullValue();
+        }
+
+        json.name("errors").beginObject()
+            .field("statusCounts", counts.error())
+            .field("hubDelivery", snapshot.hubDelivery().error())
+            .field("delayed", snapshot.delayed().error())
+            .field("dailyVolume", snapshot.dailyVolume().error())
+            .endObject()
+            .endObject();
+        json.flush();
+    }
+
+    private static void writeHubStats(JsonWriter json, List<ShipmentQueries.HubDeliveryStats> rows)
+            throws IOException {
+        json.beginArray();
+        for (ShipmentQueries.HubDeliveryStats h : rows) {
+            json.beginObject()
+                .field("locationId", h.locationId())
+                .field("locationName", h.locationName())
+                .field("locationType", h.locationType())
+                .field("totalDeliveries", h.totalDeliveries())
+                .field("avgTotalHours", h.avgTotalHours())
+                .field("avgVarianceHours", h.avgVarianceHours())
+                .field("p50Hours", h.p50Hours())
+                .field("p90Hours", h.p90Hours())
+                .field("p99Hours", h.p99Hours())
+                .endObject();
+        }
+        json.endArray();
+    }
+
+    private static void writeDailyVolume(JsonWriter json, List<ShipmentQueries.DailyVolume> rows)
+            throws IOException {
+        json.beginArray();
+        for (ShipmentQueries.DailyVolume v : rows) {
+            json.beginObject()
+                .field("shipmentDate", v.shipmentDate())
+                .field("originLocationId", v.originLocationId())
+                .field("originLocation", v.originLocation())
+                .field("shipmentCount", v.shipmentCount())
+                .endObject();
+        }
+        json.endArray();
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        ConnectionPool.Stats pool = create.getPoolStats();
+        TrackingCache.Stats cache = TrackingCache.shared().getStats();
+        JsonWriter json = begin(exchange);
+        json.beginObject().name("pool");
+        if (pool == null) {
+            json.nullValue();
+        } else {
+            json.beginObject()
+                .field("active", pool.active())
+                .field("idle", pool.idle())
+                .field("waiters", pool.waiters())
+                .field("timeouts", pool.timeouts())
+                .field("avgAcquireMillis", pool.avgAcquireMillis())
+                .endObject();
+        }
+        json.name("trackingCache").beginObject()
+            .field("size", cache.size())
+            .field("hitRate", cache.hitRate())
+            .endObject()
+            .endObject();
+        json.flush();
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 8192);
+        QueryMetrics.writePrometheus(out);
+        out.flush();
+    }
+
+    private static void writeDelayed(JsonWriter json, ShipmentQueries.DelayedShipment d) throws IOException {
+        json.beginObject()
+            .field("shipmentId", d.shipmentId())
+            .field("senderName", d.senderName())
+            .field("recipientName", d.recipientName())
+            .field("currentStatus", d.currentStatus())
+            .field("estimatedDelivery", d.estimatedDelivery())
+            .field("delayHours", d.delayHours())
+            .field("origin", d.origin())
+            .field("destination", d.destination())
+            .endObject();
+    }
+
+    private static void writeSummary(JsonWriter json, ShipmentQueries.ShipmentSummary s) throws IOException {
+        json.beginObject()
+            .field("shipmentId", s.shipmentId())
+            .field("senderName", s.senderName())
+            .field("recipientName", s.recipientName())
+            .field("currentStatus", s.currentStatus())
+            .endObject();
+    }
+
+    // Starts a chunked 200 response; the body is streamed as it is written
+    private static JsonWriter begin(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 8192);
+        return new JsonWriter(out);
+    }
+
+    // If a streamed 200 has already started, the status can no longer change, so the
+    // connection is aborted instead: the exception escapes the handler, the server
+    // drops the connection without the final chunk, and the client sees a broken
+    // response rather than a truncated body that looks complete.
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            System.err.println("Warning: Aborted response to " + exchange.getRequestURI().getPath()
+                + " mid-stream: " + message);
+            throw new IOException("Response aborted mid-stream: " + message);
+        }
+        StringWriter body = new StringWriter();
+        new JsonWriter(body).beginObject().field("error", message).endObject();
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+}
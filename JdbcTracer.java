@@ -0,0 +1,406 @@
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+// Statement-level JDBC tracing. When enabled, create.getConnection() hands
+// out a Connection proxy whose statements and result sets are proxied too,
+// recording SQL text, bind values, execute time, time to the first and last
+// row, and rows fetched. Statements slower than courier.trace.slowQueryMs go
+// to a rotating log file; courier.trace.sampleRate additionally logs that
+// fraction of all statements. When tracing is off, connections are returned
+// unwrapped and nothing here runs.
+//
+// Settings (-Dcourier.trace.<name>=<value>):
+//   enabled       false     wrap connections
+//   slowQueryMs   500       log statements taking at least this long
+//   sampleRate    0         fraction (0..1) of all statements to log
+//   logFile       slow-query.%g.log  (%g is the rotation number, 0 = current)
+//   logFileBytes  10485760  rotate after this many bytes
+//   logFiles      5         rotated files to keep
+//   showValues    false     log string binds and error text verbatim instead of redacting them
+public final class JdbcTracer {
+
+    static final boolean ENABLED = Boolean.getBoolean("courier.trace.enabled");
+
+    private static final long SLOW_NANOS = Long.getLong("courier.trace.slowQueryMs", 500) * 1_000_000L;
+    private static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("courier.trace.sampleRate", "0"));
+    private static final boolean SHOW_VALUES = Boolean.getBoolean("courier.trace.showValues");
+    private static final int MAX_LOGGED_BINDS = 50;
+    // A single-quoted run in a server error message, e.g. the entry in "Duplicate entry '...'"
+    private static final Pattern QUOTED = Pattern.compile("'[^']*'");
+
+    private static final LongAdder traced = new LongAdder();
+    private static final LongAdder logged = new LongAdder();
+    private static Logger log;
+
+    private JdbcTracer() {
+    }
+
+    // Statements traced and log lines written since startup
+    public static long tracedCount() {
+        return traced.sum();
+    }
+
+    public static long loggedCount() {
+        return logged.sum();
+    }
+
+    static Connection wrap(Connection conn) {
+        if (conn == null) {
+            return null;
+        }
+        return (Connection) Proxy.newProxyInstance(JdbcTracer.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new ConnectionHandler(conn));
+    }
+
+    // Timing of one statement execution, logged once when its last row has been read
+    private static final class Trace {
+        final String sql;
+        final String binds;
+        final int batchSize;
+        final boolean sampled;
+        final long start = System.nanoTime();
+        long executed;
+        long firstRow;
+        long rows;
+        boolean done;
+
+        Trace(String sql, String binds, int batchSize) {
+            this.sql = sql;
+            this.binds = binds;
+            this.batchSize = batchSize;
+            this.sampled = SAMPLE_RATE > 0 && ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE;
+            traced.increment();
+        }
+
+        void finish(String error) {
+            if (done) {
+                return;
+            }
+            done = true;
+            long end = System.nanoTime();
+            boolean slow = end - start >= SLOW_NANOS;
+            if (!slow && !sampled && error == null) {
+                return;
+            }
+
+            StringBuilder line = new StringBuilder(256);
+            line.append(Instant.now()).append(' ')
+                .append(error != null ? "error" : slow ? "slow" : "sample")
+                .append(" total=").append(millis(end - start)).append("ms");
+            if (executed != 0) {
+                line.append(" execute=").append(millis(executed - start)).append("ms");
+            }
+            if (firstRow != 0) {
+                line.append(" firstRow=").append(millis(firstRow - start)).append("ms");
+            }
+            line.append(" rows=").append(rows);
+            if (batchSize > 0) {
+                line.append(" batch=").append(batchSize);
+            }
+            line.append(" thread=").append(Thread.currentThread().getName())
+                .append(" sql=\"").append(sql.strip().replaceAll("\\s+", " ")).append('"');
+            if (binds != null) {
+                line.append(" binds=").append(binds);
+            }
+            if (error != null) {
+                line.append(" error=\"").append(redactError(error)).append('"');
+            }
+            write(line.toString());
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+
+    private static synchronized void write(String line) {
+        if (log == null) {
+            log = openLog();
+        }
+        logged.increment();
+        log.info(line);
+    }
+
+    private static Logger openLog() {
+        Logger logger = Logger.getLogger("courier.jdbc.trace");
+        logger.setUseParentHandlers(false);
+        try {
+            FileHandler handler = new FileHandler(
+                System.getProperty("courier.trace.logFile", "slow-query.%g.log"),
+                Integer.getInteger("courier.trace.logFileBytes", 10 * 1024 * 1024),
+                Integer.getInteger("courier.trace.logFiles", 5), true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return record.getMessage() + System.lineSeparator();
+                }
+            });
+            logger.addHandler(handler);
+        } catch (IOException e) {
+            // Fall back to stderr rather than lose the trace
+            System.err.println("Warning: Could not open slow query log: " + e.getMessage());
+            logger.setUseParentHandlers(true);
+        }
+        logger.setLevel(Level.INFO);
+        return logger;
+    }
+
+    // Strings and dates may hold customer data, so only their shape is logged unless showValues is set
+    private static String describe(Object value) {
+        if (value == null) {
+            return "NULL";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        if (SHOW_VALUES) {
+            return "'" + value + "'";
+        }
+        if (value instanceof String s) {
+            return "<string:" + s.length() + ">";
+        }
+        return "<" + value.getClass().getSimpleName() + ">";
+    }
+
+    // Server errors quote the offending values ("Duplicate entry 'CA DL...' for key ..."),
+    // so quoted text gets the same treatment as string binds
+    private static String redactError(String message) {
+        if (SHOW_VALUES || message == null) {
+            return message;
+        }
+        return QUOTED.matcher(message).replaceAll(m -> "<string:" + (m.group().length() - 2) + ">");
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+        private final Connection conn;
+
+        ConnectionHandler(Connection conn) {
+            this.conn = conn;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return Proxy.newProxyInstance(JdbcTracer.class.getClassLoader(),
+                        new Class<?>[] { PreparedStatement.class },
+                        new StatementHandler((Statement) JdbcTracer.invoke(conn, method, args), (String) args[0]));
+                case "createStatement":
+                    return Proxy.newProxyInstance(JdbcTracer.class.getClassLoader(),
+                        new Class<?>[] { Statement.class },
+                        new StatementHandler((Statement) JdbcTracer.invoke(conn, method, args), null));
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Traced[" + conn + "]";
+                default:
+                    return JdbcTracer.invoke(conn, method, args);
+            }
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement stmt;
+        private final String preparedSql;
+        private Object[] binds = new Object[8];
+        private int bindCount;
+        private int batchSize;
+        private String batchSql;
+        // Query whose result set may still be open when the statement is closed
+        private Trace open;
+
+        StatementHandler(Statement stmt, String preparedSql) {
+            this.stmt = stmt;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                bind(index, name.equals("setNull") ? null : args[1]);
+                return JdbcTracer.invoke(stmt, method, args);
+            }
+            switch (name) {
+                case "clearParameters":
+                    bindCount = 0;
+                    Arrays.fill(binds, null);
+                    return JdbcTracer.invoke(stmt, method, args);
+                case "addBatch":
+                    batchSize++;
+                    if (args != null && args.length == 1) {
+                        batchSql = (String) args[0];
+                    }
+                    return JdbcTracer.invoke(stmt, method, args);
+                case "clearBatch":
+                    batchSize = 0;
+                    return JdbcTracer.invoke(stmt, method, args);
+                case "executeQuery":
+                    return executeQuery(method, args);
+                case "close":
+                    if (open != null) {
+                        open.finish(null);
+                    }
+                    return JdbcTracer.invoke(stmt, method, args);
+                case "execute":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "executeBatch":
+                case "executeLargeBatch":
+                    return executeUpdate(method, args, name.contains("Batch"));
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Traced[" + stmt + "]";
+                default:
+                    return JdbcTracer.invoke(stmt, method, args);
+            }
+        }
+
+        private Object executeQuery(Method method, Object[] args) throws Throwable {
+            Trace trace = new Trace(sql(args), describeBinds(), 0);
+            ResultSet rs;
+            try {
+                rs = (ResultSet) JdbcTracer.invoke(stmt, method, args);
+            } catch (Throwable e) {
+                trace.finish(e.getMessage());
+                throw e;
+            }
+            trace.executed = System.nanoTime();
+            open = trace;
+            return Proxy.newProxyInstance(JdbcTracer.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, new ResultSetHandler(rs, trace));
+        }
+
+        private Object executeUpdate(Method method, Object[] args, boolean batch) throws Throwable {
+            Trace trace = new Trace(batch && batchSql != null ? batchSql : sql(args), describeBinds(),
+                batch ? batchSize : 0);
+            Object result;
+            try {
+                result = JdbcTracer.invoke(stmt, method, args);
+            } catch (Throwable e) {
+                trace.finish(e.getMessage());
+                throw e;
+            } finally {
+                if (batch) {
+                    batchSize = 0;
+                }
+            }
+            trace.executed = System.nanoTime();
+            if (result instanceof int[] counts) {
+                trace.rows = Arrays.stream(counts).filter(c -> c > 0).sum();
+            } else if (result instanceof long[] counts) {
+                trace.rows = Arrays.stream(counts).filter(c -> c > 0).sum();
+            } else if (result instanceof Number n) {
+                trace.rows = n.longValue();
+            }
+            trace.finish(null);
+            return result;
+        }
+
+        private String sql(Object[] args) {
+            if (args != null && args.length > 0 && args[0] instanceof String sql) {
+                return sql;
+            }
+            return preparedSql != null ? preparedSql : "?";
+        }
+
+        private void bind(int index, Object value) {
+            if (index > binds.length) {
+                binds = Arrays.copyOf(binds, Math.max(index, binds.length * 2));
+            }
+            binds[index - 1] = value;
+            bindCount = Math.max(bindCount, index);
+        }
+
+        // With batches only the last row's values are shown
+        private String describeBinds() {
+            if (bindCount == 0) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder("[");
+            int shown = Math.min(bindCount, MAX_LOGGED_BINDS);
+            for (int i = 0; i < shown; i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(describe(binds[i]));
+            }
+            if (bindCount > shown) {
+                sb.append(", ... ").append(bindCount - shown).append(" more");
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet rs;
+        private final Trace trace;
+
+        ResultSetHandler(ResultSet rs, Trace trace) {
+            this.rs = rs;
+            this.trace = trace;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "next": {
+                    boolean more;
+                    try {
+                        more = (Boolean) JdbcTracer.invoke(rs, method, args);
+                    } catch (Throwable e) {
+                        trace.finish(e.getMessage());
+                        throw e;
+                    }
+                    if (more) {
+                        if (trace.rows++ == 0) {
+                            trace.firstRow = System.nanoTime();
+                        }
+                    } else {
+                        trace.finish(null);
+                    }
+                    return more;
+                }
+                case "close":
+                    // A result set closed early (e.g. a page's look-ahead row) ends its trace here
+                    trace.finish(null);
+                    return JdbcTracer.invoke(rs, method, args);
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Traced[" + rs + "]";
+                default:
+                    return JdbcTracer.invoke(rs, method, args);
+            }
+        }
+    }
+}
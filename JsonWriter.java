@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+
+// Minimal streaming JSON writer: values go straight to the underlying Writer,
+// so large arrays are never built in memory. Timestamps and dates are written
+// as ISO-8601 strings.
+final class JsonWriter {
+
+    private final Writer out;
+    // One flag per open object/array: whether the next element needs a comma
+    private boolean[] needsComma = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    JsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    JsonWriter name(String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            string(value);
+        }
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        return this;
+    }
+
+    JsonWriter value(double value) throws IOException {
+        separate();
+        out.write(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    JsonWriter value(boolean value) throws IOException {
+        separate();
+        out.write(value ? "true" : "false");
+        return this;
+    }
+
+    JsonWriter value(Integer value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        return value(value.longValue());
+    }
+
+    JsonWriter value(Timestamp value) throws IOException {
+        return value(value == null ? null : value.toLocalDateTime().toString());
+    }
+
+    JsonWriter value(java.sql.Date value) throws IOException {
+        return value(value == null ? null : value.toLocalDate().toString());
+    }
+
+    // Pre-formatted number, or string when quoted; the chars must not need escaping
+    JsonWriter rawValue(char[] buf, int offset, int length, boolean quoted) throws IOException {
+        separate();
+        if (quoted) {
+            out.write('"');
+        }
+        out.write(buf, offset, length);
+        if (quoted) {
+            out.write('"');
+        }
+        return this;
+    }
+
+    JsonWriter nullValue() throws IOException {
+        separate();
+        out.write("null");
+        return this;
+    }
+
+    JsonWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, double value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, Integer value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, Timestamp value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonWriter field(String name, java.sql.Date value) throws IOException {
+        return name(name).value(value);
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        out.write(bracket);
+        if (++depth == needsComma.length) {
+            needsComma = java.util.Arrays.copyOf(needsComma, depth * 2);
+        }
+        needsComma[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        depth--;
+        out.write(bracket);
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (needsComma[depth]) {
+                out.write(',');
+            }
+            needsComma[depth] = true;
+        }
+    }
+
+    // Runs of characters that need no escaping are written in one call
+    private void string(String s) throws IOException {
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(s, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> out.write(String.format("\\u%04x", (int) c));
+            }
+        }
+        out.write(s, start, s.length() - start);
+        out.write('"');
+    }
+}
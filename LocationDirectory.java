@@ -0,0 +1,344 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// In-memory copy of the locations table. Queries select only location IDs and
+// resolve names, types and parents here instead of joining locations again.
+// The directory is loaded on first use and reloaded periodically; each load
+// builds a new immutable Snapshot and swaps it in with a single volatile write,
+// so readers never see a half-built table. After markStale() readers keep the
+// snapshot they have while a reload runs on the refresher thread. A lookup of an
+// ID newer than the snapshot reloads on the caller's thread (at most once per
+// second), so a location inserted a moment ago still gets its name. If the first
+// load fails, lookups throw rather than answer from an empty directory.
+//
+// Each snapshot also numbers the parent_location_id tree in pre-order, so a
+// location's whole subtree (its sub-hubs, their delivery points, ...) is the
+// contiguous range [preorder, subtreeEnd). Regional rollups sum over that range
+// instead of walking the tree or running a recursive query.
+public class LocationDirectory {
+
+    // Immutable, array-backed view of all locations indexed by location_id
+    public static final class Snapshot {
+        private final int[] slotById;      // location_id -> slot, -1 when absent
+        private final int[] ids;
+        private final String[] names;
+        private final String[] types;
+        private final int[] parentIds;     // 0 when the location has no parent
+        private final int[] preorder;      // slot -> pre-order position
+        private final int[] subtreeEnd;    // slot -> position after its last descendant
+        private final int[] depths;        // slot -> 0 for roots
+        private final int[] slotAt;        // pre-order position -> slot
+        private final long loadedAt;
+
+        private Snapshot(int[] ids, String[] names, String[] types, int[] parentIds, long loadedAt) {
+            int maxId = 0;
+            for (int id : ids) {
+                maxId = Math.max(maxId, id);
+            }
+            this.slotById = new int[maxId + 1];
+            Arrays.fill(slotById, -1);
+            for (int slot = 0; slot < ids.length; slot++) {
+                slotById[ids[slot]] = slot;
+            }
+            this.ids = ids;
+            this.names = names;
+            this.types = types;
+            this.parentIds = parentIds;
+            this.loadedAt = loadedAt;
+            int n = ids.length;
+            this.preorder = new int[n];
+            this.subtreeEnd = new int[n];
+            this.depths = new int[n];
+            this.slotAt = new int[n];
+            numberTree();
+        }
+
+        public boolean contains(int locationId) {
+            return slot(locationId) >= 0;
+        }
+
+        public String name(int locationId) {
+            int slot = slot(locationId);
+            return slot < 0 ? null : names[slot];
+        }
+
+        public String type(int locationId) {
+            int slot = slot(locationId);
+            return slot < 0 ? null : types[slot];
+        }
+
+        // Returns 0 for root locations and unknown IDs
+        public int parentId(int locationId) {
+            int slot = slot(locationId);
+            return slot < 0 ? 0 : parentIds[slot];
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        // Location IDs in ascending order
+        public int[] ids() {
+            return ids.clone();
+        }
+
+        public long loadedAt() {
+            return loadedAt;
+        }
+
+        // Pre-order position of a location, -1 when unknown; its subtree is [preorder, subtreeEnd)
+        public int preorder(int locationId) {
+            int slot = slot(locationId);
+            return slot < 0 ? -1 : preorder[slot];
+        }
+
+        public int subtreeEnd(int locationId) {
+            int slot = slot(locationId);
+            return slot < 0 ? -1 : subtreeEnd[slot];
+        }
+
+        // Levels below the location's root, 0 for roots and unknown IDs
+        public int depth(int locationId) {
+            int slot = slot(locationId);
+            return slot < 0 ? 0 : depths[slot];
+        }
+
+        // Location at a pre-order position; positions run from 0 to size() - 1
+        public int idAt(int position) {
+            return ids[slotAt[position]];
+        }
+
+        private int slot(int locationId) {
+            return locationId >= 0 && locationId < slotById.length ? slotById[locationId] : -1;
+        }
+
+        // Iterative depth-first walk, children in ID order. Locations whose parent is
+        // missing are roots; a parent cycle is broken at its lowest ID.
+        private void numberTree() {
+            int n = ids.length;
+            int[] firstChild = new int[n];
+            int[] nextSibling = new int[n];
+            Arrays.fill(firstChild, -1);
+            Arrays.fill(preorder, -1);
+            for (int s = n - 1; s >= 0; s--) {
+                int parent = slot(parentIds[s]);
+                if (parent >= 0 && parent != s) {
+                    nextSibling[s] = firstChild[parent];
+                    firstChild[parent] = s;
+                }
+            }
+
+            int[] stack = new int[n];
+            int position = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                for (int root = 0; root < n; root++) {
+                    int parent = slot(parentIds[root]);
+                    boolean isRoot = parent < 0 || parent == root;
+                    // The second pass only picks up cycles the roots never reached
+                    if (preorder[root] >= 0 || (pass == 0 && !isRoot)) {
+                        continue;
+                    }
+                    preorder[root] = position;
+                    slotAt[position++] = root;
+                    depths[root] = 0;
+                    int top = 0;
+                    stack[top++] = root;
+                    while (top > 0) {
+                        int s = stack[top - 1];
+                        int child = firstChild[s];
+                        while (child >= 0 && preorder[child] >= 0) {
+                            child = nextSibling[child];
+                        }
+                        if (child < 0) {
+                            subtreeEnd[s] = position;
+                            top--;
+                            continue;
+                        }
+                        firstChild[s] = nextSibling[child];
+                        preorder[child] = position;
+                        slotAt[position++] = child;
+                        depths[child] = depths[s] + 1;
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final long REFRESH_SECONDS = Long.getLong("courier.locations.refreshSeconds", 300);
+    // A lookup miss forces a reload, but not more often than this
+    private static final long MISS_RELOAD_INTERVAL_MS = 1000;
+
+    private static volatile Snapshot current;
+    private static volatile boolean stale;
+    private static volatile long lastMissReload;
+    private static final AtomicBoolean reloadQueued = new AtomicBoolean();
+    // Runs the periodic refresh and the background reloads; started by the first load
+    private static volatile ScheduledExecutorService refresher;
+
+    private LocationDirectory() {
+    }
+
+    // Current snapshot, loading it on first use; once stale it is still returned
+    // while a fresh one loads in the background
+    public static Snapshot current() throws SQLException {
+        Snapshot s = current;
+        if (s == null) {
+            return loadIfNeeded();
+        }
+        if (stale) {
+            reloadInBackground();
+        }
+        return s;
+    }
+
+    // For callers that cannot go on without the location, e.g. a region the user
+    // just named: an ID newer than the snapshot is reloaded on the caller's
+    // thread (rate-limited), while other readers carry on with the old snapshot
+    public static Snapshot currentWith(int locationId) throws SQLException {
+        Snapshot s = current();
+        if (s.contains(locationId) || !claimMissReload()) {
+            return s;
+        }
+        return reload();
+    }
+
+    // Name of a location; null only for IDs that are not in the table
+    public static String name(int locationId) throws SQLException {
+        return currentWith(locationId).name(locationId);
+    }
+
+    public static String type(int locationId) throws SQLException {
+        return currentWith(locationId).type(locationId);
+    }
+
+    // Called after the application writes to locations or recreates the schema
+    public static void markStale() {
+        stale = true;
+    }
+
+    // Load a fresh snapshot now; readers keep using the previous one until the swap.
+    // A failed reload keeps the previous snapshot; only a failed first load throws.
+    public static synchronized Snapshot reload() throws SQLException {
+        stale = false;
+        try {
+            current = load();
+        } catch (SQLException e) {
+            if (current == null) {
+                throw e;
+            }
+            System.err.println("Warning: Could not reload locations: " + e.getMessage());
+        }
+        startRefresher();
+        return current;
+    }
+
+    private static synchronized Snapshot loadIfNeeded() throws SQLException {
+        Snapshot s = current;
+        // Another thread may have loaded it while we waited for the lock
+        if (s != null) {
+            return s;
+        }
+        return reload();
+    }
+
+    public static synchronized void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+        current = null;
+    }
+
+    private static boolean claimMissReload() {
+        long now = System.currentTimeMillis();
+        if (now - lastMissReload < MISS_RELOAD_INTERVAL_MS) {
+            return false;
+        }
+        lastMissReload = now;
+        return true;
+    }
+
+    // Queues at most one reload at a time; readers never take the class lock here
+    private static void reloadInBackground() {
+        ScheduledExecutorService executor = refresher;
+        if (executor == null || !reloadQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                reloadQueued.set(false);
+                refresh();
+            });
+        } catch (RejectedExecutionException e) {
+            // Shut down meanwhile
+            reloadQueued.set(false);
+        }
+    }
+
+    private static void startRefresher() {
+        if (refresher != null) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "location-directory-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        if (REFRESH_SECONDS > 0) {
+            executor.scheduleWithFixedDelay(LocationDirectory::refresh,
+                REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+        }
+        refresher = executor;
+    }
+
+    // Runs on the refresher thread, which only exists once a load has succeeded:
+    // reload() warns and keeps that snapshot, and only throws after shutdown()
+    private static void refresh() {
+        try {
+            reload();
+        } catch (SQLException e) {
+            // Shut down meanwhile
+        }
+    }
+
+    private static Snapshot load() throws SQLException {
+        String query = "SELECT location_id, location_name, location_type, parent_location_id FROM locations ORDER BY location_id";
+
+        List<Object[]> rows = new ArrayList<>();
+        QueryMetrics.Sample sample = QueryMetrics.start("locationDirectory");
+        try (Connection conn = ShipmentQueries.connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(query);
+             ResultSet rs = pstmt.executeQuery()) {
+            sample.executed();
+            while (rs.next()) {
+                rows.add(new Object[] { rs.getInt(1), rs.getString(2), rs.getString(3), rs.getInt(4) });
+            }
+            sample.finish(rows.size());
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+
+        int n = rows.size();
+        int[] ids = new int[n];
+        String[] names = new String[n];
+        String[] types = new String[n];
+        int[] parents = new int[n];
+        for (int i = 0; i < n; i++) {
+            Object[] row = rows.get(i);
+            ids[i] = (Integer) row[0];
+            names[i] = (String) row[1];
+            types[i] = (String) row[2];
+            parents[i] = (Integer) row[3];
+        }
+        return new Snapshot(ids, names, types, parents, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,193 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Hub delivery times and daily volume for a location together with everything
+// below it in the parent_location_id tree, e.g. a regional hub with its
+// sub-hubs and delivery points. The per-location aggregates are read once
+// (hub_delivery_stats, hub_delivery_histogram, shipment_daily_volume), laid out
+// in LocationDirectory's pre-order, and prefix-summed; every subtree total is
+// then the difference of two prefix entries. No recursive query is needed and
+// any level of the tree costs the same.
+//
+// The delivery prefix sums are kept until the directory snapshot or
+// DeliveryStats' version changes, so repeated region reports only walk the
+// arrays. Deliveries recorded by other processes (or committed while the arrays
+// were being built) show up once the copy is courier.rollups.maxAgeSeconds old.
+public class LocationRollups {
+
+    // Totals over the location's subtree; depth is its level below its root
+    public record RegionDeliveryStats(int locationId, String locationName, String locationType, int depth,
+                                      long totalDeliveries, double avgTotalHours, double avgVarianceHours,
+                                      double p50Hours, double p90Hours, double p99Hours) {
+    }
+
+    static final String HUB_TOTALS_QUERY = """
+        SELECT destination_location_id, delivered_count, sum_total_hours, sum_variance_hours, variance_count
+        FROM hub_delivery_stats
+    """;
+
+    private static final int BUCKETS = DeliveryStats.BUCKET_BOUNDS_HOURS.length + 1;
+
+    private static final long MAX_AGE_NANOS =
+        TimeUnit.SECONDS.toNanos(Long.getLong("courier.rollups.maxAgeSeconds", 30));
+
+    // Prefix sums by pre-order position of one snapshot:
+    // totals {count, sumTotal, sumVariance, varianceCount} and per-bucket histogram counts
+    private record DeliveryPrefix(LocationDirectory.Snapshot tree, long version, long builtAt,
+                                  long[][] totals, long[][] histogram) {
+    }
+
+    private static volatile DeliveryPrefix deliveryPrefix;
+
+    private LocationRollups() {
+    }
+
+    // Every location in the subtree of rootLocationId (0 for the whole tree) that
+    // has deliveries below it, in tree order: each location is followed by its subtree
+    public static List<RegionDeliveryStats> deliveryStats(int rootLocationId) throws SQLException {
+        LocationDirectory.Snapshot tree = snapshotFor(rootLocationId);
+        QueryMetrics.Sample sample = QueryMetrics.start("regionDelivery");
+        try {
+            DeliveryPrefix prefix = deliveryPrefix(tree, sample);
+            long[][] totals = prefix.totals();
+            long[][] histogram = prefix.histogram();
+
+            List<RegionDeliveryStats> result = new ArrayList<>();
+            long[] counts = new long[BUCKETS];
+            int from = rootLocationId == 0 ? 0 : tree.preorder(rootLocationId);
+            int to = rootLocationId == 0 ? tree.size() : tree.subtreeEnd(rootLocationId);
+            for (int position = from; position < to; position++) {
+                int id = tree.idAt(position);
+                int end = tree.subtreeEnd(id);
+                long delivered = range(totals[0], position, end);
+                if (delivered == 0) {
+                    continue;
+                }
+                long varianceCount = range(totals[3], position, end);
+                for (int b = 0; b < BUCKETS; b++) {
+                    counts[b] = range(histogram[b], position, end);
+                }
+                double[] p = DeliveryStats.percentiles(counts);
+                result.add(new RegionDeliveryStats(id, tree.name(id), tree.type(id),
+                    tree.depth(id) - (rootLocationId == 0 ? 0 : tree.depth(rootLocationId)), delivered,
+                    (double) range(totals[1], position, end) / delivered,
+                    varianceCount == 0 ? 0 : (double) range(totals[2], position, end) / varianceCount,
+                    p[0], p[1], p[2]));
+            }
+            sample.finish(result.size());
+            return result;
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Cached prefix sums for this snapshot, rebuilt when the snapshot or the
+    // aggregates changed or the copy is too old. Concurrent misses may both
+    // build; the arrays are never modified once published.
+    private static DeliveryPrefix deliveryPrefix(LocationDirectory.Snapshot tree, QueryMetrics.Sample sample)
+            throws SQLException {
+        // Read before the tables, so a change made during the build makes the next call rebuild
+        long version = DeliveryStats.version();
+        DeliveryPrefix cached = deliveryPrefix;
+        if (cached != null && cached.tree() == tree && cached.version() == version
+                && System.nanoTime() - cached.builtAt() < MAX_AGE_NANOS) {
+            return cached;
+        }
+
+        long builtAt = System.nanoTime();
+        int n = tree.size();
+        long[][] totals = new long[4][n + 1];
+        long[][] histogram = new long[BUCKETS][n + 1];
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(HUB_TOTALS_QUERY);
+                 ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    int position = tree.preorder(rs.getInt(1));
+                    if (position < 0) {
+                        continue;
+                    }
+                    for (int i = 0; i < 4; i++) {
+                        totals[i][position + 1] += rs.getLong(i + 2);
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(DeliveryStats.HISTOGRAM_QUERY);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int position = tree.preorder(rs.getInt(1));
+                    int bucket = rs.getInt(2);
+                    if (position >= 0 && bucket >= 0 && bucket < BUCKETS) {
+                        histogram[bucket][position + 1] += rs.getLong(3);
+                    }
+                }
+            }
+        }
+        prefixSum(totals);
+        prefixSum(histogram);
+        DeliveryPrefix prefix = new DeliveryPrefix(tree, version, builtAt, totals, histogram);
+        deliveryPrefix = prefix;
+        return prefix;
+    }
+
+    // Shipments per day over the last 30 days leaving any location in the subtree
+    // of regionLocationId (0 for all locations), newest day first
+    public static List<ShipmentQueries.DailyVolume> dailyVolume(int regionLocationId) throws SQLException {
+        LocationDirectory.Snapshot tree = snapshotFor(regionLocationId);
+        int from = regionLocationId == 0 ? 0 : tree.preorder(regionLocationId);
+        int to = regionLocationId == 0 ? tree.size() : tree.subtreeEnd(regionLocationId);
+        QueryMetrics.Sample sample = QueryMetrics.start("regionDailyVolume");
+        try (Connection conn = ShipmentQueries.connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(ShipmentQueries.DAILY_VOLUME_QUERY);
+             ResultSet rs = pstmt.executeQuery()) {
+            sample.executed();
+
+            Map<Date, Integer> byDay = new TreeMap<>((a, b) -> b.compareTo(a));
+            while (rs.next()) {
+                int position = tree.preorder(rs.getInt("location_id"));
+                if (position >= from && position < to) {
+                    byDay.merge(rs.getDate("shipment_date"), rs.getInt("shipment_count"), Integer::sum);
+                }
+            }
+            String name = regionLocationId == 0 ? "All locations" : tree.name(regionLocationId);
+            List<ShipmentQueries.DailyVolume> result = new ArrayList<>(byDay.size());
+            for (Map.Entry<Date, Integer> e : byDay.entrySet()) {
+                result.add(new ShipmentQueries.DailyVolume(e.getKey(), regionLocationId, name, e.getValue()));
+            }
+            sample.finish(result.size());
+            return result;
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Reloads the directory once for an ID newer than the snapshot
+    private static LocationDirectory.Snapshot snapshotFor(int locationId) throws SQLException {
+        if (locationId == 0) {
+            return LocationDirectory.current();
+        }
+        LocationDirectory.Snapshot tree = LocationDirectory.currentWith(locationId);
+        if (!tree.contains(locationId)) {
+            throw new IllegalArgumentException("Unknown location ID: " + locationId);
+        }
+        return tree;
+    }
+
+    private static void prefixSum(long[][] columns) {
+        for (long[] column : columns) {
+            for (int i = 1; i < column.length; i++) {
+                column[i] += column[i - 1];
+            }
+        }
+    }
+
+    private static long range(long[] prefix, int from, int to) {
+        return prefix[to] - prefix[from];
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Operations dashboard: hub delivery times, delayed shipments, daily volume
+// and shipment counts per status, fetched concurrently on separate pooled
+// connections. Total latency is that of the slowest report. Each report has
+// its own timeout, and a report that fails or times out leaves its section
+// empty with an error instead of failing the whole dashboard. The timeout is
+// also set as the statements' query timeout, so the server stops a query the
+// dashboard gave up on and its pooled connection is freed. Each section is
+// consistent on its own; all of them are started together at capturedAt.
+public class OpsDashboard {
+
+    // Outcome of one report: value is null when error is set
+    public record Section<T>(T value, String error, long elapsedMillis) {
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    // All sections of one dashboard run; capturedAt is when the reports were started
+    public record Snapshot(long capturedAt, long totalMillis,
+                           Section<List<ShipmentQueries.HubDeliveryStats>> hubDelivery,
+                           Section<List<ShipmentQueries.DelayedShipment>> delayed,
+                           Section<List<ShipmentQueries.DailyVolume>> dailyVolume,
+                           Section<List<ShipmentQueries.StatusCount>> statusCounts) {
+    }
+
+    private static final long TIMEOUT_MS = Long.getLong("courier.dashboard.timeoutMs", 5000);
+
+    // Cached rather than fixed, so a query still finishing past its timeout does not hold up the next capture
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ops-dashboard");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private OpsDashboard() {
+    }
+
+    public static Snapshot capture() {
+        return capture(TIMEOUT_MS);
+    }
+
+    public static Snapshot capture(long timeoutMillis) {
+        long capturedAt = System.currentTimeMillis();
+        long start = System.nanoTime();
+        // JDBC query timeouts are whole seconds; rounding up keeps them from firing before the deadline
+        int queryTimeout = (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(timeoutMillis + 999));
+
+        Future<Section<List<ShipmentQueries.HubDeliveryStats>>> hubs =
+            submit(() -> ShipmentQueries.getAverageDeliveryTimePerHub(queryTimeout));
+        Future<Section<List<ShipmentQueries.DelayedShipment>>> delayed =
+            submit(OverdueMonitor::delayedShipments);
+        Future<Section<List<ShipmentQueries.DailyVolume>>> volume =
+            submit(() -> ShipmentQueries.getDailyShipmentVolumeByOrigin(queryTimeout));
+        Future<Section<List<ShipmentQueries.StatusCount>>> counts =
+            submit(() -> ShipmentQueries.getStatusCounts(queryTimeout));
+
+        // All reports started together, so each one's timeout runs from the same start
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Section<List<ShipmentQueries.HubDeliveryStats>> hubSection = await(hubs, start, deadline);
+        Section<List<ShipmentQueries.DelayedShipment>> delayedSection = await(delayed, start, deadline);
+        Section<List<ShipmentQueries.DailyVolume>> volumeSection = await(volume, start, deadline);
+        Section<List<ShipmentQueries.StatusCount>> countSection = await(counts, start, deadline);
+
+        return new Snapshot(capturedAt, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            hubSection, delayedSection, volumeSection, countSection);
+    }
+
+    private static <T> Future<Section<T>> submit(Callable<T> report) {
+        return EXECUTOR.submit(() -> {
+            long start = System.nanoTime();
+            T value = report.call();
+            return new Section<>(value, null, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        });
+    }
+
+    private static <T> Section<T> await(Future<Section<T>> future, long start, long deadline) {
+        String error;
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // The statement's query timeout stops the query on the server shortly
+            // after this, which returns its connection; the result is discarded
+            future.cancel(true);
+            error = "timed out";
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            error = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        } catch (CancellationException e) {
+            error = "cancelled";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            error = "interrupted";
+        }
+        return new Section<>(null, error, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
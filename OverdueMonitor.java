@@ -0,0 +1,470 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// In-process view of undelivered shipments ordered by estimated_delivery.
+// Deadlines sit in a min-heap; a scheduler thread wakes at the earliest one,
+// moves every shipment whose estimate has passed into the delayed set and
+// publishes a "became late" event for each. The delayed board is served from
+// that set instead of scanning shipments with a non-sargable predicate.
+//
+// Changes made through the application are applied directly (delivered(),
+// statusChanged()); new shipments are picked up by an incremental sync over the
+// shipment_id range, and a periodic full sync catches writes made elsewhere.
+// Nothing in the application changes estimated_delivery; code that does must
+// call markStale() afterwards, or the old deadline stands until the full sync.
+public class OverdueMonitor {
+
+    public record OpenShipment(int shipmentId, String senderName, String recipientName, String currentStatus,
+                               Timestamp estimatedDelivery, int originLocationId, int destinationLocationId) {
+    }
+
+    @FunctionalInterface
+    public interface LateListener {
+        void onLate(OpenShipment shipment);
+    }
+
+    private record Deadline(long at, int shipmentId) {
+    }
+
+    // Sync row: a shipment plus whether it already has an actual delivery time
+    private record Row(OpenShipment shipment, boolean delivered) {
+    }
+
+    private static final long SYNC_SECONDS = Long.getLong("courier.overdue.syncSeconds", 5);
+    private static final long FULL_SYNC_SECONDS = Long.getLong("courier.overdue.fullSyncSeconds", 600);
+    // Off by default: flipping current_status changes what the driver pending report shows
+    private static final boolean MARK_DELAYED = Boolean.getBoolean("courier.overdue.markDelayed");
+    private static final int UPDATE_BATCH_SIZE = 500;
+
+    private static final String COLUMNS = """
+        shipment_id, sender_name, recipient_name, current_status, estimated_delivery,
+        origin_location_id, destination_location_id, actual_delivery
+        """;
+    static final String FULL_SYNC_QUERY = "SELECT " + COLUMNS
+        + " FROM shipments WHERE shipment_id <= ? AND actual_delivery IS NULL AND estimated_delivery IS NOT NULL";
+    private static final String MAX_SHIPMENT_ID_QUERY = "SELECT COALESCE(MAX(shipment_id), 0) FROM shipments";
+    static final String INCREMENTAL_SYNC_QUERY = "SELECT " + COLUMNS
+        + " FROM shipments WHERE shipment_id > ? ORDER BY shipment_id";
+
+    private static final Comparator<OpenShipment> LONGEST_DELAY_FIRST =
+        Comparator.comparingLong((OpenShipment s) -> s.estimatedDelivery().getTime())
+                  .thenComparingInt(OpenShipment::shipmentId);
+
+    // State below is guarded by the OverdueMonitor class lock
+    private static final Map<Integer, OpenShipment> open = new HashMap<>();
+    private static final Map<Integer, OpenShipment> delayed = new HashMap<>();
+    private static final PriorityQueue<Deadline> deadlines =
+        new PriorityQueue<>(Comparator.comparingLong(Deadline::at));
+    // Shipments changed by the application while a sync was reading; the sync must not overwrite them
+    private static final Set<Integer> touchedDuringSync = new HashSet<>();
+    private static int maxSeenId;
+    private static long lastFullSync;
+    private static long wakeAt = Long.MAX_VALUE;
+    private static boolean stale;
+    private static boolean syncQueued;
+    private static ScheduledExecutorService scheduler;
+
+    private static final List<LateListener> listeners = new CopyOnWriteArrayList<>();
+    private static final Object START_LOCK = new Object();
+    private static volatile boolean started;
+
+    private OverdueMonitor() {
+    }
+
+    // Currently delayed open shipments, longest delay first. The first call loads
+    // the open shipments; if that fails it throws, and the next call tries again.
+    public static List<ShipmentQueries.DelayedShipment> delayedShipments() throws SQLException {
+        ensureStarted();
+        List<OpenShipment> snapshot;
+        synchronized (OverdueMonitor.class) {
+            snapshot = new ArrayList<>(delayed.values());
+        }
+        snapshot.sort(LONGEST_DELAY_FIRST);
+
+        long now = System.currentTimeMillis();
+        List<ShipmentQueries.DelayedShipment> result = new ArrayList<>(snapshot.size());
+        for (OpenShipment s : snapshot) {
+            // Same truncation as TIMESTAMPDIFF(HOUR, estimated_delivery, NOW())
+            long delayHours = (now - s.estimatedDelivery().getTime()) / 3_600_000L;
+            result.add(new ShipmentQueries.DelayedShipment(s.shipmentId(), s.senderName(), s.recipientName(),
+                s.currentStatus(), s.estimatedDelivery(), null, delayHours,
+                LocationDirectory.name(s.originLocationId()), LocationDirectory.name(s.destinationLocationId())));
+        }
+        return result;
+    }
+
+    public static synchronized int delayedCount() {
+        return delayed.size();
+    }
+
+    public static synchronized int openCount() {
+        return open.size();
+    }
+
+    // Listeners run on the monitor thread and should hand off anything slow
+    public static void addListener(LateListener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(LateListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Called after the application commits an actual_delivery for a shipment
+    public static synchronized void delivered(int shipmentId) {
+        if (!started) {
+            return;
+        }
+        touchedDuringSync.add(shipmentId);
+        open.remove(shipmentId);
+        delayed.remove(shipmentId);
+        // Its heap entry is dropped lazily when it comes up
+    }
+
+    // Called after the application commits a new current_status; keeps the board's status column current
+    public static synchronized void statusChanged(int shipmentId, String status) {
+        if (!started) {
+            return;
+        }
+        OpenShipment s = open.get(shipmentId);
+        if (s != null && !status.equals(s.currentStatus())) {
+            OpenShipment updated = new OpenShipment(s.shipmentId(), s.senderName(), s.recipientName(), status,
+                s.estimatedDelivery(), s.originLocationId(), s.destinationLocationId());
+            open.put(shipmentId, updated);
+            if (delayed.containsKey(shipmentId)) {
+                delayed.put(shipmentId, updated);
+            }
+        }
+    }
+
+    // New shipments were committed; pick them up now instead of at the next periodic sync
+    public static synchronized void requestSync() {
+        // Bulk loads commit many batches in a row; one queued sync covers them all
+        if (scheduler != null && !syncQueued) {
+            syncQueued = true;
+            scheduler.execute(OverdueMonitor::sync);
+        }
+    }
+
+    // Called when the schema is recreated; the next sync replaces all state
+    public static synchronized void markStale() {
+        stale = true;
+        requestSync();
+    }
+
+    public static void shutdown() {
+        synchronized (START_LOCK) {
+            synchronized (OverdueMonitor.class) {
+                if (scheduler != null) {
+                    scheduler.shutdownNow();
+                    scheduler = null;
+                }
+                open.clear();
+                delayed.clear();
+                deadlines.clear();
+                touchedDuringSync.clear();
+                maxSeenId = 0;
+                wakeAt = Long.MAX_VALUE;
+                stale = false;
+                syncQueued = false;
+                started = false;
+            }
+        }
+    }
+
+    // Started only once the first full load succeeds; an empty board is never served as loaded
+    private static void ensureStarted() throws SQLException {
+        if (started) {
+            return;
+        }
+        synchronized (START_LOCK) {
+            if (started) {
+                return;
+            }
+            // Shipments that were already late at startup are not announced as events
+            writeDelayedStatus(fullSync());
+            synchronized (OverdueMonitor.class) {
+                started = true;
+                scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "overdue-monitor");
+                    t.setDaemon(true);
+                    return t;
+                });
+                if (SYNC_SECONDS > 0) {
+                    scheduler.scheduleWithFixedDelay(OverdueMonitor::sync,
+                        SYNC_SECONDS, SYNC_SECONDS, TimeUnit.SECONDS);
+                }
+                scheduleWake();
+            }
+        }
+    }
+
+    // Runs on the monitor thread
+    private static void sync() {
+        boolean full;
+        synchronized (OverdueMonitor.class) {
+            syncQueued = false;
+            full = stale || System.currentTimeMillis() - lastFullSync >= TimeUnit.SECONDS.toMillis(FULL_SYNC_SECONDS);
+        }
+        List<OpenShipment> late;
+        try {
+            late = full ? fullSync() : incrementalSync();
+        } catch (SQLException e) {
+            System.err.println("Warning: Could not load " + (full ? "open" : "new") + " shipments: "
+                + e.getMessage());
+            return;
+        }
+        publish(late);
+    }
+
+    // Replaces all state from the database; returns shipments that became late.
+    // On failure the state is left as it was and the next sync is a full one again.
+    private static List<OpenShipment> fullSync() throws SQLException {
+        synchronized (OverdueMonitor.class) {
+            stale = false;
+            touchedDuringSync.clear();
+        }
+
+        int upTo;
+        List<Row> rows = new ArrayList<>();
+        try {
+            try (Connection conn = ShipmentQueries.connect();
+                 PreparedStatement pstmt = conn.prepareStatement(MAX_SHIPMENT_ID_QUERY);
+                 ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                upTo = rs.getInt(1);
+            }
+            // Rows above upTo are left to the incremental sync
+            try (RowCursor<Row> cursor = ShipmentQueries.openCursor("overdueFullSync", FULL_SYNC_QUERY,
+                     OverdueMonitor::mapRow, upTo)) {
+                cursor.forEachRemaining(rows::add);
+            }
+        } catch (RowCursor.CursorException e) {
+            markStaleAfterFailure();
+            throw e.getCause();
+        } catch (SQLException e) {
+            markStaleAfterFailure();
+            throw e;
+        }
+
+        synchronized (OverdueMonitor.class) {
+            Set<Integer> seen = new HashSet<>(rows.size() * 4 / 3 + 1);
+            for (Row row : rows) {
+                int id = row.shipment().shipmentId();
+                seen.add(id);
+                if (!touchedDuringSync.contains(id)) {
+                    upsert(row.shipment());
+                }
+            }
+            int loadedUpTo = upTo;
+            open.keySet().removeIf(id -> id <= loadedUpTo && !seen.contains(id) && !touchedDuringSync.contains(id));
+            delayed.keySet().retainAll(open.keySet());
+            compactDeadlines();
+
+            maxSeenId = Math.max(upTo, maxSeenId);
+            lastFullSync = System.currentTimeMillis();
+            List<OpenShipment> late = advance(lastFullSync);
+            scheduleWake();
+            return late;
+        }
+    }
+
+    private static synchronized void markStaleAfterFailure() {
+        stale = true;
+    }
+
+    // Loads shipments inserted since the last sync by primary key range
+    private static List<OpenShipment> incrementalSync() throws SQLException {
+        int after;
+        synchronized (OverdueMonitor.class) {
+            touchedDuringSync.clear();
+            after = maxSeenId;
+        }
+
+        List<Row> rows = new ArrayList<>();
+        try (RowCursor<Row> cursor = ShipmentQueries.openCursor("overdueIncrementalSync", INCREMENTAL_SYNC_QUERY,
+                 OverdueMonitor::mapRow, after)) {
+            cursor.forEachRemaining(rows::add);
+        } catch (RowCursor.CursorException e) {
+            throw e.getCause();
+        }
+
+        synchronized (OverdueMonitor.class) {
+            for (Row row : rows) {
+                OpenShipment s = row.shipment();
+                maxSeenId = Math.max(maxSeenId, s.shipmentId());
+                if (touchedDuringSync.contains(s.shipmentId())) {
+                    continue;
+                }
+                if (row.delivered() || s.estimatedDelivery() == null) {
+                    open.remove(s.shipmentId());
+                    delayed.remove(s.shipmentId());
+                } else {
+                    upsert(s);
+                }
+            }
+            List<OpenShipment> late = advance(System.currentTimeMillis());
+            scheduleWake();
+            return late;
+        }
+    }
+
+    // Runs on the monitor thread when the earliest deadline is due
+    private static void wake() {
+        List<OpenShipment> late;
+        synchronized (OverdueMonitor.class) {
+            wakeAt = Long.MAX_VALUE;
+            late = advance(System.currentTimeMillis());
+            scheduleWake();
+        }
+        publish(late);
+    }
+
+    // Caller holds the class lock
+    private static void upsert(OpenShipment s) {
+        OpenShipment previous = open.put(s.shipmentId(), s);
+        long at = s.estimatedDelivery().getTime();
+        if (previous == null || previous.estimatedDelivery().getTime() != at) {
+            // A new estimate is judged afresh, even if the old one had already passed
+            delayed.remove(s.shipmentId());
+            deadlines.add(new Deadline(at, s.shipmentId()));
+        } else if (delayed.containsKey(s.shipmentId())) {
+            delayed.put(s.shipmentId(), s);
+        }
+    }
+
+    // Moves shipments whose estimate is before now into the delayed set; caller holds the class lock
+    private static List<OpenShipment> advance(long now) {
+        List<OpenShipment> late = new ArrayList<>();
+        Deadline d;
+        while ((d = deadlines.peek()) != null && d.at() < now) {
+            deadlines.poll();
+            OpenShipment s = open.get(d.shipmentId());
+            // Entries left behind by deliveries and re-estimates are discarded here
+            if (s == null || s.estimatedDelivery().getTime() != d.at() || delayed.containsKey(d.shipmentId())) {
+                continue;
+            }
+            delayed.put(s.shipmentId(), s);
+            late.add(s);
+        }
+        return late;
+    }
+
+    // Caller holds the class lock
+    private static void scheduleWake() {
+        Deadline next = deadlines.peek();
+        if (scheduler == null || next == null) {
+            return;
+        }
+        long at = next.at() + 1;
+        if (at < wakeAt) {
+            wakeAt = at;
+            long delay = Math.max(0, at - System.currentTimeMillis());
+            scheduler.schedule(OverdueMonitor::wake, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Rebuilds the heap once lazily deleted entries outnumber live ones; caller holds the class lock
+    private static void compactDeadlines() {
+        if (deadlines.size() <= 2 * open.size() + 1024) {
+            return;
+        }
+        deadlines.clear();
+        for (OpenShipment s : open.values()) {
+            if (!delayed.containsKey(s.shipmentId())) {
+                deadlines.add(new Deadline(s.estimatedDelivery().getTime(), s.shipmentId()));
+            }
+        }
+        wakeAt = Long.MAX_VALUE;
+    }
+
+    private static void publish(List<OpenShipment> late) {
+        if (late.isEmpty()) {
+            return;
+        }
+        for (OpenShipment s : late) {
+            for (LateListener listener : listeners) {
+                try {
+                    listener.onLate(s);
+                } catch (RuntimeException e) {
+                    System.err.println("Warning: Overdue listener failed: " + e.getMessage());
+                }
+            }
+        }
+        writeDelayedStatus(late);
+    }
+
+    // Flips newly late shipments to 'delayed' in batched UPDATEs when enabled
+    private static void writeDelayedStatus(List<OpenShipment> late) {
+        if (!MARK_DELAYED || late.isEmpty()) {
+            return;
+        }
+
+        List<Integer> ids = new ArrayList<>(late.size());
+        for (OpenShipment s : late) {
+            if (!"delayed".equals(s.currentStatus()) && !"returned".equals(s.currentStatus())) {
+                ids.add(s.shipmentId());
+            }
+        }
+        ids.sort(null);
+
+        try (Connection conn = ShipmentQueries.connect()) {
+            for (int from = 0; from < ids.size(); from += UPDATE_BATCH_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + UPDATE_BATCH_SIZE));
+                StringBuilder sql = new StringBuilder(
+                    "UPDATE shipments SET current_status = 'delayed' WHERE actual_delivery IS NULL"
+                    + " AND current_status IN ('pending', 'in_transit') AND shipment_id IN (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "?" : ", ?");
+                }
+                sql.append(')');
+                QueryMetrics.Sample sample = QueryMetrics.start("overdue.markDelayed");
+                try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setInt(i + 1, chunk.get(i));
+                    }
+                    sample.finish(pstmt.executeUpdate());
+                } catch (SQLException e) {
+                    sample.failed();
+                    throw e;
+                }
+
+                synchronized (OverdueMonitor.class) {
+                    for (int id : chunk) {
+                        OpenShipment s = delayed.get(id);
+                        if (s != null && !"delayed".equals(s.currentStatus())) {
+                            OpenShipment updated = new OpenShipment(s.shipmentId(), s.senderName(), s.recipientName(),
+                                "delayed", s.estimatedDelivery(), s.originLocationId(), s.destinationLocationId());
+                            open.put(id, updated);
+                            delayed.put(id, updated);
+                        }
+                    }
+                }
+                TrackingCache cache = TrackingCache.shared();
+                for (int id : chunk) {
+                    cache.invalidate(id);
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Warning: Could not mark shipments delayed: " + e.getMessage());
+        }
+    }
+
+    private static Row mapRow(ResultSet rs) throws SQLException {
+        OpenShipment s = new OpenShipment(rs.getInt("shipment_id"), rs.getString("sender_name"),
+            rs.getString("recipient_name"), rs.getString("current_status"), rs.getTimestamp("estimated_delivery"),
+            rs.getInt("origin_location_id"), rs.getInt("destination_location_id"));
+        return new Row(s, rs.getTimestamp("actual_delivery") != null);
+    }
+}
@@ -0,0 +1,41 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque continuation tokens for keyset pagination. A token carries the sort
+// key of the last row on the previous page plus a tag naming the listing,
+// so a token from one listing cannot be replayed against another.
+final class PageToken {
+
+    private PageToken() {
+    }
+
+    static String encode(String listing, long... key) {
+        StringBuilder sb = new StringBuilder(listing);
+        for (long k : key) {
+            sb.append(':').append(k);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(sb.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Returns null for a null or empty token (first page)
+    static long[] decode(String token, String listing, int keyLength) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            String[] parts = raw.split(":");
+            if (parts.length != keyLength + 1 || !parts[0].equals(listing)) {
+                throw new IllegalArgumentException("Page token does not belong to this listing");
+            }
+            long[] key = new long[keyLength];
+            for (int i = 0; i < keyLength; i++) {
+                key[i] = Long.parseLong(parts[i + 1]);
+            }
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.sql.*;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Monthly RANGE partitions for the two tables that grow with history:
+// shipments by created_at and status_logs by update_timestamp. p202601 holds
+// January 2026; rows older than the first month sit in p_history and rows past
+// the last one in p_future. Range scans on the partitioning column only touch
+// the months they need, and once the archiver has emptied a month its
+// partition is merged into p_history instead of deleting from a single
+// ever-growing tree. Merging uses REORGANIZE PARTITION, which copies any rows
+// written into the month after it was checked (a backdated log, an import);
+// DROP PARTITION would delete them.
+//
+// MySQL cannot partition an InnoDB table that has, or is referenced by, a
+// foreign key, and every unique key must include the partitioning column. The
+// partitioned layout (-Dcourier.schema.partitioned=true when creating the
+// database) therefore keys these tables on (id, timestamp) and leaves out the
+// foreign keys into and out of them; the application writes consistent ids.
+public class PartitionMaintenance {
+
+    public record Result(int added, int merged) {
+    }
+
+    private record PartitionedTable(String table, String column) {
+    }
+
+    static final boolean ENABLED = Boolean.getBoolean("courier.schema.partitioned");
+
+    private static final List<PartitionedTable> TABLES = List.of(
+        new PartitionedTable("shipments", "created_at"),
+        new PartitionedTable("status_logs", "update_timestamp"));
+
+    // Months before the current one that get their own partition at creation
+    private static final int HISTORY_MONTHS = Integer.getInteger("courier.partition.historyMonths", 12);
+    // Months after the current one that always have a partition ready
+    private static final int MONTHS_AHEAD = Integer.getInteger("courier.partition.monthsAhead", 3);
+    // Partition DDL waits at most this long for running queries instead of queueing everyone behind it
+    private static final int LOCK_WAIT_SECONDS = Integer.getInteger("courier.partition.lockWaitSeconds", 5);
+
+    private static final Pattern MONTH_PARTITION = Pattern.compile("p(\\d{4})(\\d{2})");
+
+    private static final String PARTITIONS_QUERY = """
+        SELECT PARTITION_NAME
+        FROM information_schema.PARTITIONS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL
+        ORDER BY PARTITION_ORDINAL_POSITION
+        """;
+
+    private PartitionMaintenance() {
+    }
+
+    // PARTITION BY clause for CREATE TABLE, covering HISTORY_MONTHS back to MONTHS_AHEAD ahead
+    static String partitionClause(String table) {
+        YearMonth current = YearMonth.now();
+        YearMonth first = current.minusMonths(HISTORY_MONTHS);
+        StringJoiner partitions = new StringJoiner(",\n    ", "(\n    ", "\n)");
+        partitions.add(partition("p_history", first));
+        for (YearMonth month = first; !month.isAfter(current.plusMonths(MONTHS_AHEAD)); month = month.plusMonths(1)) {
+            partitions.add(partition(name(month), month.plusMonths(1)));
+        }
+        partitions.add("PARTITION p_future VALUES LESS THAN MAXVALUE");
+        return "PARTITION BY RANGE (UNIX_TIMESTAMP(" + tableFor(table).column() + ")) " + partitions;
+    }
+
+    // Adds partitions up to MONTHS_AHEAD ahead and merges the empty month partitions
+    // that end on or before mergeEmptyBefore into p_history. Does nothing for flat tables.
+    public static Result maintain(YearMonth mergeEmptyBefore) throws SQLException {
+        int added = 0;
+        int merged = 0;
+        try (Connection conn = create.openConnection("sessionVariables=lock_wait_timeout=" + LOCK_WAIT_SECONDS)) {
+            for (PartitionedTable table : TABLES) {
+                List<String> names = partitionNames(conn, table.table());
+                if (names.isEmpty()) {
+                    continue;
+                }
+                added += addUpcoming(conn, table, names);
+                merged += mergeEmpty(conn, table, names, mergeEmptyBefore);
+            }
+        }
+        return new Result(added, merged);
+    }
+
+    private static PartitionedTable tableFor(String table) {
+        for (PartitionedTable t : TABLES) {
+            if (t.table().equals(table)) {
+                return t;
+            }
+        }
+        throw new IllegalArgumentException("Not a partitioned table: " + table);
+    }
+
+    private static List<String> partitionNames(Connection conn, String table) throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(PARTITIONS_QUERY)) {
+            pstmt.setString(1, table);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    names.add(rs.getString(1));
+                }
+            }
+        }
+        return names;
+    }
+
+    // Splits the new months off p_future, which holds no rows in normal operation
+    private static int addUpcoming(Connection conn, PartitionedTable table, List<String> names) throws SQLException {
+        YearMonth last = null;
+        for (String name : names) {
+            YearMonth month = monthOf(name);
+            if (month != null && (last == null || month.isAfter(last))) {
+                last = month;
+            }
+        }
+        YearMonth target = YearMonth.now().plusMonths(MONTHS_AHEAD);
+        YearMonth month = last == null ? YearMonth.now() : last.plusMonths(1);
+        if (month.isAfter(target) || !names.contains("p_future")) {
+            return 0;
+        }
+        StringJoiner partitions = new StringJoiner(", ", "(", ")");
+        int added = 0;
+        for (; !month.isAfter(target); month = month.plusMonths(1)) {
+            partitions.add(partition(name(month), month.plusMonths(1)));
+            added++;
+        }
+        partitions.add("PARTITION p_future VALUES LESS THAN MAXVALUE");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + table.table() + " REORGANIZE PARTITION p_future INTO " + partitions);
+        }
+        return added;
+    }
+
+    // REORGANIZE only merges adjacent partitions, so this takes the run of old, empty
+    // months that directly follows p_history and stops at the first one still in use.
+    // The emptiness check only keeps the copy cheap; correctness does not depend on it.
+    private static int mergeEmpty(Connection conn, PartitionedTable table, List<String> names, YearMonth before)
+            throws SQLException {
+        if (names.isEmpty() || !names.get(0).equals("p_history")) {
+            return 0;
+        }
+        List<String> merge = new ArrayList<>();
+        YearMonth end = null;
+        for (String name : names.subList(1, names.size())) {
+            YearMonth month = monthOf(name);
+            if (month == null || month.plusMonths(1).isAfter(before) || !isEmpty(conn, table.table(), name)) {
+                break;
+            }
+            merge.add(name);
+            end = month.plusMonths(1);
+        }
+        if (merge.isEmpty()) {
+            return 0;
+        }
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("ALTER TABLE " + table.table() + " REORGANIZE PARTITION p_history, "
+                + String.join(", ", merge) + " INTO (" + partition("p_history", end) + ")");
+        }
+        return merge.size();
+    }
+
+    private static boolean isEmpty(Connection conn, String table, String partition) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + table + " PARTITION (" + partition + ") LIMIT 1")) {
+            return !rs.next();
+        }
+    }
+
+    private static String partition(String name, YearMonth lessThan) {
+        return "PARTITION " + name + " VALUES LESS THAN (UNIX_TIMESTAMP('" + lessThan.atDay(1) + " 00:00:00'))";
+    }
+
+    private static String name(YearMonth month) {
+        return String.format("p%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    // Null for p_history and p_future
+    private static YearMonth monthOf(String name) {
+        Matcher m = MONTH_PARTITION.matcher(name);
+        return m.matches() ? YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))) : null;
+    }
+}
@@ -0,0 +1,452 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Micro-benchmark harness for the queries in ShipmentQueries, the insert paths
+// and connection acquisition. Each benchmark runs a warmup phase and then a
+// timed measurement phase, and reports throughput, p50/p99 latency and bytes
+// allocated per operation. The query benchmarks call ShipmentQueries directly,
+// so every one of them runs SQL and a failing query fails the run; the
+// TrackingCache and OverdueMonitor paths in front of them are measured
+// separately under their own names (...Cached, ...Monitor).
+//
+// Usage: java QueryBenchmark [options]
+//   --seed <locations>,<drivers>,<shipments>   generate data before running
+//   --warmup <seconds>      warmup time per benchmark (default 5)
+//   --measure <seconds>     measurement time per benchmark (default 10)
+//   --threads <n>           concurrent callers (default 1)
+//   --only <name,...>       run only the named benchmarks
+//   --out <file>            write results as CSV
+//   --baseline <file>       compare against an earlier CSV and fail on regression
+//   --tolerance <percent>   allowed p99 / throughput regression (default 20)
+//   --stmt-cache <n|compare> prepared statement cache size per connection (0 = off),
+//                           or "compare" to run every benchmark without and with it;
+//                           both sides prepare on the server (useCursorFetch needs
+//                           it), so "off" is a fresh server prepare on every call
+//
+// insertStatusLogSingleRow is rolled back, so it measures the insert without
+// the commit and leaves nothing behind. The batch and ingest benchmarks commit
+// real rows through BulkLoader and StatusIngestor, which keep the caches and
+// rollups in step; run them against a load-test database, or leave them out
+// with --only.
+public class QueryBenchmark {
+
+    @FunctionalInterface
+    interface Operation {
+        void run(BenchContext ctx) throws Exception;
+    }
+
+    record Benchmark(String name, Operation op) {
+    }
+
+    record Result(String name, long ops, double opsPerSecond, double p50Millis, double p99Millis,
+                  double bytesPerOp) {
+    }
+
+    // Per-thread state handed to each operation
+    static final class BenchContext {
+        final SplittableRandom random;
+        final int minShipmentId;
+        final int maxShipmentId;
+        final int minDriverId;
+        final int maxDriverId;
+        final int[] locationIds;
+
+        BenchContext(long seed, int[] shipmentRange, int[] driverRange, int[] locationIds) {
+            this.random = new SplittableRandom(seed);
+            this.minShipmentId = shipmentRange[0];
+            this.maxShipmentId = shipmentRange[1];
+            this.minDriverId = driverRange[0];
+            this.maxDriverId = driverRange[1];
+            this.locationIds = locationIds;
+        }
+
+        int randomShipmentId() {
+            return minShipmentId + random.nextInt(Math.max(1, maxShipmentId - minShipmentId + 1));
+        }
+
+        int randomDriverId() {
+            return minDriverId + random.nextInt(Math.max(1, maxDriverId - minDriverId + 1));
+        }
+
+        int randomLocationId() {
+            return locationIds[random.nextInt(locationIds.length)];
+        }
+    }
+
+    // Latency samples are kept in a bounded reservoir so long runs have constant memory
+    private static final int MAX_SAMPLES = 1 << 20;
+    private static final int INSERT_BATCH_ROWS = 500;
+
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (!create.setPasswordFromEnvironment()) {
+            return;
+        }
+
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int measureSeconds = Integer.parseInt(options.getOrDefault("measure", "10"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+        double tolerance = Double.parseDouble(options.getOrDefault("tolerance", "20")) / 100.0;
+
+        try {
+            if (options.containsKey("seed")) {
+                String[] sizes = options.get("seed").split(",");
+                try (Connection conn = create.getConnection()) {
+                    DataGenerator.newDefault(42L, 180).generate(conn,
+                        Integer.parseInt(sizes[0]), Integer.parseInt(sizes[1]), Long.parseLong(sizes[2]));
+                }
+            }
+
+            List<Benchmark> benchmarks = selectBenchmarks(options.get("only"));
+            List<Result> results = new ArrayList<>();
+            String stmtCache = options.get("stmt-cache");
+            if ("compare".equals(stmtCache)) {
+                int cacheSize = create.getStatementCacheSize() > 0 ? create.getStatementCacheSize() : 250;
+                create.setStatementCacheSize(0);
+                results.addAll(runAll(benchmarks, "/noStmtCache", threads, warmupSeconds, measureSeconds));
+                create.setStatementCacheSize(cacheSize);
+                results.addAll(runAll(benchmarks, "/stmtCache", threads, warmupSeconds, measureSeconds));
+            } else {
+                if (stmtCache != null) {
+                    create.setStatementCacheSize(Integer.parseInt(stmtCache));
+                }
+                results.addAll(runAll(benchmarks, "", threads, warmupSeconds, measureSeconds));
+            }
+
+            printResults(results);
+            if ("compare".equals(stmtCache)) {
+                printStatementCacheComparison(results);
+            }
+            if (options.containsKey("out")) {
+                writeCsv(Path.of(options.get("out")), results);
+            }
+            if (options.containsKey("baseline")) {
+                boolean ok = compareWithBaseline(Path.of(options.get("baseline")), results, tolerance);
+                if (!ok) {
+                    System.exit(1);
+                }
+            }
+        } finally {
+            create.shutdown();
+        }
+    }
+
+    static List<Benchmark> allBenchmarks() {
+        List<Benchmark> list = new ArrayList<>();
+        list.add(new Benchmark("connectionAcquire", ctx -> {
+            try (Connection conn = create.getConnection()) {
+                conn.isReadOnly();
+            }
+        }));
+        list.add(new Benchmark("getShipmentStatusAndLocation",
+            ctx -> ShipmentQueries.getTrackingView(ctx.randomShipmentId())));
+        list.add(new Benchmark("getShipmentStatusAndLocationCached",
+            ctx -> TrackingCache.shared().get(ctx.randomShipmentId())));
+        list.add(new Benchmark("getPendingShipmentsForDriver",
+            ctx -> ShipmentQueries.getPendingShipmentsForDriver(ctx.randomDriverId())));
+        list.add(new Benchmark("getAverageDeliveryTimePerHub", ctx -> ShipmentQueries.getAverageDeliveryTimePerHub()));
+        // First page of the SQL listing; the console report reads the monitor below
+        list.add(new Benchmark("getDelayedShipments", ctx -> ShipmentQueries.listDelayedShipments(null, 100)));
+        list.add(new Benchmark("getDelayedShipmentsMonitor", ctx -> OverdueMonitor.delayedShipments()));
+        list.add(new Benchmark("getDailyShipmentVolumeByOrigin",
+            ctx -> ShipmentQueries.getDailyShipmentVolumeByOrigin()));
+        list.add(new Benchmark("showAllShipments", ctx -> drain(ShipmentQueries.streamAllShipments())));
+        list.add(new Benchmark("insertStatusLogSingleRow", QueryBenchmark::insertStatusLogSingleRow));
+        list.add(new Benchmark("insertStatusLogBatch" + INSERT_BATCH_ROWS, ctx -> insertStatusLogBatch(ctx, false)));
+        list.add(new Benchmark("insertStatusLogMultiRow" + INSERT_BATCH_ROWS, ctx -> insertStatusLogBatch(ctx, true)));
+        // Once the queue fills, submit() blocks, so throughput settles at the group-commit rate
+        list.add(new Benchmark("ingestStatusEvent", QueryBenchmark::ingestStatusEvent));
+        return list;
+    }
+
+    private static void drain(RowCursor<?> rows) {
+        try (rows) {
+            while (rows.hasNext()) {
+                rows.next();
+            }
+        }
+    }
+
+    private static void insertStatusLogSingleRow(BenchContext ctx) throws SQLException {
+        String sql = "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (?, ?, ?, ?, ?)";
+        try (Connection conn = create.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, ctx.randomShipmentId());
+                pstmt.setString(2, "in_transit");
+                pstmt.setInt(3, ctx.randomLocationId());
+                pstmt.setString(4, "Benchmark");
+                pstmt.setString(5, "Benchmark scan");
+                pstmt.executeUpdate();
+            } finally {
+                // Raw SQL skips the cache and rollup hooks, so the row must not be kept
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void ingestStatusEvent(BenchContext ctx) throws InterruptedException {
+        StatusIngestor.shared().submit(new StatusIngestor.StatusEvent(ctx.randomShipmentId(), "in_transit",
+            ctx.randomLocationId(), null, "Benchmark", "Benchmark scan"));
+    }
+
+    private static void insertStatusLogBatch(BenchContext ctx, boolean multiRow) throws SQLException {
+        List<BulkLoader.StatusLogRecord> rows = new ArrayList<>(INSERT_BATCH_ROWS);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < INSERT_BATCH_ROWS; i++) {
+            rows.add(new BulkLoader.StatusLogRecord(ctx.randomShipmentId(), "in_transit",
+                ctx.randomLocationId(), now, "Benchmark", "Benchmark scan"));
+        }
+        try (Connection conn = create.getConnection()) {
+            new BulkLoader(conn, INSERT_BATCH_ROWS, multiRow).loadStatusLogs(rows.iterator());
+        }
+    }
+
+    private static List<Benchmark> selectBenchmarks(String only) {
+        List<Benchmark> all = allBenchmarks();
+        if (only == null) {
+            return all;
+        }
+        Set<String> names = new HashSet<>(Arrays.asList(only.split(",")));
+        List<Benchmark> selected = new ArrayList<>();
+        for (Benchmark b : all) {
+            if (names.contains(b.name())) {
+                selected.add(b);
+            }
+        }
+        return selected;
+    }
+
+    private static List<Result> runAll(List<Benchmark> benchmarks, String suffix, int threads,
+                                       int warmupSeconds, int measureSeconds) throws Exception {
+        List<Result> results = new ArrayList<>();
+        for (Benchmark b : benchmarks) {
+            System.out.println("Running " + b.name() + suffix + " ...");
+            Result r = run(b, threads, warmupSeconds, measureSeconds);
+            results.add(new Result(r.name() + suffix, r.ops(), r.opsPerSecond(), r.p50Millis(), r.p99Millis(),
+                r.bytesPerOp()));
+        }
+        return results;
+    }
+
+    private static Result run(Benchmark benchmark, int threads, int warmupSeconds, int measureSeconds)
+            throws Exception {
+        int[] shipmentRange = idRange("shipments", "shipment_id");
+        int[] driverRange = idRange("drivers", "driver_id");
+        int[] locationIds = locationIds();
+
+        com.sun.management.ThreadMXBean mx =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicLong totalOps = new AtomicLong();
+        AtomicLong totalBytes = new AtomicLong();
+        long[][] samples = new long[threads][];
+        int[] sampleCounts = new int[threads];
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            CountDownLatch ready = new CountDownLatch(threads);
+            CountDownLatch go = new CountDownLatch(1);
+
+            for (int t = 0; t < threads; t++) {
+                final int slot = t;
+                futures.add(pool.submit(() -> {
+                    BenchContext ctx = new BenchContext(1000L + slot, shipmentRange, driverRange, locationIds);
+                    long[] local = new long[Math.max(1024, MAX_SAMPLES / threads)];
+                    int count = 0;
+                    long ops = 0;
+
+                    ready.countDown();
+                    go.await();
+
+                    long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+                    while (System.nanoTime() < warmupEnd) {
+                        benchmark.op().run(ctx);
+                    }
+
+                    long threadId = Thread.currentThread().getId();
+                    long bytesBefore = mx.getThreadAllocatedBytes(threadId);
+                    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(measureSeconds);
+                    long now;
+                    while ((now = System.nanoTime()) < end) {
+                        benchmark.op().run(ctx);
+                        long elapsed = System.nanoTime() - now;
+                        if (count < local.length) {
+                            local[count++] = elapsed;
+                        } else {
+                            // Reservoir sampling keeps a uniform sample of all latencies
+                            long j = ctx.random.nextLong(ops + 1);
+                            if (j < local.length) {
+                                local[(int) j] = elapsed;
+                            }
+                        }
+                        ops++;
+                    }
+                    totalBytes.addAndGet(mx.getThreadAllocatedBytes(threadId) - bytesBefore);
+                    totalOps.addAndGet(ops);
+                    samples[slot] = local;
+                    sampleCounts[slot] = count;
+                    return null;
+                }));
+            }
+
+            ready.await();
+            go.countDown();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int total = 0;
+        for (int c : sampleCounts) {
+            total += c;
+        }
+        long[] merged = new long[total];
+        int pos = 0;
+        for (int t = 0; t < threads; t++) {
+            System.arraycopy(samples[t], 0, merged, pos, sampleCounts[t]);
+            pos += sampleCounts[t];
+        }
+        Arrays.sort(merged);
+
+        long ops = totalOps.get();
+        return new Result(benchmark.name(), ops,
+            ops / (double) measureSeconds,
+            percentile(merged, 0.50) / 1e6,
+            percentile(merged, 0.99) / 1e6,
+            ops == 0 ? 0.0 : totalBytes.get() / (double) ops);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static int[] idRange(String table, String column) throws SQLException {
+        String query = "SELECT COALESCE(MIN(" + column + "), 1), COALESCE(MAX(" + column + "), 1) FROM " + table;
+        try (Connection conn = create.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return new int[] { rs.getInt(1), rs.getInt(2) };
+        }
+    }
+
+    private static int[] locationIds() throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = create.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT location_id FROM locations")) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        if (ids.isEmpty()) {
+            throw new SQLException("No locations found; seed the database first (--seed)");
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void printResults(List<Result> results) {
+        System.out.println("\n=== Benchmark Results ===");
+        System.out.printf("%-36s %12s %12s %12s %14s%n", "Benchmark", "ops/s", "p50 (ms)", "p99 (ms)", "alloc (B/op)");
+        System.out.println("=".repeat(90));
+        for (Result r : results) {
+            System.out.printf("%-36s %12.1f %12.3f %12.3f %14.0f%n",
+                r.name(), r.opsPerSecond(), r.p50Millis(), r.p99Millis(), r.bytesPerOp());
+        }
+    }
+
+    // Pairs each /noStmtCache result with its /stmtCache run
+    private static void printStatementCacheComparison(List<Result> results) {
+        Map<String, Result> uncached = new HashMap<>();
+        for (Result r : results) {
+            if (r.name().endsWith("/noStmtCache")) {
+                uncached.put(r.name().substring(0, r.name().length() - "/noStmtCache".length()), r);
+            }
+        }
+        System.out.println("\n=== Prepared Statement Cache ===");
+        System.out.println("Both sides use server-side prepares; off prepares and closes the statement on every call");
+        System.out.printf("%-36s %21s %12s %21s%n", "Benchmark", "ops/s off -> on", "speedup", "p50 ms off -> on");
+        System.out.println("=".repeat(93));
+        for (Result r : results) {
+            if (!r.name().endsWith("/stmtCache")) {
+                continue;
+            }
+            String name = r.name().substring(0, r.name().length() - "/stmtCache".length());
+            Result off = uncached.get(name);
+            if (off == null) {
+                continue;
+            }
+            System.out.printf("%-36s %10.1f -> %7.1f %11.2fx %10.3f -> %7.3f%n", name, off.opsPerSecond(),
+                r.opsPerSecond(), off.opsPerSecond() > 0 ? r.opsPerSecond() / off.opsPerSecond() : 0.0,
+                off.p50Millis(), r.p50Millis());
+        }
+    }
+
+    private static void writeCsv(Path file, List<Result> results) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("benchmark,ops,ops_per_sec,p50_ms,p99_ms,bytes_per_op");
+            out.newLine();
+            for (Result r : results) {
+                out.write(String.format(Locale.ROOT, "%s,%d,%.3f,%.4f,%.4f,%.1f",
+                    r.name(), r.ops(), r.opsPerSecond(), r.p50Millis(), r.p99Millis(), r.bytesPerOp()));
+                out.newLine();
+            }
+        }
+        System.out.println("Results written to " + file);
+    }
+
+    // Flags a regression when throughput drops or p99 grows by more than the tolerance
+    private static boolean compareWithBaseline(Path file, List<Result> results, double tolerance) throws IOException {
+        Map<String, double[]> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] f = line.split(",");
+            if (f.length < 6 || f[0].equals("benchmark")) {
+                continue;
+            }
+            baseline.put(f[0], new double[] { Double.parseDouble(f[2]), Double.parseDouble(f[4]) });
+        }
+
+        boolean ok = true;
+        System.out.println("\n=== Comparison with Baseline ===");
+        for (Result r : results) {
+            double[] base = baseline.get(r.name());
+            if (base == null) {
+                System.out.println(r.name() + ": no baseline");
+                continue;
+            }
+            boolean slower = r.opsPerSecond() < base[0] * (1 - tolerance);
+            boolean tail = r.p99Millis() > base[1] * (1 + tolerance);
+            String verdict = slower || tail ? "REGRESSION" : "ok";
+            System.out.printf("%-36s ops/s %.1f -> %.1f, p99 %.3f -> %.3f ms  %s%n",
+                r.name(), base[0], r.opsPerSecond(), base[1], r.p99Millis(), verdict);
+            ok &= !(slower || tail);
+        }
+        return ok;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i].substring(2), args[++i]);
+            }
+        }
+        return options;
+    }
+}
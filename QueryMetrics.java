@@ -0,0 +1,373 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+// Latency, row and error metrics per named database operation (the reports
+// in ShipmentQueries and the write paths). Every operation keeps fixed-bucket
+// histograms of connection acquire, execute and fetch time; buckets are
+// LongAdders, so recording never takes a lock. Metrics are published as one
+// MBean per operation (courier:type=QueryMetrics,operation=<name>) and in
+// Prometheus text format (GET /metrics on HttpQueryService).
+//
+// Usage:
+//   QueryMetrics.Sample sample = QueryMetrics.start("tracking");
+//   try (Connection conn = ShipmentQueries.connect(sample); ...) {
+//       ResultSet rs = pstmt.executeQuery();
+//       sample.executed();
+//       ... read rows ...
+//       sample.finish(rows);
+//   } catch (SQLException e) {
+//       sample.failed();
+//       throw e;
+//   }
+public final class QueryMetrics {
+
+    // JMX view of one operation; times are in milliseconds
+    public interface OperationMBean {
+        long getCalls();
+
+        long getErrors();
+
+        long getRows();
+
+        double getAcquireP99Millis();
+
+        double getExecuteP50Millis();
+
+        double getExecuteP99Millis();
+
+        double getFetchP99Millis();
+
+        double getTotalP50Millis();
+
+        double getTotalP99Millis();
+
+        double getTotalMaxMillis();
+    }
+
+    // Snapshot of one operation for the console report
+    public record OperationStats(String name, long calls, long errors, long rows,
+                                 double acquireP99Millis, double executeP50Millis, double executeP99Millis,
+                                 double fetchP99Millis, double totalP50Millis, double totalP99Millis,
+                                 double totalMaxMillis) {
+    }
+
+    private static final boolean ENABLED = !Boolean.getBoolean("courier.metrics.disabled");
+    private static final boolean JMX = !Boolean.getBoolean("courier.metrics.noJmx");
+
+    // Upper bucket bounds in seconds; anything slower lands in +Inf
+    private static final double[] BOUNDS = {
+        0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+        0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+    private static final String[] BOUND_LABELS = new String[BOUNDS.length];
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUND_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+            BOUND_LABELS[i] = BigDecimal.valueOf(BOUNDS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static final Map<String, Operation> OPERATIONS = new ConcurrentHashMap<>();
+
+    // Returned when metrics are disabled; records nothing
+    private static final Sample NOOP = new Sample(null);
+
+    private QueryMetrics() {
+    }
+
+    // Starts timing one call of the named operation
+    public static Sample start(String operation) {
+        if (!ENABLED) {
+            return NOOP;
+        }
+        Operation op = OPERATIONS.get(operation);
+        if (op == null) {
+            op = register(operation);
+        }
+        return new Sample(op);
+    }
+
+    // Operations in name order
+    public static List<OperationStats> snapshot() {
+        List<OperationStats> result = new ArrayList<>();
+        for (Operation op : new TreeMap<>(OPERATIONS).values()) {
+            result.add(op.stats());
+        }
+        return result;
+    }
+
+    // Prometheus text exposition format, version 0.0.4
+    public static void writePrometheus(Writer out) throws IOException {
+        Map<String, Operation> ops = new TreeMap<>(OPERATIONS);
+
+        out.write("# HELP courier_query_duration_seconds Time spent per phase of a database operation.\n");
+        out.write("# TYPE courier_query_duration_seconds histogram\n");
+        for (Operation op : ops.values()) {
+            op.acquire.write(out, op.name, "acquire");
+            op.execute.write(out, op.name, "execute");
+            op.fetch.write(out, op.name, "fetch");
+            op.total.write(out, op.name, "total");
+        }
+        writeCounter(out, ops, "courier_query_calls_total", "Calls per database operation.", op -> op.calls.sum());
+        writeCounter(out, ops, "courier_query_errors_total", "Failed calls per database operation.",
+            op -> op.errors.sum());
+        writeCounter(out, ops, "courier_query_rows_total", "Rows read or written per database operation.",
+            op -> op.rows.sum());
+
+        ConnectionPool.Stats pool = create.getPoolStats();
+        if (pool != null) {
+            out.write("# HELP courier_pool_connections Pooled connections by state.\n");
+            out.write("# TYPE courier_pool_connections gauge\n");
+            out.write("courier_pool_connections{state=\"active\"} " + pool.active() + "\n");
+            out.write("courier_pool_connections{state=\"idle\"} " + pool.idle() + "\n");
+            out.write("# HELP courier_pool_waiters Threads waiting for a connection.\n");
+            out.write("# TYPE courier_pool_waiters gauge\n");
+            out.write("courier_pool_waiters " + pool.waiters() + "\n");
+            out.write("# HELP courier_pool_acquire_timeouts_total Borrows that timed out.\n");
+            out.write("# TYPE courier_pool_acquire_timeouts_total counter\n");
+            out.write("courier_pool_acquire_timeouts_total " + pool.timeouts() + "\n");
+        }
+    }
+
+    private interface CounterValue {
+        long get(Operation op);
+    }
+
+    private static void writeCounter(Writer out, Map<String, Operation> ops, String metric, String help,
+                                     CounterValue value) throws IOException {
+        out.write("# HELP " + metric + " " + help + "\n");
+        out.write("# TYPE " + metric + " counter\n");
+        for (Operation op : ops.values()) {
+            out.write(metric + "{operation=\"" + op.name + "\"} " + value.get(op) + "\n");
+        }
+    }
+
+    private static Operation register(String name) {
+        Operation op = new Operation(name);
+        Operation existing = OPERATIONS.putIfAbsent(name, op);
+        if (existing != null) {
+            return existing;
+        }
+        if (JMX) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(op, OperationMBean.class),
+                    new ObjectName("courier:type=QueryMetrics,operation=" + ObjectName.quote(name)));
+            } catch (JMException e) {
+                System.err.println("Warning: Could not register metrics MBean for " + name + ": " + e.getMessage());
+            }
+        }
+        return op;
+    }
+
+    // Timing of one call. Phases: acquire (start to acquired()), execute (to executed(),
+    // or to finish() for writes that return no rows) and fetch (executed() to finish()).
+    public static final class Sample {
+        private final Operation op;
+        private final long start;
+        private long acquiredAt;
+        private long executedAt;
+        private boolean done;
+
+        private Sample(Operation op) {
+            this.op = op;
+            this.start = op == null ? 0 : System.nanoTime();
+        }
+
+        public void acquired() {
+            if (op != null) {
+                acquiredAt = System.nanoTime();
+            }
+        }
+
+        public void executed() {
+            if (op != null) {
+                executedAt = System.nanoTime();
+            }
+        }
+
+        public void finish(long rows) {
+            if (op == null || done) {
+                return;
+            }
+            done = true;
+            long now = System.nanoTime();
+            long executeFrom = acquiredAt != 0 ? acquiredAt : start;
+            if (acquiredAt != 0) {
+                op.acquire.record(acquiredAt - start);
+            }
+            if (executedAt != 0) {
+                op.execute.record(executedAt - executeFrom);
+                op.fetch.record(now - executedAt);
+            } else {
+                op.execute.record(now - executeFrom);
+            }
+            op.total.record(now - start);
+            op.calls.increment();
+            op.rows.add(rows);
+        }
+
+        // Failed calls count towards calls, errors and total time, not the phase histograms
+        public void failed() {
+            if (op == null || done) {
+                return;
+            }
+            done = true;
+            op.total.record(System.nanoTime() - start);
+            op.calls.increment();
+            op.errors.increment();
+        }
+    }
+
+    private static final class Operation implements OperationMBean {
+        final String name;
+        final Histogram acquire = new Histogram();
+        final Histogram execute = new Histogram();
+        final Histogram fetch = new Histogram();
+        final Histogram total = new Histogram();
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        OperationStats stats() {
+            return new OperationStats(name, getCalls(), getErrors(), getRows(),
+                getAcquireP99Millis(), getExecuteP50Millis(), getExecuteP99Millis(), getFetchP99Millis(),
+                getTotalP50Millis(), getTotalP99Millis(), getTotalMaxMillis());
+        }
+
+        @Override
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getRows() {
+            return rows.sum();
+        }
+
+        @Override
+        public double getAcquireP99Millis() {
+            return acquire.quantileMillis(0.99);
+        }
+
+        @Override
+        public double getExecuteP50Millis() {
+            return execute.quantileMillis(0.50);
+        }
+
+        @Override
+        public double getExecuteP99Millis() {
+            return execute.quantileMillis(0.99);
+        }
+
+        @Override
+        public double getFetchP99Millis() {
+            return fetch.quantileMillis(0.99);
+        }
+
+        @Override
+        public double getTotalP50Millis() {
+            return total.quantileMillis(0.50);
+        }
+
+        @Override
+        public double getTotalP99Millis() {
+            return total.quantileMillis(0.99);
+        }
+
+        @Override
+        public double getTotalMaxMillis() {
+            return total.max.get() / 1e6;
+        }
+    }
+
+    private static final class Histogram {
+        // One count per bucket plus +Inf
+        final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        final LongAdder sumNanos = new LongAdder();
+        final AtomicLong max = new AtomicLong();
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            int i = 0;
+            while (i < BOUND_NANOS.length && nanos > BOUND_NANOS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            sumNanos.add(nanos);
+            if (nanos > max.get()) {
+                max.accumulateAndGet(nanos, Math::max);
+            }
+        }
+
+        // Interpolated within the bucket holding the quantile; 0 when empty
+        double quantileMillis(double q) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            double rank = q * total;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0 && seen + counts[i] >= rank) {
+                    double lower = i == 0 ? 0 : BOUNDS[i - 1];
+                    if (i == BOUNDS.length) {
+                        // +Inf bucket: the largest value seen is the best bound available
+                        return max.get() / 1e6;
+                    }
+                    double fraction = (rank - seen) / counts[i];
+                    // Never report more than the slowest call actually seen
+                    return Math.min((lower + (BOUNDS[i] - lower) * fraction) * 1000, max.get() / 1e6);
+                }
+                seen += counts[i];
+            }
+            return max.get() / 1e6;
+        }
+
+        void write(Writer out, String operation, String phase) throws IOException {
+            String labels = "operation=\"" + operation + "\",phase=\"" + phase + "\"";
+            long cumulative = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                cumulative += buckets[i].sum();
+                out.write("courier_query_duration_seconds_bucket{" + labels + ",le=\"" + BOUND_LABELS[i] + "\"} "
+                    + cumulative + "\n");
+            }
+            cumulative += buckets[BOUNDS.length].sum();
+            out.write("courier_query_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} " + cumulative + "\n");
+            out.write("courier_query_duration_seconds_sum{" + labels + "} " + sumNanos.sum() / 1e9 + "\n");
+            out.write("courier_query_duration_seconds_count{" + labels + "} " + cumulative + "\n");
+        }
+    }
+}
@@ -0,0 +1,235 @@
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Query plan regression check. Runs EXPLAIN FORMAT=JSON for every query behind
+// the console reports and background readers, and fails when a plan falls back
+// to a full table or index scan or a filesort that the query is not expected
+// to need. Plans only mean something on realistic data, so run it against a
+// seeded database (--seed, or an earlier DataGenerator run).
+//
+// Usage: java QueryPlanCheck [options]
+//   --seed <locations>,<drivers>,<shipments>   generate data before checking
+//   --verbose                                  print each JSON plan
+public class QueryPlanCheck {
+
+    // scanAllowed lists tables a query may read in full, through the table or a
+    // whole index; filesortAllowed is for
+    // sorts over results that are bounded by design (hubs, days x origins)
+    record PlanCheck(String name, String sql, Set<String> scanAllowed, boolean filesortAllowed,
+                     Object... params) {
+    }
+
+    record PlanResult(String name, List<String> violations, String summary) {
+        boolean ok() {
+            return violations.isEmpty();
+        }
+    }
+
+    private static final Pattern TABLE_NAME = Pattern.compile("\"table_name\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern ACCESS_TYPE = Pattern.compile("\"access_type\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern KEY = Pattern.compile("\"key\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern FILESORT = Pattern.compile("\"using_filesort\"\\s*:\\s*true");
+
+    private static final Timestamp BEFORE_ALL = new Timestamp(0);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        if (!create.setPasswordFromEnvironment()) {
+            return;
+        }
+
+        boolean ok;
+        try {
+            if (options.containsKey("seed")) {
+                String[] sizes = options.get("seed").split(",");
+                try (Connection conn = create.getConnection()) {
+                    DataGenerator.newDefault(42L, 180).generate(conn,
+                        Integer.parseInt(sizes[0]), Integer.parseInt(sizes[1]), Long.parseLong(sizes[2]));
+                }
+            }
+            ok = run(options.containsKey("verbose"));
+        } finally {
+            create.shutdown();
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    static boolean run(boolean verbose) throws SQLException {
+        try (Connection conn = ShipmentQueries.connect()) {
+            analyzeTables(conn);
+            List<PlanResult> results = new ArrayList<>();
+            for (PlanCheck check : allChecks(conn)) {
+                results.add(explain(conn, check, verbose));
+            }
+            return printResults(results);
+        }
+    }
+
+    static List<PlanCheck> allChecks(Connection conn) throws SQLException {
+        int shipmentId = firstId(conn, "shipments", "shipment_id");
+        int driverId = firstId(conn, "drivers", "driver_id");
+
+        List<PlanCheck> list = new ArrayList<>();
+        list.add(new PlanCheck("tracking", ShipmentQueries.TRACKING_QUERY, Set.of(), false, shipmentId));
+        // Batch tracking with a one-ID list; larger lists and the temporary table use the same keys
+        list.add(new PlanCheck("trackingBatchHeaders", ShipmentQueries.TRACKING_HEADERS_QUERY.formatted("?"),
+            Set.of(), false, shipmentId));
+        list.add(new PlanCheck("trackingBatchLogs", ShipmentQueries.TRACKING_LOGS_QUERY.formatted("?"),
+            Set.of(), false, shipmentId));
+        list.add(new PlanCheck("pendingForDriver", ShipmentQueries.PENDING_FOR_DRIVER_QUERY, Set.of(), false,
+            driverId));
+        list.add(new PlanCheck("hubDelivery", ShipmentQueries.HUB_DELIVERY_QUERY,
+            Set.of("hub_delivery_stats"), true));
+        list.add(new PlanCheck("hubDeliveryHistogram", DeliveryStats.HISTOGRAM_QUERY,
+            Set.of("hub_delivery_histogram"), false));
+        // Counts every shipment, so it reads all of idx_shipment_status by design
+        list.add(new PlanCheck("statusCounts", ShipmentQueries.STATUS_COUNT_QUERY, Set.of("shipments"), false));
+        list.add(new PlanCheck("dailyVolume", ShipmentQueries.DAILY_VOLUME_QUERY, Set.of(), true));
+        // The diagnostic view lists every shipment, so it scans by design
+        list.add(new PlanCheck("allShipments", ShipmentQueries.ALL_SHIPMENTS_QUERY, Set.of("shipments"), false));
+        list.add(new PlanCheck("shipmentsPage", ShipmentQueries.SHIPMENTS_PAGE_QUERY, Set.of(), false, 0, 20));
+        list.add(new PlanCheck("delayedPage", ShipmentQueries.DELAYED_PAGE_QUERY, Set.of(), false,
+            BEFORE_ALL, BEFORE_ALL, 0, 20));
+        list.add(new PlanCheck("overdueFullSync", OverdueMonitor.FULL_SYNC_QUERY, Set.of(), false,
+            Integer.MAX_VALUE));
+        list.add(new PlanCheck("overdueIncrementalSync", OverdueMonitor.INCREMENTAL_SYNC_QUERY, Set.of(), false,
+            shipmentId));
+        list.add(new PlanCheck("unassignedPending", DriverAssignmentEngine.UNASSIGNED_QUERY, Set.of(), false, 0, 200));
+        list.add(new PlanCheck("archiveCandidates", ShipmentArchiver.CANDIDATE_QUERY, Set.of(), false,
+            "delivered", 0, new Timestamp(System.currentTimeMillis()), 200));
+        // The first route leg run reads every log, but in index order with no sort
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        list.add(new PlanCheck("routeLegsFull", RouteLegAnalytics.FULL_SCAN_QUERY, Set.of("status_logs"), false,
+            now));
+        // Incremental runs sort only the logs after the watermark
+        Timestamp dayAgo = new Timestamp(now.getTime() - 86_400_000L);
+        list.add(new PlanCheck("routeLegsIncremental", RouteLegAnalytics.INCREMENTAL_SCAN_QUERY, Set.of(), true,
+            dayAgo, now, dayAgo, now, dayAgo));
+        return list;
+    }
+
+    static PlanResult explain(Connection conn, PlanCheck check, boolean verbose) throws SQLException {
+        String plan;
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN FORMAT=JSON " + check.sql())) {
+            for (int i = 0; i < check.params().length; i++) {
+                pstmt.setObject(i + 1, check.params()[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                rs.next();
+                plan = rs.getString(1);
+            }
+        }
+        if (verbose) {
+            System.out.println("--- " + check.name() + " ---");
+            System.out.println(plan);
+        }
+
+        List<String> violations = new ArrayList<>();
+        StringBuilder summary = new StringBuilder();
+        for (String[] access : tableAccesses(plan)) {
+            String table = access[0];
+            String type = access[1];
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(table).append('=').append(type);
+            if (access[2] != null) {
+                summary.append('(').append(access[2]).append(')');
+            }
+            if (!check.scanAllowed().contains(table)) {
+                if ("ALL".equals(type)) {
+                    violations.add("full table scan on " + table);
+                } else if ("index".equals(type)) {
+                    // Reads every index entry: cheaper per row than ALL, but just as unbounded
+                    violations.add("full index scan on " + table);
+                }
+            }
+        }
+        if (FILESORT.matcher(plan).find()) {
+            summary.append(", filesort");
+            if (!check.filesortAllowed()) {
+                violations.add("filesort");
+            }
+        }
+        return new PlanResult(check.name(), violations, summary.toString());
+    }
+
+    // {table, access_type, key} for each table in the plan, in plan order
+    static List<String[]> tableAccesses(String plan) {
+        List<String[]> accesses = new ArrayList<>();
+        Matcher tables = TABLE_NAME.matcher(plan);
+        List<Integer> starts = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        while (tables.find()) {
+            starts.add(tables.start());
+            names.add(tables.group(1));
+        }
+        for (int i = 0; i < starts.size(); i++) {
+            // Each table object's fields run until the next table_name
+            int end = i + 1 < starts.size() ? starts.get(i + 1) : plan.length();
+            String block = plan.substring(starts.get(i), end);
+            Matcher type = ACCESS_TYPE.matcher(block);
+            Matcher key = KEY.matcher(block);
+            accesses.add(new String[] {
+                names.get(i),
+                type.find() ? type.group(1) : "?",
+                key.find() ? key.group(1) : null
+            });
+        }
+        return accesses;
+    }
+
+    private static boolean printResults(List<PlanResult> results) {
+        System.out.println("\n=== Query Plan Check ===");
+        boolean ok = true;
+        for (PlanResult r : results) {
+            if (r.ok()) {
+                System.out.printf("✓ %-24s %s%n", r.name(), r.summary());
+            } else {
+                ok = false;
+                System.out.printf("✗ %-24s %s -> %s%n", r.name(), r.summary(), String.join("; ", r.violations()));
+            }
+        }
+        System.out.println(ok ? "All query plans use the expected indexes." : "Query plan regressions found.");
+        return ok;
+    }
+
+    // Fresh index statistics so the optimizer sees the seeded data
+    private static void analyzeTables(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE TABLE locations, drivers, shipments, packages, status_logs, driver_assignments, "
+                + "shipment_daily_volume, hub_delivery_stats, hub_delivery_histogram, route_leg_stats, "
+                + "route_leg_histogram");
+        }
+    }
+
+    private static int firstId(Connection conn, String table, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MIN(" + column + "), 1) FROM " + table)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (name.equals("verbose")) {
+                options.put(name, "true");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for --" + name);
+            }
+        }
+        return options;
+    }
+}
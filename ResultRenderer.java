@@ -0,0 +1,471 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Writes report rows as an aligned table, CSV or JSON Lines, to the console or
+// to a file. Cells go straight into a 64 KB buffered Writer: numbers and dates
+// are formatted into a reused char buffer and table padding is copied from a
+// block of spaces, so there is no String.format or string building per row, and
+// output is flushed once when the renderer is closed. Console output reaches
+// System.out in buffer-sized writes rather than a print call per cell, and
+// still goes wherever System.out currently points, so System.setOut (e.g. the
+// benchmark's discard stream) redirects it.
+//
+//   try (ResultRenderer out = ResultRenderer.open(COLUMNS)) {
+//       while (rows.hasNext()) {
+//           Row r = rows.next();
+//           out.cell(r.id()).cell(r.name()).cell(r.delayHours(), 1).endRow();
+//       }
+//   }
+//
+// open(columns) uses the current output settings: -Dcourier.output.format=
+// table|csv|jsonl and -Dcourier.output.file=<path> (console when unset) at
+// startup, changed later with setOutput from the query menu.
+public abstract class ResultRenderer implements AutoCloseable {
+
+    public enum Format {
+        TABLE, CSV, JSONL;
+
+        public static Format parse(String name) {
+            return switch (name.trim().toLowerCase()) {
+                case "table" -> TABLE;
+                case "csv" -> CSV;
+                case "jsonl", "json" -> JSONL;
+                default -> throw new IllegalArgumentException("Unknown output format: " + name);
+            };
+        }
+    }
+
+    // label heads the table column, key names the CSV column and JSON field;
+    // width only applies to the table format and longer values are not cut
+    public record Column(String label, String key, int width) {
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] SPACES = " ".repeat(64).toCharArray();
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    private static volatile Format format = Format.parse(System.getProperty("courier.output.format", "table"));
+    private static volatile Path file = pathOrNull(System.getProperty("courier.output.file"));
+
+    protected final Writer out;
+    protected final List<Column> columns;
+    // Index of the next cell in the current row
+    protected int column;
+    private final boolean console;
+    private final char[] scratch = new char[32];
+    private long rows;
+
+    protected ResultRenderer(Writer out, List<Column> columns, boolean console) {
+        this.out = out;
+        this.columns = columns;
+        this.console = console;
+    }
+
+    // Null file means the console
+    public static synchronized void setOutput(Format newFormat, Path newFile) {
+        format = newFormat;
+        file = newFile;
+    }
+
+    public static Format format() {
+        return format;
+    }
+
+    public static Path file() {
+        return file;
+    }
+
+    public static ResultRenderer open(List<Column> columns) throws IOException {
+        return open(format, file, columns);
+    }
+
+    // A file is replaced, not appended to, so each report gets a file to itself
+    public static ResultRenderer open(Format format, Path file, List<Column> columns) throws IOException {
+        Writer writer;
+        if (file == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(System.out, consoleCharset()), BUFFER_SIZE);
+        } else {
+            writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+        ResultRenderer renderer = switch (format) {
+            case TABLE -> new Table(writer, columns, file == null);
+            case CSV -> new Csv(writer, columns, file == null);
+            case JSONL -> new JsonLines(writer, columns, file == null);
+        };
+        renderer.begin();
+        return renderer;
+    }
+
+    public final ResultRenderer cell(String value) throws IOException {
+        if (value == null) {
+            nullCell();
+        } else {
+            text(value);
+        }
+        column++;
+        return this;
+    }
+
+    public final ResultRenderer cell(long value) throws IOException {
+        int start = formatLong(value, scratch.length);
+        scalar(scratch, start, scratch.length - start, false);
+        column++;
+        return this;
+    }
+
+    public final ResultRenderer cell(Integer value) throws IOException {
+        if (value == null) {
+            nullCell();
+            column++;
+            return this;
+        }
+        return cell(value.longValue());
+    }
+
+    // Fixed-point with the given number of decimals (at most 6); NaN and infinities are null
+    public final ResultRenderer cell(double value, int decimals) throws IOException {
+        if (!Double.isFinite(value) || Math.abs(value) >= 1e12) {
+            if (Double.isFinite(value)) {
+                text(Double.toString(value));
+            } else {
+                nullCell();
+            }
+            column++;
+            return this;
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        int pos = scratch.length;
+        if (decimals > 0) {
+            long fraction = scaled % scale;
+            for (int i = 0; i < decimals; i++) {
+                scratch[--pos] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            scratch[--pos] = '.';
+        }
+        pos = formatLong(scaled / scale, pos);
+        if (value < 0 && scaled != 0) {
+            scratch[--pos] = '-';
+        }
+        scalar(scratch, pos, scratch.length - pos, false);
+        column++;
+        return this;
+    }
+
+    // yyyy-MM-dd HH:mm:ss in the table and CSV, ISO-8601 in JSON
+    public final ResultRenderer cell(Timestamp value) throws IOException {
+        if (value == null) {
+            nullCell();
+            column++;
+            return this;
+        }
+        LocalDateTime t = value.toLocalDateTime();
+        int pos = formatDate(t.toLocalDate(), 0);
+        scratch[pos++] = dateTimeSeparator();
+        pos = twoDigits(t.getHour(), pos);
+        scratch[pos++] = ':';
+        pos = twoDigits(t.getMinute(), pos);
+        scratch[pos++] = ':';
+        pos = twoDigits(t.getSecond(), pos);
+        scalar(scratch, 0, pos, true);
+        column++;
+        return this;
+    }
+
+    public final ResultRenderer cell(java.sql.Date value) throws IOException {
+        if (value == null) {
+            nullCell();
+            column++;
+            return this;
+        }
+        int end = formatDate(value.toLocalDate(), 0);
+        scalar(scratch, 0, end, true);
+        column++;
+        return this;
+    }
+
+    public final void endRow() throws IOException {
+        if (column != columns.size()) {
+            throw new IllegalStateException("Row has " + column + " cells, expected " + columns.size());
+        }
+        rowEnd();
+        column = 0;
+        rows++;
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    public boolean toConsole() {
+        return console;
+    }
+
+    // Flushes; System.out stays open
+    @Override
+    public void close() throws IOException {
+        if (console) {
+            out.flush();
+            System.out.flush();
+        } else {
+            out.close();
+        }
+    }
+
+    protected void begin() throws IOException {
+    }
+
+    protected abstract void text(String value) throws IOException;
+
+    // quoted: the value is a string in JSON (dates), not a number
+    protected abstract void scalar(char[] buf, int offset, int length, boolean quoted) throws IOException;
+
+    protected abstract void nullCell() throws IOException;
+
+    protected abstract void rowEnd() throws IOException;
+
+    protected char dateTimeSeparator() {
+        return ' ';
+    }
+
+    // Writes the digits right-aligned ending before end; returns the start index
+    private int formatLong(long value, int end) {
+        if (value == Long.MIN_VALUE) {
+            String s = Long.toString(value);
+            s.getChars(0, s.length(), scratch, end - s.length());
+            return end - s.length();
+        }
+        boolean negative = value < 0;
+        long v = Math.abs(value);
+        int pos = end;
+        do {
+            scratch[--pos] = (char) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        if (negative) {
+            scratch[--pos] = '-';
+        }
+        return pos;
+    }
+
+    private int formatDate(LocalDate date, int pos) {
+        int year = date.getYear();
+        scratch[pos++] = (char) ('0' + year / 1000 % 10);
+        scratch[pos++] = (char) ('0' + year / 100 % 10);
+        pos = twoDigits(year % 100, pos);
+        scratch[pos++] = '-';
+        pos = twoDigits(date.getMonthValue(), pos);
+        scratch[pos++] = '-';
+        return twoDigits(date.getDayOfMonth(), pos);
+    }
+
+    private int twoDigits(int value, int pos) {
+        scratch[pos++] = (char) ('0' + value / 10);
+        scratch[pos++] = (char) ('0' + value % 10);
+        return pos;
+    }
+
+    private static Charset consoleCharset() {
+        // stdout.encoding is set from JDK 19 on; System.out uses the default charset before that
+        String name = System.getProperty("stdout.encoding");
+        try {
+            return name == null ? Charset.defaultCharset() : Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+
+    private static Path pathOrNull(String name) {
+        return name == null || name.isBlank() ? null : Path.of(name);
+    }
+
+    // Left-aligned columns padded to their width, as the printf reports were
+    private static final class Table extends ResultRenderer {
+
+        private int written;
+
+        Table(Writer out, List<Column> columns, boolean console) {
+            super(out, columns, console);
+        }
+
+        @Override
+        protected void begin() throws IOException {
+            int total = 0;
+            for (int i = 0; i < columns.size(); i++) {
+                Column c = columns.get(i);
+                separate(i);
+                out.write(c.label());
+                written = c.label().length();
+                pad(c.width());
+                total += c.width() + (i == 0 ? 0 : 1);
+            }
+            out.write('\n');
+            for (int i = 0; i < total; i++) {
+                out.write('=');
+            }
+            out.write('\n');
+        }
+
+        @Override
+        protected void text(String value) throws IOException {
+            separate(column);
+            out.write(value);
+            written = value.length();
+            pad(columns.get(column).width());
+        }
+
+        @Override
+        protected void scalar(char[] buf, int offset, int length, boolean quoted) throws IOException {
+            separate(column);
+            out.write(buf, offset, length);
+            written = length;
+            pad(columns.get(column).width());
+        }
+
+        @Override
+        protected void nullCell() throws IOException {
+            text("-");
+        }
+
+        @Override
+        protected void rowEnd() throws IOException {
+            out.write('\n');
+        }
+
+        private void separate(int index) throws IOException {
+            if (index > 0) {
+                out.write(' ');
+            }
+        }
+
+        private void pad(int width) throws IOException {
+            for (int remaining = width - written; remaining > 0; remaining -= SPACES.length) {
+                out.write(SPACES, 0, Math.min(remaining, SPACES.length));
+            }
+        }
+    }
+
+    // RFC 4180: header of column keys, fields quoted only when they need it, null as empty
+    private static final class Csv extends ResultRenderer {
+
+        Csv(Writer out, List<Column> columns, boolean console) {
+            super(out, columns, console);
+        }
+
+        @Override
+        protected void begin() throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                field(columns.get(i).key());
+            }
+            out.write("\r\n");
+        }
+
+        @Override
+        protected void text(String value) throws IOException {
+            separate();
+            field(value);
+        }
+
+        @Override
+        protected void scalar(char[] buf, int offset, int length, boolean quoted) throws IOException {
+            separate();
+            out.write(buf, offset, length);
+        }
+
+        @Override
+        protected void nullCell() throws IOException {
+            separate();
+        }
+
+        @Override
+        protected void rowEnd() throws IOException {
+            out.write("\r\n");
+        }
+
+        private void separate() throws IOException {
+            if (column > 0) {
+                out.write(',');
+            }
+        }
+
+        private void field(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            int start = 0;
+            for (int i = value.indexOf('"'); i >= 0; i = value.indexOf('"', i + 1)) {
+                out.write(value, start, i + 1 - start);
+                out.write('"');
+                start = i + 1;
+            }
+            out.write(value, start, value.length() - start);
+            out.write('"');
+        }
+    }
+
+    // One JSON object per line, keyed by column key
+    private static final class JsonLines extends ResultRenderer {
+
+        private final JsonWriter json;
+
+        JsonLines(Writer out, List<Column> columns, boolean console) {
+            super(out, columns, console);
+            this.json = new JsonWriter(out);
+        }
+
+        @Override
+        protected void text(String value) throws IOException {
+            name().value(value);
+        }
+
+        @Override
+        protected void scalar(char[] buf, int offset, int length, boolean quoted) throws IOException {
+            name().rawValue(buf, offset, length, quoted);
+        }
+
+        @Override
+        protected void nullCell() throws IOException {
+            name().nullValue();
+        }
+
+        @Override
+        protected void rowEnd() throws IOException {
+            json.endObject();
+            out.write('\n');
+        }
+
+        @Override
+        protected char dateTimeSeparator() {
+            return 'T';
+        }
+
+        private JsonWriter name() throws IOException {
+            if (column == 0) {
+                json.beginObject();
+            }
+            return json.name(columns.get(column).key());
+        }
+    }
+}
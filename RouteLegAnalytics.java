@@ -0,0 +1,358 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Transit times per route leg, e.g. Mumbai Central Hub -> Delhi North Hub: the
+// time from a shipment's last scan at one location to its next scan at a
+// different one. status_logs is read in one forward-only cursor pass in
+// (shipment_id, update_timestamp) order, so each leg is found by comparing a
+// row with the previous one, and only one accumulator per (from, to) pair is
+// held in memory however many logs there are. Counts, sums, min/max and a
+// duration histogram for percentiles are added to route_leg_stats and
+// route_leg_histogram.
+//
+// Runs are incremental: a run covers logs stamped after the watermark kept in
+// analytics_watermarks, up to courier.legs.settleSeconds ago so that logs still
+// being written are left for the next run. For each shipment with new logs the
+// last earlier log seeds the pass, so a leg that crosses the watermark is
+// counted once. Logs loaded afterwards with older timestamps (bulk imports) are
+// only picked up by rebuild(). The save locks the watermark row and gives up if
+// another run (the CLI, another application instance) moved it since this run
+// read it, so overlapping runs never count the same legs twice.
+//
+// Usage: java RouteLegAnalytics [--rebuild]
+public class RouteLegAnalytics {
+
+    public record Result(long logs, long legs, int pairs, Timestamp watermark, long elapsedMillis) {
+    }
+
+    public record LegStats(int fromLocationId, String fromLocation, int toLocationId, String toLocation,
+                           long legCount, double avgHours, double minHours, double maxHours,
+                           double p50Hours, double p90Hours, double p99Hours) {
+    }
+
+    private record LogPoint(int shipmentId, int locationId, long timeMillis) {
+    }
+
+    // Running totals for one (from, to) pair during a pass
+    private static final class Accumulator {
+        long count;
+        long sumSeconds;
+        long minSeconds = Long.MAX_VALUE;
+        long maxSeconds;
+        final long[] buckets = new long[BUCKET_BOUNDS_MINUTES.length + 1];
+
+        void add(long seconds) {
+            count++;
+            sumSeconds += seconds;
+            minSeconds = Math.min(minSeconds, seconds);
+            maxSeconds = Math.max(maxSeconds, seconds);
+            buckets[bucketOf(seconds / 60)]++;
+        }
+    }
+
+    static final String JOB_NAME = "route_legs";
+
+    // Upper bounds (exclusive) of the leg duration buckets, in minutes; the last bucket is open-ended
+    static final int[] BUCKET_BOUNDS_MINUTES = {
+        15, 30, 60, 90, 120, 180, 240, 360, 480, 720, 960, 1440, 2160, 2880, 4320, 5760, 7200, 10080
+    };
+
+    private static final long SETTLE_SECONDS = Long.getLong("courier.legs.settleSeconds", 60);
+
+    // First run: every located log, straight off idx_status_logs_shipment_time
+    static final String FULL_SCAN_QUERY = """
+        SELECT shipment_id, location_id, update_timestamp
+        FROM status_logs
+        WHERE location_id IS NOT NULL AND update_timestamp <= ?
+        ORDER BY shipment_id, update_timestamp, log_id
+    """;
+
+    // Later runs: logs in (watermark, upTo] plus, for each of their shipments,
+    // the last located log at or before the watermark to start the pass from
+    static final String INCREMENTAL_SCAN_QUERY = """
+        SELECT shipment_id, location_id, update_timestamp, log_id
+        FROM status_logs
+        WHERE location_id IS NOT NULL AND update_timestamp > ? AND update_timestamp <= ?
+        UNION ALL
+        SELECT p.shipment_id, p.location_id, p.update_timestamp, p.log_id
+        FROM (SELECT DISTINCT shipment_id FROM status_logs
+              WHERE update_timestamp > ? AND update_timestamp <= ?) n
+        JOIN status_logs p ON p.log_id = (
+            SELECT p2.log_id FROM status_logs p2
+            WHERE p2.shipment_id = n.shipment_id AND p2.location_id IS NOT NULL AND p2.update_timestamp <= ?
+            ORDER BY p2.update_timestamp DESC, p2.log_id DESC
+            LIMIT 1)
+        ORDER BY shipment_id, update_timestamp, log_id
+    """;
+
+    static final String STATS_QUERY = """
+        SELECT from_location_id, to_location_id, leg_count, sum_seconds, min_seconds, max_seconds
+        FROM route_leg_stats
+        ORDER BY leg_count DESC
+        LIMIT ?
+    """;
+
+    static final String HISTOGRAM_QUERY = """
+        SELECT from_location_id, to_location_id, bucket, leg_count
+        FROM route_leg_histogram
+    """;
+
+    private static final Object RUN_LOCK = new Object();
+
+    private RouteLegAnalytics() {
+    }
+
+    public static void main(String[] args) {
+        if (!create.setPasswordFromEnvironment()) {
+            return;
+        }
+        try {
+            Result result = args.length > 0 && args[0].equals("--rebuild") ? rebuild() : update();
+            System.out.println("✓ Processed " + result.logs() + " status logs into " + result.legs()
+                + " legs over " + result.pairs() + " location pairs in " + result.elapsedMillis()
+                + " ms (watermark " + result.watermark() + ")");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            create.shutdown();
+        }
+    }
+
+    // Adds the legs completed since the last run
+    public static Result update() throws SQLException {
+        synchronized (RUN_LOCK) {
+            return run(false);
+        }
+    }
+
+    // Clears the aggregates and the watermark and processes the whole table again
+    public static Result rebuild() throws SQLException {
+        synchronized (RUN_LOCK) {
+            return run(true);
+        }
+    }
+
+    // The busiest legs, by number of traversals
+    public static List<LegStats> topLegs(int limit) throws SQLException {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be at least 1");
+        }
+        QueryMetrics.Sample sample = QueryMetrics.start("routeLegs");
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            Map<Long, long[]> histograms = new HashMap<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(HISTOGRAM_QUERY);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int bucket = rs.getInt(3);
+                    long[] counts = histograms.computeIfAbsent(pairKey(rs.getInt(1), rs.getInt(2)),
+                        k -> new long[BUCKET_BOUNDS_MINUTES.length + 1]);
+                    if (bucket >= 0 && bucket < counts.length) {
+                        counts[bucket] += rs.getLong(4);
+                    }
+                }
+            }
+
+            List<LegStats> result = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(STATS_QUERY)) {
+                pstmt.setInt(1, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    sample.executed();
+                    while (rs.next()) {
+                        int from = rs.getInt(1);
+                        int to = rs.getInt(2);
+                        long count = rs.getLong(3);
+                        long[] counts = histograms.get(pairKey(from, to));
+                        // Bucket bounds are minutes; the report is in hours
+                        double[] p = counts == null ? new double[3]
+                            : DeliveryStats.percentiles(counts, BUCKET_BOUNDS_MINUTES);
+                        result.add(new LegStats(from, LocationDirectory.name(from), to, LocationDirectory.name(to),
+                            count, rs.getLong(4) / 3600.0 / count, rs.getLong(5) / 3600.0, rs.getLong(6) / 3600.0,
+                            p[0] / 60, p[1] / 60, p[2] / 60));
+                    }
+                }
+            }
+            sample.finish(result.size());
+            return result;
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    private static Result run(boolean rebuild) throws SQLException {
+        long start = System.nanoTime();
+        // Whole seconds: the watermark column is TIMESTAMP(0), and a millisecond upTo
+        // would be rounded on save, skipping or re-reading the logs of that second
+        long upToMillis = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(SETTLE_SECONDS);
+        Timestamp upTo = new Timestamp(upToMillis - upToMillis % 1000);
+        if (rebuild) {
+            clear();
+        }
+        Timestamp watermark = readWatermark();
+        if (watermark != null && !watermark.before(upTo)) {
+            return new Result(0, 0, 0, watermark, elapsedMillis(start));
+        }
+
+        Map<Long, Accumulator> pairs = new HashMap<>();
+        long logs = 0;
+        long legs = 0;
+        RowCursor<LogPoint> rows = watermark == null
+            ? ShipmentQueries.openCursor("routeLegs.scan", FULL_SCAN_QUERY, RouteLegAnalytics::mapLogPoint, upTo)
+            : ShipmentQueries.openCursor("routeLegs.scan", INCREMENTAL_SCAN_QUERY, RouteLegAnalytics::mapLogPoint,
+                watermark, upTo, watermark, upTo, watermark);
+        try (rows) {
+            int shipment = -1;
+            int location = 0;
+            long lastScan = 0;
+            while (rows.hasNext()) {
+                LogPoint log = rows.next();
+                logs++;
+                if (log.shipmentId() != shipment) {
+                    shipment = log.shipmentId();
+                } else if (log.locationId() != location) {
+                    long seconds = (log.timeMillis() - lastScan) / 1000;
+                    pairs.computeIfAbsent(pairKey(location, log.locationId()), k -> new Accumulator()).add(seconds);
+                    legs++;
+                }
+                // Repeated scans at one location move the departure time forward
+                location = log.locationId();
+                lastScan = log.timeMillis();
+            }
+        } catch (RowCursor.CursorException e) {
+            throw e.getCause();
+        }
+
+        save(pairs, watermark, upTo);
+        return new Result(logs, legs, pairs.size(), upTo, elapsedMillis(start));
+    }
+
+    // The aggregates and the new watermark commit together, so a failed run is simply
+    // repeated. readFrom is the watermark the pass started at (null for a full pass).
+    private static void save(Map<Long, Accumulator> pairs, Timestamp readFrom, Timestamp watermark)
+            throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("routeLegs.save");
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement current = conn.prepareStatement(
+                     "SELECT watermark FROM analytics_watermarks WHERE job_name = ? FOR UPDATE");
+                 PreparedStatement stats = conn.prepareStatement("""
+                     INSERT INTO route_leg_stats
+                         (from_location_id, to_location_id, leg_count, sum_seconds, min_seconds, max_seconds)
+                     VALUES (?, ?, ?, ?, ?, ?)
+                     ON DUPLICATE KEY UPDATE
+                         leg_count = leg_count + VALUES(leg_count),
+                         sum_seconds = sum_seconds + VALUES(sum_seconds),
+                         min_seconds = LEAST(min_seconds, VALUES(min_seconds)),
+                         max_seconds = GREATEST(max_seconds, VALUES(max_seconds))
+                 """);
+                 PreparedStatement histogram = conn.prepareStatement("""
+                     INSERT INTO route_leg_histogram (from_location_id, to_location_id, bucket, leg_count)
+                     VALUES (?, ?, ?, ?)
+                     ON DUPLICATE KEY UPDATE leg_count = leg_count + VALUES(leg_count)
+                 """);
+                 PreparedStatement mark = conn.prepareStatement("""
+                     INSERT INTO analytics_watermarks (job_name, watermark) VALUES (?, ?)
+                     ON DUPLICATE KEY UPDATE watermark = VALUES(watermark)
+                 """)) {
+                current.setString(1, JOB_NAME);
+                Timestamp stored;
+                try (ResultSet rs = current.executeQuery()) {
+                    stored = rs.next() ? rs.getTimestamp(1) : null;
+                }
+                if (stored == null ? readFrom != null : !stored.equals(readFrom)) {
+                    throw new SQLException("Route leg watermark moved from " + readFrom + " to " + stored
+                        + " during this run; another run already recorded these legs");
+                }
+                for (Map.Entry<Long, Accumulator> e : pairs.entrySet()) {
+                    int from = (int) (e.getKey() >>> 32);
+                    int to = (int) (long) e.getKey();
+                    Accumulator a = e.getValue();
+                    stats.setInt(1, from);
+                    stats.setInt(2, to);
+                    stats.setLong(3, a.count);
+                    stats.setLong(4, a.sumSeconds);
+                    stats.setLong(5, a.minSeconds);
+                    stats.setLong(6, a.maxSeconds);
+                    stats.addBatch();
+                    for (int b = 0; b < a.buckets.length; b++) {
+                        if (a.buckets[b] == 0) {
+                            continue;
+                        }
+                        histogram.setInt(1, from);
+                        histogram.setInt(2, to);
+                        histogram.setInt(3, b);
+                        histogram.setLong(4, a.buckets[b]);
+                        histogram.addBatch();
+                    }
+                }
+                stats.executeBatch();
+                histogram.executeBatch();
+                mark.setString(1, JOB_NAME);
+                mark.setTimestamp(2, watermark);
+                mark.executeUpdate();
+                conn.commit();
+                sample.finish(pairs.size());
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    private static void clear() throws SQLException {
+        try (Connection conn = ShipmentQueries.connect()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 PreparedStatement pstmt = conn.prepareStatement("DELETE FROM analytics_watermarks WHERE job_name = ?")) {
+                stmt.executeUpdate("DELETE FROM route_leg_histogram");
+                stmt.executeUpdate("DELETE FROM route_leg_stats");
+                pstmt.setString(1, JOB_NAME);
+                pstmt.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // Null before the first run
+    private static Timestamp readWatermark() throws SQLException {
+        try (Connection conn = ShipmentQueries.connect();
+             PreparedStatement pstmt = conn.prepareStatement(
+                 "SELECT watermark FROM analytics_watermarks WHERE job_name = ?")) {
+            pstmt.setString(1, JOB_NAME);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getTimestamp(1) : null;
+            }
+        }
+    }
+
+    private static LogPoint mapLogPoint(ResultSet rs) throws SQLException {
+        return new LogPoint(rs.getInt(1), rs.getInt(2), rs.getTimestamp(3).getTime());
+    }
+
+    static int bucketOf(long minutes) {
+        for (int i = 0; i < BUCKET_BOUNDS_MINUTES.length; i++) {
+            if (minutes < BUCKET_BOUNDS_MINUTES[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MINUTES.length;
+    }
+
+    private static long pairKey(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+}
@@ -0,0 +1,107 @@
+import java.sql.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Forward-only iterator over a query result that maps one row at a time.
+// The cursor owns its connection, statement and result set and releases all
+// three on close(), so it must be used in try-with-resources.
+public class RowCursor<T> implements Iterator<T>, AutoCloseable {
+
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    // Iterator methods cannot throw SQLException, so failures are wrapped in this
+    public static class CursorException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public CursorException(SQLException cause) {
+            super(cause.getMessage(), cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+
+    private final Connection conn;
+    private final PreparedStatement stmt;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private final QueryMetrics.Sample sample;
+    private long rows;
+    private boolean advanced;
+    private boolean hasRow;
+    private boolean closed;
+
+    RowCursor(Connection conn, PreparedStatement stmt, ResultSet rs, RowMapper<T> mapper,
+              QueryMetrics.Sample sample) {
+        this.conn = conn;
+        this.stmt = stmt;
+        this.rs = rs;
+        this.mapper = mapper;
+        this.sample = sample;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!advanced) {
+            try {
+                hasRow = rs.next();
+            } catch (SQLException e) {
+                sample.failed();
+                throw new CursorException(e);
+            }
+            advanced = true;
+            if (!hasRow) {
+                close();
+            }
+        }
+        return hasRow;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        advanced = false;
+        rows++;
+        try {
+            return mapper.map(rs);
+        } catch (SQLException e) {
+            sample.failed();
+            throw new CursorException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Fetch time runs until the caller is done with the rows; a no-op after a failure
+        sample.finish(rows);
+        try {
+            rs.close();
+        } catch (SQLException e) {
+            // Closing the statement below releases the result set anyway
+        }
+        try {
+            stmt.close();
+        } catch (SQLException e) {
+            // Connection close below cleans up server-side state
+        }
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("Warning: Could not release cursor connection: " + e.getMessage());
+        }
+    }
+}
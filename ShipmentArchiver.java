@@ -0,0 +1,257 @@
+import java.sql.*;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves delivered and returned shipments older than courier.archive.ageDays,
+// together with their packages, status logs and driver assignments, into the
+// *_archive tables. Each batch is its own short transaction with a pause after
+// it, so live writers never queue behind the archiver for long: candidates are
+// found with a plain non-locking read, and then only that batch's shipment rows
+// are locked, skipping any a writer currently holds (they are picked up on the
+// next run). After each run, partition maintenance adds upcoming months and
+// merges the month partitions the archiver has emptied into p_history.
+//
+// Runs every courier.archive.intervalMinutes on a background thread when
+// -Dcourier.archive.enabled=true, or on demand through runOnce().
+public class ShipmentArchiver {
+
+    public record Result(int shipments, int packages, int statusLogs, int assignments, int batches,
+                         PartitionMaintenance.Result partitions, long elapsedMillis) {
+    }
+
+    private record BatchCounts(int shipments, int packages, int statusLogs, int assignments) {
+    }
+
+    private static final boolean ENABLED = Boolean.getBoolean("courier.archive.enabled");
+    private static final int AGE_DAYS = Integer.getInteger("courier.archive.ageDays", 90);
+    private static final int BATCH_SIZE = Integer.getInteger("courier.archive.batchSize", 200);
+    private static final long PAUSE_MS = Long.getLong("courier.archive.pauseMs", 100);
+    private static final long INTERVAL_MINUTES = Long.getLong("courier.archive.intervalMinutes", 60);
+
+    // Tables that have an <name>_archive copy (created in create.createTables)
+    static final List<String> ARCHIVED_TABLES = List.of("packages", "status_logs", "driver_assignments", "shipments");
+
+    private static final List<String> ARCHIVED_STATUSES = List.of("delivered", "returned");
+
+    // Delivered shipments age from delivery, returned ones (no actual_delivery) from creation
+    static final String CANDIDATE_QUERY = """
+        SELECT shipment_id
+        FROM shipments
+        WHERE current_status = ? AND shipment_id > ?
+          AND COALESCE(actual_delivery, created_at) < ?
+        ORDER BY shipment_id
+        LIMIT ?
+        """;
+
+    // created_date is generated, so shipments are copied column by column
+    private static final String SHIPMENT_COLUMNS = """
+        shipment_id, sender_name, sender_address, sender_phone, recipient_name, recipient_address,
+        recipient_phone, origin_location_id, destination_location_id, current_status, created_at,
+        estimated_delivery, actual_delivery""";
+
+    private static final Object RUN_LOCK = new Object();
+    private static ScheduledExecutorService scheduler;
+
+    private ShipmentArchiver() {
+    }
+
+    public static synchronized void startIfEnabled() {
+        if (!ENABLED || scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "shipment-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(ShipmentArchiver::runScheduled,
+            Math.min(1, INTERVAL_MINUTES), INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void shutdown() {
+        if (scheduler != null) {
+            // Interrupts the pause between batches; the batch in progress still commits or rolls back
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // Archives everything old enough; a run started while another is going waits for it
+    public static Result runOnce() throws SQLException {
+        synchronized (RUN_LOCK) {
+            long start = System.nanoTime();
+            Timestamp cutoff = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(AGE_DAYS));
+            int shipments = 0;
+            int packages = 0;
+            int statusLogs = 0;
+            int assignments = 0;
+            int batches = 0;
+            for (String status : ARCHIVED_STATUSES) {
+                int afterId = 0;
+                while (!Thread.currentThread().isInterrupted()) {
+                    List<Integer> candidates = candidates(status, afterId, cutoff);
+                    if (candidates.isEmpty()) {
+                        break;
+                    }
+                    afterId = candidates.get(candidates.size() - 1);
+                    BatchCounts counts = archiveBatch(candidates);
+                    shipments += counts.shipments();
+                    packages += counts.packages();
+                    statusLogs += counts.statusLogs();
+                    assignments += counts.assignments();
+                    batches++;
+                    if (candidates.size() < BATCH_SIZE) {
+                        break;
+                    }
+                    pause();
+                }
+            }
+            PartitionMaintenance.Result partitions =
+                PartitionMaintenance.maintain(YearMonth.from(cutoff.toLocalDateTime()));
+            return new Result(shipments, packages, statusLogs, assignments, batches, partitions,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private static void runScheduled() {
+        try {
+            runOnce();
+        } catch (SQLException e) {
+            System.err.println("Warning: Shipment archiving failed: " + e.getMessage());
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Integer> candidates(String status, int afterId, Timestamp cutoff) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection conn = ShipmentQueries.connect();
+             PreparedStatement pstmt = conn.prepareStatement(CANDIDATE_QUERY)) {
+            pstmt.setString(1, status);
+            pstmt.setInt(2, afterId);
+            pstmt.setTimestamp(3, cutoff);
+            pstmt.setInt(4, BATCH_SIZE);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // One transaction: lock what is still archivable, copy it to the archive tables, delete it
+    private static BatchCounts archiveBatch(List<Integer> candidates) throws SQLException {
+        List<Integer> ids;
+        BatchCounts counts;
+        QueryMetrics.Sample sample = QueryMetrics.start("archive.batch");
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            conn.setAutoCommit(false);
+            try {
+                ids = lockArchivable(conn, candidates);
+                counts = ids.isEmpty() ? new BatchCounts(0, 0, 0, 0) : move(conn, ids);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            sample.finish(counts.shipments());
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+
+        TrackingCache cache = TrackingCache.shared();
+        for (int shipmentId : ids) {
+            cache.invalidate(shipmentId);
+            // Returned shipments have no actual_delivery and can still be on the overdue board
+            OverdueMonitor.delivered(shipmentId);
+        }
+        if (counts.assignments() > 0) {
+            // Past assignments feed the engine's origin affinity
+            DriverAssignmentEngine.markStale();
+        }
+        return counts;
+    }
+
+    // SKIP LOCKED: a shipment a writer is holding is left for the next run instead of waited for
+    private static List<Integer> lockArchivable(Connection conn, List<Integer> candidates) throws SQLException {
+        String sql = """
+            SELECT s.shipment_id
+            FROM shipments s
+            WHERE s.shipment_id IN (%s) AND s.current_status IN ('delivered', 'returned')
+              AND NOT EXISTS (SELECT 1 FROM driver_assignments da
+                              WHERE da.shipment_id = s.shipment_id AND da.status = 'active')
+            ORDER BY s.shipment_id
+            FOR UPDATE SKIP LOCKED
+        """.formatted(placeholders(candidates.size()));
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bind(pstmt, candidates);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Children first, so no live row ever refers to a shipment that has already moved
+    private static BatchCounts move(Connection conn, List<Integer> ids) throws SQLException {
+        int packages = moveRows(conn, "packages", null, ids);
+        int statusLogs = moveRows(conn, "status_logs", null, ids);
+        int assignments = moveRows(conn, "driver_assignments", null, ids);
+        int shipments = moveRows(conn, "shipments", SHIPMENT_COLUMNS, ids);
+        return new BatchCounts(shipments, packages, statusLogs, assignments);
+    }
+
+    // columns null copies every column; archive tables are created LIKE the live ones
+    private static int moveRows(Connection conn, String table, String columns, List<Integer> ids)
+            throws SQLException {
+        String in = placeholders(ids.size());
+        String copy = columns == null
+            ? "INSERT INTO " + table + "_archive SELECT * FROM " + table + " WHERE shipment_id IN (" + in + ")"
+            : "INSERT INTO " + table + "_archive (" + columns + ") SELECT " + columns + " FROM " + table
+                + " WHERE shipment_id IN (" + in + ")";
+        String delete = "DELETE FROM " + table + " WHERE shipment_id IN (" + in + ")";
+        int copied;
+        int deleted;
+        try (PreparedStatement pstmt = conn.prepareStatement(copy)) {
+            bind(pstmt, ids);
+            copied = pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(delete)) {
+            bind(pstmt, ids);
+            deleted = pstmt.executeUpdate();
+        }
+        if (copied != deleted) {
+            throw new SQLException("Archiving " + table + " copied " + copied + " rows but deleted " + deleted);
+        }
+        return deleted;
+    }
+
+    private static void bind(PreparedStatement pstmt, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            pstmt.setInt(i + 1, ids.get(i));
+        }
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,639 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Typed query API behind the console reports in functions.
+// Queries select location IDs only; names and types come from LocationDirectory.
+// Small results come back as lists of records; the two unbounded listings
+// (delayed shipments and all shipments) are exposed as streaming cursors that
+// fetch rows from the server in chunks instead of buffering the whole result.
+public class ShipmentQueries {
+
+    public record StatusLogEntry(Timestamp updateTimestamp, String statusUpdate, Integer locationId,
+                                 String locationName, String locationType, String agentName, String notes) {
+    }
+
+    public record TrackingView(int shipmentId, String senderName, String recipientName, String currentStatus,
+                               Timestamp createdAt, Timestamp estimatedDelivery, Timestamp actualDelivery,
+                               List<StatusLogEntry> history) {
+    }
+
+    public record PendingShipment(int shipmentId, String senderName, String recipientName, String currentStatus,
+                                  Timestamp createdAt, Timestamp estimatedDelivery, String origin,
+                                  String destination) {
+    }
+
+    public record HubDeliveryStats(int locationId, String locationName, String locationType,
+                                   int totalDeliveries, double avgTotalHours, double avgVarianceHours,
+                                   double p50Hours, double p90Hours, double p99Hours) {
+    }
+
+    public record DelayedShipment(int shipmentId, String senderName, String recipientName, String currentStatus,
+                                  Timestamp estimatedDelivery, Timestamp actualDelivery, double delayHours,
+                                  String origin, String destination) {
+    }
+
+    public record DailyVolume(Date shipmentDate, int originLocationId, String originLocation, int shipmentCount) {
+    }
+
+    public record StatusCount(String status, long shipmentCount) {
+    }
+
+    public record ShipmentSummary(int shipmentId, String senderName, String recipientName, String currentStatus) {
+    }
+
+    // One page of a keyset-paginated listing; nextToken is null on the last page
+    public record Page<T>(List<T> items, String nextToken) {
+        public boolean hasMore() {
+            return nextToken != null;
+        }
+    }
+
+    // Rows per round trip for streaming cursors; 0 or less switches to
+    // row-by-row streaming (the connection is busy until the cursor is closed)
+    private static final int FETCH_SIZE = Integer.getInteger("courier.query.fetchSize", 1000);
+
+    static final String TRACKING_QUERY = """
+        SELECT s.shipment_id, s.sender_name, s.recipient_name, s.current_status,
+               s.created_at, s.estimated_delivery, s.actual_delivery,
+               sl.status_update, sl.update_timestamp, sl.agent_name, sl.notes, sl.location_id
+        FROM shipments s
+        LEFT JOIN status_logs sl ON s.shipment_id = sl.shipment_id
+        WHERE s.shipment_id = ?
+        ORDER BY sl.update_timestamp DESC
+    """;
+
+    // Batch tracking: headers and logs for a set of shipments, %s being either an
+    // IN list of placeholders or a subquery on the tracking_batch_ids temporary table
+    static final String TRACKING_HEADERS_QUERY = """
+        SELECT shipment_id, sender_name, recipient_name, current_status,
+               created_at, estimated_delivery, actual_delivery
+        FROM shipments
+        WHERE shipment_id IN (%s)
+    """;
+
+    // All descending so idx_status_logs_shipment_time is read backwards without a sort;
+    // each shipment's logs arrive together, newest first
+    static final String TRACKING_LOGS_QUERY = """
+        SELECT shipment_id, status_update, update_timestamp, agent_name, notes, location_id
+        FROM status_logs
+        WHERE shipment_id IN (%s)
+        ORDER BY shipment_id DESC, update_timestamp DESC, log_id DESC
+    """;
+
+    // Batches up to this size use IN lists of at most TRACKING_IN_CHUNK IDs;
+    // larger ones load the IDs into a temporary table and join against it
+    private static final int TRACKING_TEMP_TABLE_THRESHOLD =
+        Integer.getInteger("courier.tracking.tempTableThreshold", 2000);
+    private static final int TRACKING_IN_CHUNK = 500;
+    private static final int TRACKING_ID_INSERT_ROWS = 1000;
+
+    static final String PENDING_FOR_DRIVER_QUERY = """
+        SELECT s.shipment_id, s.sender_name, s.recipient_name, s.current_status,
+               s.created_at, da.estimated_delivery, s.origin_location_id, s.destination_location_id
+        FROM shipments s
+        JOIN driver_assignments da ON s.shipment_id = da.shipment_id
+        WHERE da.driver_id = ? AND s.current_status = 'pending' AND da.status = 'active'
+        ORDER BY da.estimated_delivery
+    """;
+
+    // Reads the running aggregates kept by DeliveryStats rather than scanning delivered shipments
+    static final String HUB_DELIVERY_QUERY = """
+        SELECT destination_location_id as location_id,
+               delivered_count as total_deliveries,
+               sum_total_hours / delivered_count as avg_total_hours,
+               sum_variance_hours / NULLIF(variance_count, 0) as avg_variance_hours
+        FROM hub_delivery_stats
+        WHERE delivered_count > 0
+        ORDER BY avg_total_hours
+    """;
+
+    // Reads the shipment_daily_volume rollup: cost is days x origins, not shipments
+    static final String DAILY_VOLUME_QUERY = """
+        SELECT shipment_date, origin_location_id as location_id, shipment_count
+        FROM shipment_daily_volume
+        WHERE shipment_date >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
+        ORDER BY shipment_date DESC, shipment_count DESC
+    """;
+
+    // Answered from idx_shipment_status without touching the rows
+    static final String STATUS_COUNT_QUERY = """
+        SELECT current_status, COUNT(*) as shipment_count
+        FROM shipments
+        GROUP BY current_status
+        ORDER BY current_status
+    """;
+
+    static final String ALL_SHIPMENTS_QUERY =
+        "SELECT shipment_id, sender_name, recipient_name, current_status FROM shipments ORDER BY shipment_id";
+
+    // 1. Current status and location log for a shipment, newest log entry first
+    public static Optional<TrackingView> getTrackingView(int shipmentId) throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("tracking");
+        try (Connection conn = connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(TRACKING_QUERY)) {
+
+            pstmt.setInt(1, shipmentId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                if (!rs.next()) {
+                    sample.finish(0);
+                    return Optional.empty();
+                }
+
+                int id = rs.getInt("shipment_id");
+                String sender = rs.getString("sender_name");
+                String recipient = rs.getString("recipient_name");
+                String status = rs.getString("current_status");
+                Timestamp created = rs.getTimestamp("created_at");
+                Timestamp estimated = rs.getTimestamp("estimated_delivery");
+                Timestamp actual = rs.getTimestamp("actual_delivery");
+
+                List<StatusLogEntry> history = new ArrayList<>();
+                int rows = 0;
+                do {
+                    rows++;
+                    if (rs.getString("status_update") != null) {
+                        history.add(mapStatusLog(rs));
+                    }
+                } while (rs.next());
+                sample.finish(rows);
+
+                // Views are shared through TrackingCache, so the history must not be mutable
+                return Optional.of(new TrackingView(id, sender, recipient, status, created, estimated,
+                    actual, List.copyOf(history)));
+            }
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Tracking views for many shipments at once, in the order the IDs were given;
+    // unknown IDs are left out. Headers and logs are read with two queries per
+    // chunk of IDs (or two in total through a temporary table for large batches),
+    // inside one read-only snapshot so they agree with each other.
+    public static Map<Integer, TrackingView> getTrackingViews(Collection<Integer> shipmentIds)
+            throws SQLException {
+        int[] ids = new LinkedHashSet<>(shipmentIds).stream().mapToInt(Integer::intValue).toArray();
+        Map<Integer, TrackingView> result = new LinkedHashMap<>();
+        if (ids.length == 0) {
+            return result;
+        }
+        int[] sorted = ids.clone();
+        Arrays.sort(sorted);
+
+        Map<Integer, TrackingView> headers = new HashMap<>();
+        Map<Integer, List<StatusLogEntry>> histories = new HashMap<>();
+        QueryMetrics.Sample sample = QueryMetrics.start("trackingBatch");
+        try (Connection conn = connect(sample)) {
+            boolean tempTable = sorted.length > TRACKING_TEMP_TABLE_THRESHOLD;
+            if (tempTable) {
+                loadBatchIds(conn, sorted);
+            }
+            long rows = 0;
+            conn.setAutoCommit(false);
+            try {
+                if (tempTable) {
+                    String in = "SELECT shipment_id FROM tracking_batch_ids";
+                    rows += readTrackingHeaders(conn, in, sorted, 0, 0, headers);
+                    sample.executed();
+                    rows += readTrackingLogs(conn, in, sorted, 0, 0, histories);
+                } else {
+                    for (int from = 0; from < sorted.length; from += TRACKING_IN_CHUNK) {
+                        int to = Math.min(sorted.length, from + TRACKING_IN_CHUNK);
+                        String in = placeholders(to - from);
+                        rows += readTrackingHeaders(conn, in, sorted, from, to, headers);
+                        if (from == 0) {
+                            sample.executed();
+                        }
+                        rows += readTrackingLogs(conn, in, sorted, from, to, histories);
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+                if (tempTable) {
+                    // The connection goes back to the pool with its session, so the table must go now
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.executeUpdate("DROP TEMPORARY TABLE IF EXISTS tracking_batch_ids");
+                    }
+                }
+            }
+            sample.finish(rows);
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+
+        for (int id : ids) {
+            TrackingView header = headers.get(id);
+            if (header != null) {
+                List<StatusLogEntry> history = histories.get(id);
+                result.put(id, new TrackingView(header.shipmentId(), header.senderName(), header.recipientName(),
+                    header.currentStatus(), header.createdAt(), header.estimatedDelivery(),
+                    header.actualDelivery(), history == null ? List.of() : List.copyOf(history)));
+            }
+        }
+        return result;
+    }
+
+    // Header-only views (empty history) keyed by shipment ID; from/to select the
+    // chunk's IDs to bind, and nothing is bound when both are 0
+    private static int readTrackingHeaders(Connection conn, String in, int[] ids, int from, int to,
+                                           Map<Integer, TrackingView> headers) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(TRACKING_HEADERS_QUERY.formatted(in))) {
+            for (int i = from; i < to; i++) {
+                pstmt.setInt(i - from + 1, ids[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    int id = rs.getInt("shipment_id");
+                    headers.put(id, new TrackingView(id, rs.getString("sender_name"), rs.getString("recipient_name"),
+                        rs.getString("current_status"), rs.getTimestamp("created_at"),
+                        rs.getTimestamp("estimated_delivery"), rs.getTimestamp("actual_delivery"), List.of()));
+                }
+            }
+        }
+        return rows;
+    }
+
+    // Logs come grouped by shipment, so each group is appended to one list in a single pass
+    private static int readTrackingLogs(Connection conn, String in, int[] ids, int from, int to,
+                                        Map<Integer, List<StatusLogEntry>> histories) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(TRACKING_LOGS_QUERY.formatted(in))) {
+            pstmt.setFetchSize(FETCH_SIZE > 0 ? FETCH_SIZE : Integer.MIN_VALUE);
+            for (int i = from; i < to; i++) {
+                pstmt.setInt(i - from + 1, ids[i]);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int current = -1;
+                List<StatusLogEntry> history = null;
+                while (rs.next()) {
+                    rows++;
+                    int id = rs.getInt("shipment_id");
+                    if (id != current || history == null) {
+                        current = id;
+                        history = new ArrayList<>();
+                        histories.put(id, history);
+                    }
+                    history.add(mapStatusLog(rs));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static void loadBatchIds(Connection conn, int[] ids) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("""
+                CREATE TEMPORARY TABLE IF NOT EXISTS tracking_batch_ids (shipment_id INT PRIMARY KEY) ENGINE=MEMORY
+            """);
+            stmt.executeUpdate("DELETE FROM tracking_batch_ids");
+        }
+        for (int from = 0; from < ids.length; from += TRACKING_ID_INSERT_ROWS) {
+            int to = Math.min(ids.length, from + TRACKING_ID_INSERT_ROWS);
+            StringBuilder sql = new StringBuilder("INSERT INTO tracking_batch_ids (shipment_id) VALUES ");
+            for (int i = from; i < to; i++) {
+                sql.append(i == from ? "(?)" : ", (?)");
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+                for (int i = from; i < to; i++) {
+                    pstmt.setInt(i - from + 1, ids[i]);
+                }
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    // 2. Pending shipments assigned to a driver, soonest estimated delivery first
+    public static List<PendingShipment> getPendingShipmentsForDriver(int driverId) throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("pendingForDriver");
+        try (Connection conn = connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(PENDING_FOR_DRIVER_QUERY)) {
+
+            pstmt.setInt(1, driverId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                List<PendingShipment> result = new ArrayList<>();
+                while (rs.next()) {
+                    result.add(new PendingShipment(rs.getInt("shipment_id"), rs.getString("sender_name"),
+                        rs.getString("recipient_name"), rs.getString("current_status"),
+                        rs.getTimestamp("created_at"), rs.getTimestamp("estimated_delivery"),
+                        LocationDirectory.name(rs.getInt("origin_location_id")),
+                        LocationDirectory.name(rs.getInt("destination_location_id"))));
+                }
+                sample.finish(result.size());
+                return result;
+            }
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // 3. Average delivery time per destination location
+    public static List<HubDeliveryStats> getAverageDeliveryTimePerHub() throws SQLException {
+        return getAverageDeliveryTimePerHub(0);
+    }
+
+    // timeoutSeconds limits each statement (0 for none), so a caller that stops
+    // waiting for the report also gets the connection back from the server.
+    // Cached server statements keep their timeout after close, so it is cleared
+    // again before the statement goes back to the cache.
+    public static List<HubDeliveryStats> getAverageDeliveryTimePerHub(int timeoutSeconds) throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("hubDelivery");
+        try (Connection conn = connect(sample)) {
+            Map<Integer, double[]> percentiles = DeliveryStats.loadPercentiles(conn, timeoutSeconds);
+
+            List<HubDeliveryStats> result = new ArrayList<>();
+            try (PreparedStatement pstmt = conn.prepareStatement(HUB_DELIVERY_QUERY)) {
+                pstmt.setQueryTimeout(timeoutSeconds);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    sample.executed();
+                    while (rs.next()) {
+                        int locationId = rs.getInt("location_id");
+                        double[] p = percentiles.getOrDefault(locationId, new double[3]);
+                        result.add(new HubDeliveryStats(locationId, LocationDirectory.name(locationId),
+                            LocationDirectory.type(locationId), rs.getInt("total_deliveries"),
+                            rs.getDouble("avg_total_hours"), rs.getDouble("avg_variance_hours"),
+                            p[0], p[1], p[2]));
+                    }
+                } finally {
+                    pstmt.setQueryTimeout(0);
+                }
+            }
+            sample.finish(result.size());
+            return result;
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // 5. Shipments created per day and origin over the last 30 days
+    public static List<DailyVolume> getDailyShipmentVolumeByOrigin() throws SQLException {
+        return getDailyShipmentVolumeByOrigin(0);
+    }
+
+    public static List<DailyVolume> getDailyShipmentVolumeByOrigin(int timeoutSeconds) throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("dailyVolume");
+        try (Connection conn = connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(DAILY_VOLUME_QUERY)) {
+            pstmt.setQueryTimeout(timeoutSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                List<DailyVolume> result = new ArrayList<>();
+                while (rs.next()) {
+                    int locationId = rs.getInt("location_id");
+                    result.add(new DailyVolume(rs.getDate("shipment_date"), locationId,
+                        LocationDirectory.name(locationId), rs.getInt("shipment_count")));
+                }
+                sample.finish(result.size());
+                return result;
+            } finally {
+                pstmt.setQueryTimeout(0);
+            }
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Every shipment in ID order
+    public static RowCursor<ShipmentSummary> streamAllShipments() throws SQLException {
+        return openCursor("allShipments", ALL_SHIPMENTS_QUERY, ShipmentQueries::mapShipmentSummary);
+    }
+
+    // Keyset pages seek past the last key seen, so every page costs the same
+    // index range scan no matter how deep into the listing it is
+    static final String SHIPMENTS_PAGE_QUERY = """
+        SELECT shipment_id, sender_name, recipient_name, current_status
+        FROM shipments
+        WHERE shipment_id > ?
+        ORDER BY shipment_id
+        LIMIT ?
+    """;
+
+    // Delayed shipments page in (estimated_delivery, shipment_id) order: the
+    // earliest promise first, which for still-open shipments is also the
+    // longest delay. The tuple is unique and stable while rows are added.
+    // A delayed shipment's promise is always in the past, so estimated_delivery
+    // < NOW() bounds the index range and the scan stops before future estimates.
+    static final String DELAYED_PAGE_QUERY = """
+        SELECT s.shipment_id, s.sender_name, s.recipient_name, s.current_status,
+               s.estimated_delivery, s.actual_delivery,
+               TIMESTAMPDIFF(HOUR, s.estimated_delivery, COALESCE(s.actual_delivery, NOW())) as delay_hours,
+               s.origin_location_id, s.destination_location_id
+        FROM shipments s
+        WHERE s.estimated_delivery < NOW()
+          AND s.estimated_delivery < COALESCE(s.actual_delivery, NOW())
+          AND (s.estimated_delivery > ? OR (s.estimated_delivery = ? AND s.shipment_id > ?))
+        ORDER BY s.estimated_delivery, s.shipment_id
+        LIMIT ?
+    """;
+
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final Timestamp BEFORE_ALL = new Timestamp(0);
+
+    // Number of shipments in each status
+    public static List<StatusCount> getStatusCounts() throws SQLException {
+        return getStatusCounts(0);
+    }
+
+    public static List<StatusCount> getStatusCounts(int timeoutSeconds) throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("statusCounts");
+        try (Connection conn = connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(STATUS_COUNT_QUERY)) {
+            pstmt.setQueryTimeout(timeoutSeconds);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                List<StatusCount> result = new ArrayList<>();
+                while (rs.next()) {
+                    result.add(new StatusCount(rs.getString("current_status"), rs.getLong("shipment_count")));
+                }
+                sample.finish(result.size());
+                return result;
+            } finally {
+                pstmt.setQueryTimeout(0);
+            }
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Shipments in ID order, starting after the position encoded in pageToken (null for the first page)
+    public static Page<ShipmentSummary> listShipments(String pageToken, int pageSize) throws SQLException {
+        int limit = checkPageSize(pageSize);
+        long[] key = PageToken.decode(pageToken, "S", 1);
+        int afterId = key == null ? 0 : (int) key[0];
+
+        QueryMetrics.Sample sample = QueryMetrics.start("shipmentsPage");
+        try (Connection conn = connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(SHIPMENTS_PAGE_QUERY)) {
+            pstmt.setInt(1, afterId);
+            // One extra row tells us whether another page exists
+            pstmt.setInt(2, limit + 1);
+
+            List<ShipmentSummary> items = new ArrayList<>(limit);
+            boolean more = false;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    if (items.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    items.add(mapShipmentSummary(rs));
+                }
+            }
+
+            sample.finish(items.size());
+
+            String next = more
+                ? PageToken.encode("S", items.get(items.size() - 1).shipmentId())
+                : null;
+            return new Page<>(items, next);
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    // Delayed shipments in (estimated_delivery, shipment_id) order, starting after pageToken
+    public static Page<DelayedShipment> listDelayedShipments(String pageToken, int pageSize) throws SQLException {
+        int limit = checkPageSize(pageSize);
+        long[] key = PageToken.decode(pageToken, "D", 2);
+        Timestamp afterEstimate = key == null ? BEFORE_ALL : new Timestamp(key[0]);
+        int afterId = key == null ? 0 : (int) key[1];
+
+        QueryMetrics.Sample sample = QueryMetrics.start("delayedPage");
+        try (Connection conn = connect(sample);
+             PreparedStatement pstmt = conn.prepareStatement(DELAYED_PAGE_QUERY)) {
+            pstmt.setTimestamp(1, afterEstimate);
+            pstmt.setTimestamp(2, afterEstimate);
+            pstmt.setInt(3, afterId);
+            pstmt.setInt(4, limit + 1);
+
+            List<DelayedShipment> items = new ArrayList<>(limit);
+            boolean more = false;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                sample.executed();
+                while (rs.next()) {
+                    if (items.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    items.add(mapDelayedShipment(rs));
+                }
+            }
+
+            sample.finish(items.size());
+
+            String next = null;
+            if (more) {
+                DelayedShipment last = items.get(items.size() - 1);
+                next = PageToken.encode("D", last.estimatedDelivery().getTime(), last.shipmentId());
+            }
+            return new Page<>(items, next);
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+
+    private static int checkPageSize(int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return pageSize;
+    }
+
+    static StatusLogEntry mapStatusLog(ResultSet rs) throws SQLException {
+        int locationId = rs.getInt("location_id");
+        boolean hasLocation = !rs.wasNull();
+        return new StatusLogEntry(rs.getTimestamp("update_timestamp"), rs.getString("status_update"),
+            hasLocation ? locationId : null,
+            hasLocation ? LocationDirectory.name(locationId) : null,
+            hasLocation ? LocationDirectory.type(locationId) : null,
+            rs.getString("agent_name"), rs.getString("notes"));
+    }
+
+    static DelayedShipment mapDelayedShipment(ResultSet rs) throws SQLException {
+        return new DelayedShipment(rs.getInt("shipment_id"), rs.getString("sender_name"),
+            rs.getString("recipient_name"), rs.getString("current_status"),
+            rs.getTimestamp("estimated_delivery"), rs.getTimestamp("actual_delivery"),
+            rs.getDouble("delay_hours"), LocationDirectory.name(rs.getInt("origin_location_id")),
+            LocationDirectory.name(rs.getInt("destination_location_id")));
+    }
+
+    static ShipmentSummary mapShipmentSummary(ResultSet rs) throws SQLException {
+        return new ShipmentSummary(rs.getInt("shipment_id"), rs.getString("sender_name"),
+            rs.getString("recipient_name"), rs.getString("current_status"));
+    }
+
+    // Opens a forward-only cursor; ownership of the connection passes to the cursor,
+    // which records the operation's metrics when it is closed
+    static <T> RowCursor<T> openCursor(String operation, String sql, RowCursor.RowMapper<T> mapper,
+                                       Object... params) throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start(operation);
+        Connection conn;
+        try {
+            conn = connect(sample);
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+        PreparedStatement pstmt = null;
+        try {
+            pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            pstmt.setFetchSize(FETCH_SIZE > 0 ? FETCH_SIZE : Integer.MIN_VALUE);
+            for (int i = 0; i < params.length; i++) {
+                pstmt.setObject(i + 1, params[i]);
+            }
+            ResultSet rs = pstmt.executeQuery();
+            sample.executed();
+            return new RowCursor<>(conn, pstmt, rs, mapper, sample);
+        } catch (SQLException e) {
+            sample.failed();
+            if (pstmt != null) {
+                pstmt.close();
+            }
+            conn.close();
+            throw e;
+        }
+    }
+
+    static Connection connect(QueryMetrics.Sample sample) throws SQLException {
+        Connection conn = connect();
+        sample.acquired();
+        return conn;
+    }
+
+    static Connection connect() throws SQLException {
+        Connection conn = create.getConnection();
+        if (conn == null) {
+            throw new SQLException("No database connection available");
+        }
+        return conn;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sb = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+}
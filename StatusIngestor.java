@@ -0,0 +1,437 @@
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ingestion pipeline for hub scan events. Events go into bounded queues
+// (submit() blocks when they are full) and writer threads group-commit them:
+// each transaction inserts the status_logs rows for a batch and moves
+// shipments.current_status (and actual_delivery on delivery) to the newest
+// event by timestamp. An event older than the newest log already stored for
+// its shipment (e.g. an offline hub syncing late) is logged but does not touch
+// the shipment, so the status always follows the newest log.
+// Events are partitioned by shipment_id, so one shipment's events are
+// applied in the order they were submitted.
+public class StatusIngestor implements AutoCloseable {
+
+    public record StatusEvent(int shipmentId, String status, Integer locationId, Timestamp timestamp,
+                              String agentName, String notes) {
+    }
+
+    // Snapshot of ingestion counters, used by the diagnostic menu
+    public record Stats(long submitted, long committed, long failed, long rejected,
+                        int queueDepth, int queueCapacity, long batches, double avgBatchSize,
+                        double eventsPerSecond, double avgCommitMillis, double maxCommitMillis,
+                        double avgLatencyMillis) {
+    }
+
+    private record Pending(StatusEvent event, long submittedNanos) {
+    }
+
+    private static final Set<String> STATUSES = Set.of("pending", "in_transit", "delivered", "returned", "delayed");
+
+    private static final String LOG_COLUMNS =
+        "INSERT INTO status_logs (shipment_id, status_update, location_id, update_timestamp, agent_name, notes) VALUES ";
+    private static final String UPDATE_SHIPMENT_SQL = """
+        UPDATE shipments
+        SET current_status = ?,
+            actual_delivery = CASE WHEN ? THEN COALESCE(actual_delivery, ?) ELSE actual_delivery END
+        WHERE shipment_id = ?
+    """;
+
+    private static StatusIngestor shared;
+
+    private final List<BlockingQueue<Pending>> queues = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private final int queueCapacity;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final long startedAt = System.nanoTime();
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    public StatusIngestor(int queueCapacity, int maxBatch, long lingerMillis, int writerCount) {
+        if (queueCapacity < 1 || maxBatch < 1 || writerCount < 1) {
+            throw new IllegalArgumentException("Invalid ingestor settings: capacity=" + queueCapacity
+                + ", maxBatch=" + maxBatch + ", writers=" + writerCount);
+        }
+        this.queueCapacity = queueCapacity;
+        this.maxBatch = maxBatch;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+
+        int perWriter = Math.max(1, queueCapacity / writerCount);
+        for (int i = 0; i < writerCount; i++) {
+            BlockingQueue<Pending> queue = new ArrayBlockingQueue<>(perWriter);
+            queues.add(queue);
+            Thread t = new Thread(() -> runWriter(queue), "status-ingest-" + i);
+            t.setDaemon(true);
+            writers.add(t);
+            t.start();
+        }
+    }
+
+    // Started on first use with the courier.ingest.* settings
+    public static synchronized StatusIngestor shared() {
+        if (shared == null) {
+            shared = new StatusIngestor(
+                Integer.getInteger("courier.ingest.queueCapacity", 10000),
+                Integer.getInteger("courier.ingest.maxBatch", 500),
+                Long.getLong("courier.ingest.lingerMillis", 5),
+                Integer.getInteger("courier.ingest.writers", 1));
+        }
+        return shared;
+    }
+
+    // Null when nothing has been ingested since startup
+    public static synchronized Stats sharedStats() {
+        return shared == null ? null : shared.getStats();
+    }
+
+    public static void shutdownShared() {
+        StatusIngestor s;
+        synchronized (StatusIngestor.class) {
+            s = shared;
+            shared = null;
+        }
+        if (s != null) {
+            s.close();
+        }
+    }
+
+    // Queue an event, waiting for space when the writers are behind
+    public void submit(StatusEvent event) throws InterruptedException {
+        BlockingQueue<Pending> queue = accept(event);
+        queue.put(new Pending(event, System.nanoTime()));
+        submitted.increment();
+    }
+
+    // Queue an event, giving up after the timeout; false means the caller should back off
+    public boolean offer(StatusEvent event, long timeout, TimeUnit unit) throws InterruptedException {
+        BlockingQueue<Pending> queue = accept(event);
+        if (!queue.offer(new Pending(event, System.nanoTime()), timeout, unit)) {
+            rejected.increment();
+            return false;
+        }
+        submitted.increment();
+        return true;
+    }
+
+    public Stats getStats() {
+        int depth = 0;
+        for (BlockingQueue<Pending> queue : queues) {
+            depth += queue.size();
+        }
+        long done = committed.sum();
+        long batchCount = batches.sum();
+        double elapsedSeconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+        return new Stats(submitted.sum(), done, failed.sum(), rejected.sum(), depth, queueCapacity, batchCount,
+            batchCount == 0 ? 0.0 : (done + failed.sum()) / (double) batchCount,
+            elapsedSeconds <= 0 ? 0.0 : done / elapsedSeconds,
+            batchCount == 0 ? 0.0 : commitNanos.sum() / (double) batchCount / 1_000_000.0,
+            maxCommitNanos.get() / 1_000_000.0,
+            done == 0 ? 0.0 : latencyNanos.sum() / (double) done / 1_000_000.0);
+    }
+
+    // Stop accepting events and wait for the queued ones to be written
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread t : writers) {
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private BlockingQueue<Pending> accept(StatusEvent event) {
+        if (closed) {
+            throw new IllegalStateException("Status ingestor is closed");
+        }
+        if (!STATUSES.contains(event.status())) {
+            throw new IllegalArgumentException("Unknown status: " + event.status());
+        }
+        return queues.get(Math.floorMod(event.shipmentId(), queues.size()));
+    }
+
+    private void runWriter(BlockingQueue<Pending> queue) {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+
+                // Under light load, wait briefly so one commit covers more events
+                long lingerUntil = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatch && !closed) {
+                    long remaining = lingerUntil - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        long start = System.nanoTime();
+        try {
+            write(batch);
+            batches.increment();
+            recordCommit(batch, start);
+        } catch (SQLException e) {
+            // One bad event (e.g. an unknown shipment) must not drop its neighbours.
+            // The retries still count as one batch, so the average batch size holds.
+            System.err.println("Warning: Status batch failed, retrying events one by one: " + e.getMessage());
+            batches.increment();
+            for (Pending p : batch) {
+                long eventStart = System.nanoTime();
+                try {
+                    write(List.of(p));
+                    recordCommit(List.of(p), eventStart);
+                } catch (SQLException single) {
+                    failed.increment();
+                    System.err.println("Warning: Dropped status event for shipment "
+                        + p.event().shipmentId() + ": " + single.getMessage());
+                }
+            }
+        }
+    }
+
+    private void recordCommit(List<Pending> batch, long start) {
+        long now = System.nanoTime();
+        long elapsed = now - start;
+        commitNanos.add(elapsed);
+        maxCommitNanos.accumulateAndGet(elapsed, Math::max);
+        committed.add(batch.size());
+        for (Pending p : batch) {
+            latencyNanos.add(now - p.submittedNanos());
+        }
+    }
+
+    // One transaction: log rows, latest status per shipment, delivery aggregates,
+    // and completion of the delivered shipments' driver assignments
+    private void write(List<Pending> batch) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        // The newest event by timestamp wins, within the batch and against the logs
+        // already stored; on a tie the later submission wins. TreeMap gives every
+        // writer the same row lock order.
+        Map<Integer, StatusEvent> latest = new TreeMap<>();
+        for (Pending p : batch) {
+            StatusEvent e = p.event();
+            latest.merge(e.shipmentId(), e,
+                (current, next) -> eventTime(next, now) >= eventTime(current, now) ? next : current);
+        }
+
+        Map<Integer, StatusEvent> applied;
+        Map<Integer, DeliveryStats.Delivery> deliveries;
+        List<Integer> releasedDrivers;
+        QueryMetrics.Sample sample = QueryMetrics.start("ingest.statusBatch");
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            conn.setAutoCommit(false);
+            try {
+                // Shipment rows are locked in ID order before the log inserts take their
+                // foreign key locks, as the assignment engine and the archiver do
+                lockShipments(conn, latest.keySet());
+                // Read under the lock and before this batch's own logs go in
+                applied = newerThanStored(conn, latest, now);
+                insertLogs(conn, batch, now);
+                deliveries = newDeliveries(conn, applied, now);
+                updateShipments(conn, applied, now);
+                DeliveryStats.recordDeliveries(conn, new ArrayList<>(deliveries.values()));
+                releasedDrivers = DriverAssignmentEngine.completeAssignments(conn, deliveries.keySet());
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+            sample.finish(batch.size());
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+
+        TrackingCache cache = TrackingCache.shared();
+        for (StatusEvent e : latest.values()) {
+            cache.invalidate(e.shipmentId());
+        }
+        for (StatusEvent e : applied.values()) {
+            OverdueMonitor.statusChanged(e.shipmentId(), e.status());
+        }
+        for (int shipmentId : deliveries.keySet()) {
+            OverdueMonitor.delivered(shipmentId);
+        }
+        DriverAssignmentEngine.released(releasedDrivers);
+    }
+
+    // Events without a timestamp are stamped with the batch time
+    private static long eventTime(StatusEvent e, Timestamp now) {
+        return (e.timestamp() != null ? e.timestamp() : now).getTime();
+    }
+
+    private static void lockShipments(Connection conn, Set<Integer> shipmentIds) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT shipment_id FROM shipments WHERE shipment_id IN (");
+        for (int i = 0; i < shipmentIds.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") ORDER BY shipment_id FOR UPDATE");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (int id : shipmentIds) {
+                pstmt.setInt(p++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    // Locking is the point; the rows are read again below
+                }
+            }
+        }
+    }
+
+    // The events at least as new as the newest log stored for their shipment;
+    // the others are only logged
+    private static Map<Integer, StatusEvent> newerThanStored(Connection conn, Map<Integer, StatusEvent> latest,
+                                                             Timestamp now) throws SQLException {
+        StringBuilder sql = new StringBuilder("""
+            SELECT shipment_id, MAX(update_timestamp)
+            FROM status_logs
+            WHERE shipment_id IN (""");
+        for (int i = 0; i < latest.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") GROUP BY shipment_id");
+
+        Map<Integer, StatusEvent> applied = new TreeMap<>(latest);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (int id : latest.keySet()) {
+                pstmt.setInt(p++, id);
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int shipmentId = rs.getInt(1);
+                    Timestamp newest = rs.getTimestamp(2);
+                    // Compare at the stored precision: TIMESTAMP rounds to whole seconds
+                    long stored = (eventTime(latest.get(shipmentId), now) + 500) / 1000 * 1000;
+                    if (newest != null && stored < newest.getTime()) {
+                        applied.remove(shipmentId);
+                    }
+                }
+            }
+        }
+        return applied;
+    }
+
+    private static void insertLogs(Connection conn, List<Pending> batch, Timestamp now) throws SQLException {
+        StringBuilder sql = new StringBuilder(LOG_COLUMNS);
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Pending pending : batch) {
+                StatusEvent e = pending.event();
+                pstmt.setInt(p++, e.shipmentId());
+                pstmt.setString(p++, e.status());
+                if (e.locationId() != null) {
+                    pstmt.setInt(p++, e.locationId());
+                } else {
+                    pstmt.setNull(p++, Types.INTEGER);
+                }
+                pstmt.setTimestamp(p++, e.timestamp() != null ? e.timestamp() : now);
+                pstmt.setString(p++, e.agentName());
+                pstmt.setString(p++, e.notes());
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Shipments this batch delivers for the first time, locked until commit
+    private static Map<Integer, DeliveryStats.Delivery> newDeliveries(Connection conn,
+                                                                      Map<Integer, StatusEvent> latest,
+                                                                      Timestamp now) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        for (StatusEvent e : latest.values()) {
+            if ("delivered".equals(e.status())) {
+                ids.add(e.shipmentId());
+            }
+        }
+        Map<Integer, DeliveryStats.Delivery> deliveries = new TreeMap<>();
+        if (ids.isEmpty()) {
+            return deliveries;
+        }
+
+        StringBuilder sql = new StringBuilder("""
+            SELECT shipment_id, destination_location_id, created_at, estimated_delivery
+            FROM shipments
+            WHERE actual_delivery IS NULL AND shipment_id IN (""");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") FOR UPDATE");
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                pstmt.setInt(i + 1, ids.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    StatusEvent e = latest.get(rs.getInt("shipment_id"));
+                    deliveries.put(e.shipmentId(), new DeliveryStats.Delivery(rs.getInt("destination_location_id"),
+                        rs.getTimestamp("created_at"), rs.getTimestamp("estimated_delivery"),
+                        e.timestamp() != null ? e.timestamp() : now));
+                }
+            }
+        }
+        return deliveries;
+    }
+
+    private static void updateShipments(Connection conn, Map<Integer, StatusEvent> latest, Timestamp now)
+            throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_SHIPMENT_SQL)) {
+            for (StatusEvent e : latest.values()) {
+                pstmt.setString(1, e.status());
+                pstmt.setBoolean(2, "delivered".equals(e.status()));
+                pstmt.setTimestamp(3, e.timestamp() != null ? e.timestamp() : now);
+                pstmt.setInt(4, e.shipmentId());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+}
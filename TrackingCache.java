@@ -0,0 +1,218 @@
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Read-through cache of assembled tracking views, keyed by shipment_id.
+// Entries are bounded per segment with LRU eviction and expire after a TTL.
+// Any write through the application that touches a shipment's status or
+// status log must call invalidate() after it commits.
+public class TrackingCache {
+
+    public record Stats(long hits, long misses, long loads, long evictions, long expirations,
+                        long invalidations, int size, int maxSize) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : hits / (double) total;
+        }
+    }
+
+    @FunctionalInterface
+    interface Loader {
+        Optional<ShipmentQueries.TrackingView> load(int shipmentId) throws SQLException;
+    }
+
+    // Loads many views at once; IDs with no shipment are left out of the result
+    @FunctionalInterface
+    interface BatchLoader {
+        Map<Integer, ShipmentQueries.TrackingView> load(List<Integer> shipmentIds) throws SQLException;
+    }
+
+    private static final TrackingCache SHARED = new TrackingCache(
+        Integer.getInteger("courier.cache.tracking.maxSize", 10000),
+        Long.getLong("courier.cache.tracking.ttlSeconds", 60),
+        ShipmentQueries::getTrackingView, ShipmentQueries::getTrackingViews);
+
+    // Segments keep lock hold times short when many request threads hit the cache
+    private static final int SEGMENTS = 16;
+
+    private record Entry(ShipmentQueries.TrackingView view, long loadedAt) {
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Loader loader;
+    private final BatchLoader batchLoader;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    TrackingCache(int maxSize, long ttlSeconds, Loader loader, BatchLoader batchLoader) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.loader = loader;
+        this.batchLoader = batchLoader;
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    public static TrackingCache shared() {
+        return SHARED;
+    }
+
+    // Returns the cached view or loads it from the database; missing shipments are not cached
+    public Optional<ShipmentQueries.TrackingView> get(int shipmentId) throws SQLException {
+        Segment segment = segmentFor(shipmentId);
+        long generation;
+
+        synchronized (segment) {
+            Entry e = segment.map.get(shipmentId);
+            if (e != null) {
+                if (System.nanoTime() - e.loadedAt() < ttlNanos) {
+                    hits.increment();
+                    return Optional.of(e.view());
+                }
+                segment.map.remove(shipmentId);
+                expirations.increment();
+            }
+            generation = segment.generation;
+        }
+
+        misses.increment();
+        loads.increment();
+        Optional<ShipmentQueries.TrackingView> loaded = loader.load(shipmentId);
+
+        if (loaded.isPresent()) {
+            synchronized (segment) {
+                // An invalidation while we were loading means our copy may predate that write
+                if (segment.generation == generation) {
+                    segment.map.put(shipmentId, new Entry(loaded.get(), System.nanoTime()));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // Views for many shipments, in the order given: cached ones are served from the
+    // cache and all the misses are loaded with a single batch load. IDs with no
+    // shipment are left out.
+    public Map<Integer, ShipmentQueries.TrackingView> getAll(Collection<Integer> shipmentIds) throws SQLException {
+        Map<Integer, ShipmentQueries.TrackingView> found = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        // Generation of each segment when its first miss was seen
+        Map<Segment, Long> generations = new HashMap<>();
+        Collection<Integer> ids = new LinkedHashSet<>(shipmentIds);
+
+        for (int id : ids) {
+            Segment segment = segmentFor(id);
+            synchronized (segment) {
+                Entry e = segment.map.get(id);
+                if (e != null) {
+                    if (System.nanoTime() - e.loadedAt() < ttlNanos) {
+                        hits.increment();
+                        found.put(id, e.view());
+                        continue;
+                    }
+                    segment.map.remove(id);
+                    expirations.increment();
+                }
+                generations.putIfAbsent(segment, segment.generation);
+            }
+            missing.add(id);
+        }
+
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            loads.add(missing.size());
+            Map<Integer, ShipmentQueries.TrackingView> loaded = batchLoader.load(missing);
+            long loadedAt = System.nanoTime();
+            for (Map.Entry<Integer, ShipmentQueries.TrackingView> e : loaded.entrySet()) {
+                Segment segment = segmentFor(e.getKey());
+                synchronized (segment) {
+                    // Same rule as get(): skip caching if the segment saw an invalidation meanwhile
+                    if (segment.generation == generations.get(segment)) {
+                        segment.map.put(e.getKey(), new Entry(e.getValue(), loadedAt));
+                    }
+                }
+            }
+            found.putAll(loaded);
+        }
+
+        Map<Integer, ShipmentQueries.TrackingView> result = new LinkedHashMap<>();
+        for (int id : ids) {
+            ShipmentQueries.TrackingView view = found.get(id);
+            if (view != null) {
+                result.put(id, view);
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(int shipmentId) {
+        Segment segment = segmentFor(shipmentId);
+        synchronized (segment) {
+            segment.generation++;
+            segment.map.remove(shipmentId);
+        }
+        invalidations.increment();
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.map.clear();
+            }
+        }
+        invalidations.increment();
+    }
+
+    public Stats getStats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), loads.sum(), evictions.sum(), expirations.sum(),
+            invalidations.sum(), size, maxSize);
+    }
+
+    private Segment segmentFor(int shipmentId) {
+        // Spread sequential IDs across segments
+        int h = shipmentId * 0x9E3779B9;
+        return segments[(h >>> 28) & (SEGMENTS - 1)];
+    }
+
+    private final class Segment {
+        final LinkedHashMap<Integer, Entry> map;
+        long generation;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maintains shipment_daily_volume, the (day, origin) -> shipment count rollup
+// that backs the daily volume report. Counts are added in the same transaction
+// as the shipment inserts, so the rollup never disagrees with committed data.
+public class VolumeRollup {
+
+    private record DayOrigin(LocalDate day, int originLocationId) {
+    }
+
+    private static final String UPSERT_PREFIX =
+        "INSERT INTO shipment_daily_volume (shipment_date, origin_location_id, shipment_count) VALUES ";
+    private static final String UPSERT_SUFFIX =
+        " ON DUPLICATE KEY UPDATE shipment_count = shipment_count + VALUES(shipment_count)";
+
+    private VolumeRollup() {
+    }
+
+    // Add a batch of new shipments to the rollup on the caller's transaction
+    public static void recordShipments(Connection conn, List<? extends BulkLoader.ShipmentRecord> shipments)
+            throws SQLException {
+        Map<DayOrigin, Integer> counts = new HashMap<>();
+        for (BulkLoader.ShipmentRecord s : shipments) {
+            // createdAt is null only when the loader stamped it with the current time
+            LocalDate day = s.createdAt() != null
+                ? s.createdAt().toLocalDateTime().toLocalDate()
+                : LocalDate.now();
+            counts.merge(new DayOrigin(day, s.originLocationId()), 1, Integer::sum);
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        // Sorted keys give every writer the same row lock order
+        List<Map.Entry<DayOrigin, Integer>> rows = counts.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey((a, b) -> {
+                int c = a.day().compareTo(b.day());
+                return c != 0 ? c : Integer.compare(a.originLocationId(), b.originLocationId());
+            }))
+            .toList();
+
+        StringBuilder sql = new StringBuilder(UPSERT_PREFIX);
+        for (int i = 0; i < rows.size(); i++) {
+            sql.append(i == 0 ? "(?, ?, ?)" : ", (?, ?, ?)");
+        }
+        sql.append(UPSERT_SUFFIX);
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            int p = 1;
+            for (Map.Entry<DayOrigin, Integer> row : rows) {
+                pstmt.setDate(p++, Date.valueOf(row.getKey().day()));
+                pstmt.setInt(p++, row.getKey().originLocationId());
+                pstmt.setInt(p++, row.getValue());
+            }
+            pstmt.executeUpdate();
+        }
+    }
+
+    // Recompute the rollup from the shipments table, e.g. after rows were loaded outside the application
+    public static long rebuild() throws SQLException {
+        QueryMetrics.Sample sample = QueryMetrics.start("rebuild.dailyVolume");
+        try (Connection conn = ShipmentQueries.connect(sample)) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM shipment_daily_volume");
+                long rows = stmt.executeUpdate("""
+                    INSERT INTO shipment_daily_volume (shipment_date, origin_location_id, shipment_count)
+                    SELECT created_date, origin_location_id, COUNT(*)
+                    FROM shipments
+                    GROUP BY created_date, origin_location_id
+                """);
+                conn.commit();
+                sample.finish(rows);
+                return rows;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            sample.failed();
+            throw e;
+        }
+    }
+}
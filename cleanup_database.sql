@@ -4,6 +4,16 @@
 USE courier_service;
 
 -- Drop all tables (in reverse order due to foreign key constraints)
+DROP TABLE IF EXISTS packages_archive;
+DROP TABLE IF EXISTS status_logs_archive;
+DROP TABLE IF EXISTS driver_assignments_archive;
+DROP TABLE IF EXISTS shipments_archive;
+DROP TABLE IF EXISTS analytics_watermarks;
+DROP TABLE IF EXISTS route_leg_histogram;
+DROP TABLE IF EXISTS route_leg_stats;
+DROP TABLE IF EXISTS hub_delivery_histogram;
+DROP TABLE IF EXISTS hub_delivery_stats;
+DROP TABLE IF EXISTS shipment_daily_volume;
 DROP TABLE IF EXISTS driver_assignments;
 DROP TABLE IF EXISTS status_logs;
 DROP TABLE IF EXISTS packages;
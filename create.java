@@ -3,9 +3,29 @@ import java.sql.*;
 public class create {
     private static final String DB_URL = "jdbc:mysql://localhost:3306/";
     private static final String DB_NAME = "courier_service";
+    // Server-side cursors let large results be fetched in chunks (see ShipmentQueries)
+    private static final String POOL_URL_PROPERTIES = "?useCursorFetch=true";
+    // Prepared statements are parsed once per physical connection and kept in
+    // Connector/J's LRU of server-side statement handles, keyed by SQL text, so
+    // pooled connections skip the parse on every later call. 0 disables the cache
+    // but not server-side prepares: useCursorFetch makes Connector/J prepare on
+    // the server regardless, so each call then prepares, executes and closes.
+    private static volatile int stmtCacheSize = Integer.getInteger("courier.pool.stmtCacheSize", 250);
+    // Longer SQL (multi-row inserts, long IN lists) is prepared without being cached
+    private static final int STMT_CACHE_SQL_LIMIT = 4096;
     private static final String USERNAME = "root";
     private static String PASSWORD = null; // Will be set from user input
     
+    // Connection pool settings (override with -Dcourier.pool.<name>=<value>)
+    private static final int POOL_MIN_SIZE = Integer.getInteger("courier.pool.minSize", 2);
+    private static final int POOL_MAX_SIZE = Integer.getInteger("courier.pool.maxSize", 10);
+    private static final long POOL_ACQUIRE_TIMEOUT_MS = Long.getLong("courier.pool.acquireTimeoutMs", 5000);
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("courier.pool.idleTimeoutMs", 300000);
+    private static final boolean POOL_VALIDATE_ON_BORROW =
+        Boolean.parseBoolean(System.getProperty("courier.pool.validateOnBorrow", "true"));
+    
+    private static volatile ConnectionPool pool;
+    
     static {
         try {
             // Load MySQL JDBC Driver
@@ -19,6 +39,19 @@ public class create {
     // Method to set the password from user input
     public static void setPassword(String password) {
         PASSWORD = password;
+        // Connections opened with the old credentials must not be reused
+        shutdown();
+    }
+    
+    // Non-interactive tools read the password from COURIER_DB_PASSWORD
+    public static boolean setPasswordFromEnvironment() {
+        String password = System.getenv("COURIER_DB_PASSWORD");
+        if (password == null || password.isEmpty()) {
+            System.err.println("Set COURIER_DB_PASSWORD to the MySQL root password.");
+            return false;
+        }
+        setPassword(password);
+        return true;
     }
     
     // Method to check if password is set
@@ -46,6 +79,11 @@ public class create {
             stmt.executeUpdate("USE " + DB_NAME);
             
             createTables(conn);
+            // Cached tracking views refer to rows that no longer exist
+            TrackingCache.shared().invalidateAll();
+            LocationDirectory.markStale();
+            OverdueMonitor.markStale();
+            DriverAssignmentEngine.markStale();
             
             stmt.close();
             conn.close();
@@ -59,6 +97,15 @@ public class create {
         
         // Drop existing tables first (in reverse order due to foreign key constraints)
         System.out.println("Dropping existing tables if they exist...");
+        for (String table : ShipmentArchiver.ARCHIVED_TABLES) {
+            stmt.executeUpdate("DROP TABLE IF EXISTS " + table + "_archive");
+        }
+        stmt.executeUpdate("DROP TABLE IF EXISTS analytics_watermarks");
+        stmt.executeUpdate("DROP TABLE IF EXISTS route_leg_histogram");
+        stmt.executeUpdate("DROP TABLE IF EXISTS route_leg_stats");
+        stmt.executeUpdate("DROP TABLE IF EXISTS hub_delivery_histogram");
+        stmt.executeUpdate("DROP TABLE IF EXISTS hub_delivery_stats");
+        stmt.executeUpdate("DROP TABLE IF EXISTS shipment_daily_volume");
         stmt.executeUpdate("DROP TABLE IF EXISTS driver_assignments");
         stmt.executeUpdate("DROP TABLE IF EXISTS status_logs");
         stmt.executeUpdate("DROP TABLE IF EXISTS packages");
@@ -98,7 +145,7 @@ public class create {
         // Create Shipments table
         String shipmentsTable = """
             CREATE TABLE shipments (
-                shipment_id INT PRIMARY KEY AUTO_INCREMENT,
+                shipment_id INT AUTO_INCREMENT,
                 sender_name VARCHAR(255) NOT NULL,
                 sender_address TEXT NOT NULL,
                 sender_phone VARCHAR(20),
@@ -109,12 +156,16 @@ public class create {
                 destination_location_id INT NOT NULL,
                 current_status ENUM('pending', 'in_transit', 'delivered', 'returned', 'delayed') DEFAULT 'pending',
                 created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                created_date DATE GENERATED ALWAYS AS (DATE(created_at)) VIRTUAL,
                 estimated_delivery DATETIME,
                 actual_delivery DATETIME,
-                FOREIGN KEY (origin_location_id) REFERENCES locations(location_id),
-                FOREIGN KEY (destination_location_id) REFERENCES locations(location_id)
-            )
-        """;
+                %s
+            ) %s
+        """.formatted(
+            (PartitionMaintenance.ENABLED ? "PRIMARY KEY (shipment_id, created_at)" : "PRIMARY KEY (shipment_id)")
+                + foreignKeys("FOREIGN KEY (origin_location_id) REFERENCES locations(location_id)",
+                              "FOREIGN KEY (destination_location_id) REFERENCES locations(location_id)"),
+            partitionClause("shipments"));
         stmt.executeUpdate(shipmentsTable);
         
         // Create Packages table
@@ -124,26 +175,28 @@ public class create {
                 shipment_id INT NOT NULL,
                 weight DECIMAL(10,2) NOT NULL,
                 content_description TEXT,
-                package_type VARCHAR(100),
-                FOREIGN KEY (shipment_id) REFERENCES shipments(shipment_id) ON DELETE CASCADE
+                package_type VARCHAR(100)%s
             )
-        """;
+        """.formatted(foreignKeys("FOREIGN KEY (shipment_id) REFERENCES shipments(shipment_id) ON DELETE CASCADE"));
         stmt.executeUpdate(packagesTable);
         
         // Create Status_Logs table
         String statusLogsTable = """
             CREATE TABLE status_logs (
-                log_id INT PRIMARY KEY AUTO_INCREMENT,
+                log_id INT AUTO_INCREMENT,
                 shipment_id INT NOT NULL,
                 status_update ENUM('pending', 'in_transit', 'delivered', 'returned', 'delayed') NOT NULL,
                 location_id INT,
                 update_timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 agent_name VARCHAR(255),
                 notes TEXT,
-                FOREIGN KEY (shipment_id) REFERENCES shipments(shipment_id) ON DELETE CASCADE,
-                FOREIGN KEY (location_id) REFERENCES locations(location_id)
-            )
-        """;
+                %s
+            ) %s
+        """.formatted(
+            (PartitionMaintenance.ENABLED ? "PRIMARY KEY (log_id, update_timestamp)" : "PRIMARY KEY (log_id)")
+                + foreignKeys("FOREIGN KEY (shipment_id) REFERENCES shipments(shipment_id) ON DELETE CASCADE",
+                              "FOREIGN KEY (location_id) REFERENCES locations(location_id)"),
+            partitionClause("status_logs"));
         stmt.executeUpdate(statusLogsTable);
         
         // Create Driver_Assignments table
@@ -155,26 +208,136 @@ public class create {
                 assigned_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                 estimated_delivery DATETIME,
                 status ENUM('active', 'completed', 'cancelled') DEFAULT 'active',
-                FOREIGN KEY (driver_id) REFERENCES drivers(driver_id),
-                FOREIGN KEY (shipment_id) REFERENCES shipments(shipment_id)
+                FOREIGN KEY (driver_id) REFERENCES drivers(driver_id)%s
             )
-        """;
+        """.formatted(foreignKeys("FOREIGN KEY (shipment_id) REFERENCES shipments(shipment_id)"));
         stmt.executeUpdate(driverAssignmentsTable);
         
-        // Create indexes for better performance (with error handling for existing indexes)
+        // Daily volume rollup, maintained by VolumeRollup on every shipment insert
+        String dailyVolumeTable = """
+            CREATE TABLE shipment_daily_volume (
+                shipment_date DATE NOT NULL,
+                origin_location_id INT NOT NULL,
+                shipment_count INT NOT NULL DEFAULT 0,
+                PRIMARY KEY (shipment_date, origin_location_id),
+                FOREIGN KEY (origin_location_id) REFERENCES locations(location_id)
+            )
+        """;
+        stmt.executeUpdate(dailyVolumeTable);
+        
+        // Per-destination delivery-time aggregates, maintained by DeliveryStats when actual_delivery is set
+        String hubDeliveryStatsTable = """
+            CREATE TABLE hub_delivery_stats (
+                destination_location_id INT PRIMARY KEY,
+                delivered_count INT NOT NULL DEFAULT 0,
+                sum_total_hours BIGINT NOT NULL DEFAULT 0,
+                sum_variance_hours BIGINT NOT NULL DEFAULT 0,
+                variance_count INT NOT NULL DEFAULT 0,
+                FOREIGN KEY (destination_location_id) REFERENCES locations(location_id)
+            )
+        """;
+        stmt.executeUpdate(hubDeliveryStatsTable);
+        
+        String hubDeliveryHistogramTable = """
+            CREATE TABLE hub_delivery_histogram (
+                destination_location_id INT NOT NULL,
+                bucket SMALLINT NOT NULL,
+                shipment_count INT NOT NULL DEFAULT 0,
+                PRIMARY KEY (destination_location_id, bucket),
+                FOREIGN KEY (destination_location_id) REFERENCES locations(location_id)
+            )
+        """;
+        stmt.executeUpdate(hubDeliveryHistogramTable);
+        
+        // Per-leg transit aggregates and the run watermark, maintained by RouteLegAnalytics
+        String routeLegStatsTable = """
+            CREATE TABLE route_leg_stats (
+                from_location_id INT NOT NULL,
+                to_location_id INT NOT NULL,
+                leg_count BIGINT NOT NULL DEFAULT 0,
+                sum_seconds BIGINT NOT NULL DEFAULT 0,
+                min_seconds BIGINT NOT NULL,
+                max_seconds BIGINT NOT NULL,
+                PRIMARY KEY (from_location_id, to_location_id),
+                FOREIGN KEY (from_location_id) REFERENCES locations(location_id),
+                FOREIGN KEY (to_location_id) REFERENCES locations(location_id)
+            )
+        """;
+        stmt.executeUpdate(routeLegStatsTable);
+        
+        String routeLegHistogramTable = """
+            CREATE TABLE route_leg_histogram (
+                from_location_id INT NOT NULL,
+                to_location_id INT NOT NULL,
+                bucket SMALLINT NOT NULL,
+                leg_count BIGINT NOT NULL DEFAULT 0,
+                PRIMARY KEY (from_location_id, to_location_id, bucket),
+                FOREIGN KEY (from_location_id, to_location_id)
+                    REFERENCES route_leg_stats(from_location_id, to_location_id)
+            )
+        """;
+        stmt.executeUpdate(routeLegHistogramTable);
+        
+        String watermarksTable = """
+            CREATE TABLE analytics_watermarks (
+                job_name VARCHAR(64) PRIMARY KEY,
+                watermark TIMESTAMP NULL,
+                updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+            )
+        """;
+        stmt.executeUpdate(watermarksTable);
+        
+        // Create indexes for better performance (with error handling for existing indexes).
+        // Composite indexes follow the query access paths; QueryPlanCheck verifies them.
         createIndexSafely(stmt, "idx_shipment_status", "shipments", "current_status");
-        createIndexSafely(stmt, "idx_shipment_created", "shipments", "created_at");
-        createIndexSafely(stmt, "idx_status_logs_shipment", "status_logs", "shipment_id");
-        createIndexSafely(stmt, "idx_driver_assignments_driver", "driver_assignments", "driver_id");
-        createIndexSafely(stmt, "idx_driver_assignments_status", "driver_assignments", "status");
+        // Daily volume rebuild: GROUP BY DATE(created_at), origin_location_id
+        createIndexSafely(stmt, "idx_shipment_created_date", "shipments", "created_date", "origin_location_id");
+        // Delayed shipments paging in (estimated_delivery, shipment_id) order
+        createIndexSafely(stmt, "idx_shipment_estimated", "shipments", "estimated_delivery");
+        // Overdue monitor: undelivered shipments with an estimate
+        createIndexSafely(stmt, "idx_shipment_open", "shipments", "actual_delivery", "estimated_delivery");
+        // Tracking view: a shipment's log entries newest first. log_id and location_id make it
+        // covering, in order, for the route leg scan over all logs
+        createIndexSafely(stmt, "idx_status_logs_shipment_time", "status_logs",
+            "shipment_id", "update_timestamp", "log_id", "location_id");
+        // Incremental route leg runs: logs stamped after the watermark
+        createIndexSafely(stmt, "idx_status_logs_time", "status_logs", "update_timestamp", "shipment_id", "location_id");
+        // Pending shipments for a driver: active assignments in estimated delivery order
+        createIndexSafely(stmt, "idx_driver_assignments_pending", "driver_assignments",
+            "driver_id", "status", "estimated_delivery");
+        if (PartitionMaintenance.ENABLED) {
+            // Without foreign keys MySQL creates no index on these; archiving and cascades look rows up by shipment
+            createIndexSafely(stmt, "idx_packages_shipment", "packages", "shipment_id");
+            createIndexSafely(stmt, "idx_driver_assignments_shipment", "driver_assignments", "shipment_id");
+        }
+        
+        // Archive tables for ShipmentArchiver: same columns and indexes, no foreign keys, never partitioned
+        for (String table : ShipmentArchiver.ARCHIVED_TABLES) {
+            stmt.executeUpdate("CREATE TABLE " + table + "_archive LIKE " + table);
+            if (PartitionMaintenance.ENABLED && (table.equals("shipments") || table.equals("status_logs"))) {
+                stmt.executeUpdate("ALTER TABLE " + table + "_archive REMOVE PARTITIONING");
+            }
+        }
         
         System.out.println("All tables created successfully...");
         stmt.close();
     }
     
-    private static void createIndexSafely(Statement stmt, String indexName, String tableName, String columnName) {
+    // Partitioned tables can neither have nor be the target of foreign keys (see PartitionMaintenance)
+    private static String foreignKeys(String... clauses) {
+        if (PartitionMaintenance.ENABLED) {
+            return "";
+        }
+        return ",\n" + String.join(",\n", clauses);
+    }
+    
+    private static String partitionClause(String table) {
+        return PartitionMaintenance.ENABLED ? PartitionMaintenance.partitionClause(table) : "";
+    }
+    
+    private static void createIndexSafely(Statement stmt, String indexName, String tableName, String... columnNames) {
         try {
-            String createIndexSQL = "CREATE INDEX " + indexName + " ON " + tableName + "(" + columnName + ")";
+            String createIndexSQL = "CREATE INDEX " + indexName + " ON " + tableName + "(" + String.join(", ", columnNames) + ")";
             stmt.executeUpdate(createIndexSQL);
             System.out.println("Index " + indexName + " created successfully.");
         } catch (SQLException e) {
@@ -194,10 +357,82 @@ public class create {
         }
         
         try {
-            return DriverManager.getConnection(DB_URL + DB_NAME, USERNAME, PASSWORD);
+            Connection conn = getPool().borrow();
+            return JdbcTracer.ENABLED ? JdbcTracer.wrap(conn) : conn;
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
     }
+    
+    // Unpooled connection with extra URL properties, for tools whose session settings
+    // must not leak into the pool (e.g. allowLoadLocalInfile for DataTransfer)
+    static Connection openConnection(String urlProperties) throws SQLException {
+        if (!isPasswordSet()) {
+            throw new SQLException("Database password not set");
+        }
+        return DriverManager.getConnection(DB_URL + DB_NAME + POOL_URL_PROPERTIES + "&" + urlProperties,
+            USERNAME, PASSWORD);
+    }
+
+    // Lazily start the pool on first use so the password prompt can run first
+    private static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (create.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ConnectionPool(DB_URL + DB_NAME + poolUrlProperties(), USERNAME, PASSWORD,
+                        POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_ACQUIRE_TIMEOUT_MS,
+                        POOL_IDLE_TIMEOUT_MS, POOL_VALIDATE_ON_BORROW);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+    
+    private static String poolUrlProperties() {
+        if (stmtCacheSize <= 0) {
+            return POOL_URL_PROPERTIES;
+        }
+        return POOL_URL_PROPERTIES + "&useServerPrepStmts=true&cachePrepStmts=true"
+            + "&prepStmtCacheSize=" + stmtCacheSize + "&prepStmtCacheSqlLimit=" + STMT_CACHE_SQL_LIMIT;
+    }
+    
+    // Takes effect for connections opened afterwards, so the pool is restarted
+    public static void setStatementCacheSize(int size) {
+        stmtCacheSize = size;
+        closePool();
+    }
+    
+    public static int getStatementCacheSize() {
+        return stmtCacheSize;
+    }
+    
+    // Returns null until the first pooled connection has been requested
+    public static ConnectionPool.Stats getPoolStats() {
+        ConnectionPool p = pool;
+        return p == null ? null : p.getStats();
+    }
+    
+    // Close all pooled connections (called on exit and when credentials change).
+    // Background refreshers are stopped first and outside the create.class lock,
+    // because they take that lock themselves when borrowing a connection.
+    public static void shutdown() {
+        ShipmentArchiver.shutdown();
+        // Queued status events are written before the pool goes away
+        StatusIngestor.shutdownShared();
+        LocationDirectory.shutdown();
+        OverdueMonitor.shutdown();
+        closePool();
+    }
+    
+    private static synchronized void closePool() {
+        ConnectionPool p = pool;
+        pool = null;
+        if (p != null) {
+            p.close();
+        }
+    }
 }
@@ -1,54 +1,44 @@
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 
 public class functions {
     
     // 1. Retrieve current status and location log for a shipment
     public static void getShipmentStatusAndLocation(int shipmentId) {
-        String query = """
-            SELECT s.shipment_id, s.sender_name, s.recipient_name, s.current_status,
-                   s.created_at, s.estimated_delivery, s.actual_delivery,
-                   sl.status_update, sl.update_timestamp, sl.agent_name, sl.notes,
-                   l.location_name, l.location_type
-            FROM shipments s
-            LEFT JOIN status_logs sl ON s.shipment_id = sl.shipment_id
-            LEFT JOIN locations l ON sl.location_id = l.location_id
-            WHERE s.shipment_id = ?
-            ORDER BY sl.update_timestamp DESC
-        """;
-        
-        try (Connection conn = create.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            
-            pstmt.setInt(1, shipmentId);
-            ResultSet rs = pstmt.executeQuery();
+        try {
+            Optional<ShipmentQueries.TrackingView> view = TrackingCache.shared().get(shipmentId);
             
-            boolean found = false;
             System.out.println("\n=== Shipment Status and Location Log ===");
             
-            while (rs.next()) {
-                if (!found) {
-                    System.out.println("Shipment ID: " + rs.getInt("shipment_id"));
-                    System.out.println("Sender: " + rs.getString("sender_name"));
-                    System.out.println("Recipient: " + rs.getString("recipient_name"));
-                    System.out.println("Current Status: " + rs.getString("current_status"));
-                    System.out.println("Created: " + rs.getTimestamp("created_at"));
-                    System.out.println("Estimated Delivery: " + rs.getTimestamp("estimated_delivery"));
-                    System.out.println("Actual Delivery: " + rs.getTimestamp("actual_delivery"));
-                    System.out.println("\nLocation History:");
-                    found = true;
-                }
-                
-                if (rs.getString("status_update") != null) {
-                    System.out.println("- " + rs.getTimestamp("update_timestamp") + 
-                                     " | Status: " + rs.getString("status_update") +
-                                     " | Location: " + rs.getString("location_name") +
-                                     " | Agent: " + rs.getString("agent_name") +
-                                     " | Notes: " + rs.getString("notes"));
-                }
+            if (view.isEmpty()) {
+                System.out.println("No shipment found with ID: " + shipmentId);
+                return;
             }
+            printTrackingView(view.get());
             
-            if (!found) {
-                System.out.println("No shipment found with ID: " + shipmentId);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Several shipments at once: cache misses are fetched together in one batch
+    public static void getShipmentStatusAndLocation(List<Integer> shipmentIds) {
+        try {
+            java.util.Map<Integer, ShipmentQueries.TrackingView> views = TrackingCache.shared().getAll(shipmentIds);
+            
+            System.out.println("\n=== Shipment Status and Location Log (" + shipmentIds.size() + " shipments) ===");
+            
+            for (int shipmentId : new java.util.LinkedHashSet<>(shipmentIds)) {
+                ShipmentQueries.TrackingView v = views.get(shipmentId);
+                System.out.println();
+                if (v == null) {
+                    System.out.println("No shipment found with ID: " + shipmentId);
+                } else {
+                    printTrackingView(v);
+                }
             }
             
         } catch (SQLException e) {
@@ -56,41 +46,43 @@ public class functions {
         }
     }
     
+    private static void printTrackingView(ShipmentQueries.TrackingView v) {
+        System.out.println("Shipment ID: " + v.shipmentId());
+        System.out.println("Sender: " + v.senderName());
+        System.out.println("Recipient: " + v.recipientName());
+        System.out.println("Current Status: " + v.currentStatus());
+        System.out.println("Created: " + v.createdAt());
+        System.out.println("Estimated Delivery: " + v.estimatedDelivery());
+        System.out.println("Actual Delivery: " + v.actualDelivery());
+        System.out.println("\nLocation History:");
+        
+        for (ShipmentQueries.StatusLogEntry log : v.history()) {
+            System.out.println("- " + log.updateTimestamp() + 
+                             " | Status: " + log.statusUpdate() +
+                             " | Location: " + log.locationName() +
+                             " | Agent: " + log.agentName() +
+                             " | Notes: " + log.notes());
+        }
+    }
+    
     // 2. List all pending shipments assigned to a driver
     public static void getPendingShipmentsForDriver(int driverId) {
-        String query = """
-            SELECT s.shipment_id, s.sender_name, s.recipient_name, s.current_status,
-                   s.created_at, da.estimated_delivery, l1.location_name as origin,
-                   l2.location_name as destination
-            FROM shipments s
-            JOIN driver_assignments da ON s.shipment_id = da.shipment_id
-            JOIN locations l1 ON s.origin_location_id = l1.location_id
-            JOIN locations l2 ON s.destination_location_id = l2.location_id
-            WHERE da.driver_id = ? AND s.current_status = 'pending' AND da.status = 'active'
-            ORDER BY da.estimated_delivery
-        """;
-        
-        try (Connection conn = create.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            
-            pstmt.setInt(1, driverId);
-            ResultSet rs = pstmt.executeQuery();
+        try {
+            List<ShipmentQueries.PendingShipment> shipments = ShipmentQueries.getPendingShipmentsForDriver(driverId);
             
             System.out.println("\n=== Pending Shipments for Driver ID: " + driverId + " ===");
-            boolean found = false;
-            
-            while (rs.next()) {
-                found = true;
-                System.out.println("Shipment ID: " + rs.getInt("shipment_id"));
-                System.out.println("From: " + rs.getString("sender_name") + " (" + rs.getString("origin") + ")");
-                System.out.println("To: " + rs.getString("recipient_name") + " (" + rs.getString("destination") + ")");
-                System.out.println("Status: " + rs.getString("current_status"));
-                System.out.println("Created: " + rs.getTimestamp("created_at"));
-                System.out.println("Estimated Delivery: " + rs.getTimestamp("estimated_delivery"));
+            
+            for (ShipmentQueries.PendingShipment s : shipments) {
+                System.out.println("Shipment ID: " + s.shipmentId());
+                System.out.println("From: " + s.senderName() + " (" + s.origin() + ")");
+                System.out.println("To: " + s.recipientName() + " (" + s.destination() + ")");
+                System.out.println("Status: " + s.currentStatus());
+                System.out.println("Created: " + s.createdAt());
+                System.out.println("Estimated Delivery: " + s.estimatedDelivery());
                 System.out.println("---");
             }
             
-            if (!found) {
+            if (shipments.isEmpty()) {
                 System.out.println("No pending shipments found for this driver.");
             }
             
@@ -101,135 +93,209 @@ public class functions {
     
     // 3. Find average delivery time per route hub
     public static void getAverageDeliveryTimePerHub() {
-        String query = """
-            SELECT l.location_name, l.location_type,
-                   COUNT(s.shipment_id) as total_deliveries,
-                   AVG(TIMESTAMPDIFF(HOUR, s.created_at, s.actual_delivery)) as avg_total_hours,
-                   AVG(TIMESTAMPDIFF(HOUR, s.estimated_delivery, s.actual_delivery)) as avg_variance_hours
-            FROM shipments s
-            JOIN locations l ON s.destination_location_id = l.location_id
-            WHERE s.actual_delivery IS NOT NULL
-            GROUP BY l.location_id, l.location_name, l.location_type
-            ORDER BY avg_total_hours
-        """;
+        try {
+            printHubDeliveryStats(ShipmentQueries.getAverageDeliveryTimePerHub(),
+                ResultRenderer.format(), ResultRenderer.file());
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    static void printHubDeliveryStats(List<ShipmentQueries.HubDeliveryStats> stats) {
+        printHubDeliveryStats(stats, ResultRenderer.Format.TABLE, null);
+    }
+    
+    static void printHubDeliveryStats(List<ShipmentQueries.HubDeliveryStats> stats,
+                                      ResultRenderer.Format format, java.nio.file.Path file) {
+        System.out.println("\n=== Average Delivery Time Per Hub ===");
+        try (ResultRenderer out = ResultRenderer.open(format, file, HUB_DELIVERY_COLUMNS)) {
+            for (ShipmentQueries.HubDeliveryStats h : stats) {
+                out.cell(h.locationName())
+                    .cell(h.locationType())
+                    .cell(h.totalDeliveries())
+                    .cell(h.avgTotalHours(), 1);
+                // The table spells out early/late; CSV and JSON get the signed hours
+                double varianceHours = h.avgVarianceHours();
+                if (format == ResultRenderer.Format.TABLE) {
+                    out.cell(varianceHours < 0
+                        ? String.format("%.1f hrs early", Math.abs(varianceHours))
+                        : String.format("%.1f hrs late", varianceHours));
+                } else {
+                    out.cell(varianceHours, 1);
+                }
+                out.cell(h.p50Hours(), 1)
+                    .cell(h.p90Hours(), 1)
+                    .cell(h.p99Hours(), 1)
+                    .endRow();
+            }
+            reportWritten(out, file);
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+        }
         
-        try (Connection conn = create.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            
-            System.out.println("\n=== Average Delivery Time Per Hub ===");
-            System.out.printf("%-30s %-15s %-12s %-15s %-20s%n", "Location", "Type", "Deliveries", "Total Hours", "vs Estimate");
-            System.out.println("=".repeat(95));
-            
-            boolean found = false;
-            while (rs.next()) {
-                found = true;
-                double totalHours = rs.getDouble("avg_total_hours");
-                double varianceHours = rs.getDouble("avg_variance_hours");
-                String varianceStr = varianceHours < 0 ? 
-                    String.format("%.1f hrs early", Math.abs(varianceHours)) : 
-                    String.format("%.1f hrs late", varianceHours);
-                    
-                System.out.printf("%-30s %-15s %-12d %-15.1f %-20s%n",
-                    rs.getString("location_name"),
-                    rs.getString("location_type"),
-                    rs.getInt("total_deliveries"),
-                    totalHours,
-                    varianceStr);
+        if (stats.isEmpty()) {
+            System.out.println("No delivery data available.");
+        }
+    }
+    
+    // Delivery times for a location and everything below it in the location tree (0 for all)
+    public static void getRegionalDeliveryTimes(int locationId) {
+        try {
+            List<LocationRollups.RegionDeliveryStats> stats = LocationRollups.deliveryStats(locationId);
+            ResultRenderer.Format format = ResultRenderer.format();
+            java.nio.file.Path file = ResultRenderer.file();
+            
+            System.out.println("\n=== Regional Delivery Times (Location and All Sub-Locations) ===");
+            try (ResultRenderer out = ResultRenderer.open(format, file, REGION_DELIVERY_COLUMNS)) {
+                for (LocationRollups.RegionDeliveryStats r : stats) {
+                    // Indent by level so the table reads as a tree; CSV and JSON get the level column
+                    String name = format == ResultRenderer.Format.TABLE
+                        ? "  ".repeat(r.depth()) + r.locationName() : r.locationName();
+                    out.cell(r.locationId())
+                        .cell(name)
+                        .cell(r.locationType())
+                        .cell(r.depth())
+                        .cell(r.totalDeliveries())
+                        .cell(r.avgTotalHours(), 1)
+                        .cell(r.avgVarianceHours(), 1)
+                        .cell(r.p50Hours(), 1)
+                        .cell(r.p90Hours(), 1)
+                        .cell(r.p99Hours(), 1)
+                        .endRow();
+                }
+                reportWritten(out, file);
             }
             
-            if (!found) {
-                System.out.println("No delivery data available.");
+            if (stats.isEmpty()) {
+                System.out.println("No delivery data available for this location.");
             }
-            
+        } catch (IllegalArgumentException e) {
+            System.out.println("✗ " + e.getMessage());
+        } catch (SQLException | java.io.IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Daily volume leaving a location or any location below it (0 for all)
+    public static void getRegionalDailyVolume(int locationId) {
+        try {
+            printDailyVolume(LocationRollups.dailyVolume(locationId),
+                ResultRenderer.format(), ResultRenderer.file());
+        } catch (IllegalArgumentException e) {
+            System.out.println("✗ " + e.getMessage());
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
     
-    // 4. Show shipments delayed beyond estimated delivery
-    public static void getDelayedShipments() {
-        String query = """
-            SELECT s.shipment_id, s.sender_name, s.recipient_name, s.current_status,
-                   s.estimated_delivery, s.actual_delivery,
-                   TIMESTAMPDIFF(HOUR, s.estimated_delivery, COALESCE(s.actual_delivery, NOW())) as delay_hours,
-                   l1.location_name as origin, l2.location_name as destination
-            FROM shipments s
-            JOIN locations l1 ON s.origin_location_id = l1.location_id
-            JOIN locations l2 ON s.destination_location_id = l2.location_id
-            WHERE s.estimated_delivery < COALESCE(s.actual_delivery, NOW())
-            ORDER BY delay_hours DESC
-        """;
-        
-        try (Connection conn = create.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            
-            System.out.println("\n=== Delayed Shipments ===");
-            System.out.printf("%-10s %-20s %-20s %-15s %-15s %-10s%n", 
-                "ID", "Sender", "Recipient", "Status", "Delay(hrs)", "Origin");
-            System.out.println("=".repeat(100));
-            
-            boolean found = false;
-            while (rs.next()) {
-                found = true;
-                System.out.printf("%-10d %-20s %-20s %-15s %-15.1f %-10s%n",
-                    rs.getInt("shipment_id"),
-                    rs.getString("sender_name"),
-                    rs.getString("recipient_name"),
-                    rs.getString("current_status"),
-                    rs.getDouble("delay_hours"),
-                    rs.getString("origin"));
+    // Transit times between consecutive locations, after adding legs completed since the last run
+    public static void getRouteLegTransitTimes(int limit) {
+        try {
+            RouteLegAnalytics.Result update = RouteLegAnalytics.update();
+            List<RouteLegAnalytics.LegStats> legs = RouteLegAnalytics.topLegs(limit);
+            java.nio.file.Path file = ResultRenderer.file();
+            
+            System.out.println("\n=== Route Leg Transit Times (Busiest Legs) ===");
+            System.out.println("Added " + update.legs() + " legs from " + update.logs()
+                + " new status logs; data up to " + update.watermark());
+            try (ResultRenderer out = ResultRenderer.open(ResultRenderer.format(), file, ROUTE_LEG_COLUMNS)) {
+                for (RouteLegAnalytics.LegStats l : legs) {
+                    out.cell(l.fromLocation())
+                        .cell(l.toLocation())
+                        .cell(l.legCount())
+                        .cell(l.avgHours(), 1)
+                        .cell(l.p50Hours(), 1)
+                        .cell(l.p90Hours(), 1)
+                        .cell(l.p99Hours(), 1)
+                        .cell(l.maxHours(), 1)
+                        .endRow();
+                }
+                reportWritten(out, file);
             }
             
-            if (!found) {
-                System.out.println("No delayed shipments found.");
+            if (legs.isEmpty()) {
+                System.out.println("No route legs recorded yet.");
             }
-            
+        } catch (SQLException | java.io.IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // 4. Show shipments delayed beyond estimated delivery
+    // Served from the in-process OverdueMonitor; late deliveries are listed by the paged browser
+    public static void getDelayedShipments() {
+        try {
+            printDelayedShipments(OverdueMonitor.delayedShipments(), ResultRenderer.format(), ResultRenderer.file());
         } catch (SQLException e) {
             e.printStackTrace();
+            return;
+        }
+        if (ResultRenderer.format() == ResultRenderer.Format.TABLE) {
+            System.out.println("(Shipments delivered late are included in Browse Delayed Shipments.)");
+        }
+    }
+    
+    static void printDelayedShipments(List<ShipmentQueries.DelayedShipment> delayed) {
+        printDelayedShipments(delayed, ResultRenderer.Format.TABLE, null);
+    }
+    
+    static void printDelayedShipments(List<ShipmentQueries.DelayedShipment> delayed,
+                                      ResultRenderer.Format format, java.nio.file.Path file) {
+        System.out.println("\n=== Delayed Shipments ===");
+        try (ResultRenderer out = ResultRenderer.open(format, file, DELAYED_COLUMNS)) {
+            for (ShipmentQueries.DelayedShipment d : delayed) {
+                out.cell(d.shipmentId())
+                    .cell(d.senderName())
+                    .cell(d.recipientName())
+                    .cell(d.currentStatus())
+                    .cell(d.delayHours(), 1)
+                    .cell(d.origin())
+                    .endRow();
+            }
+            reportWritten(out, file);
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+        }
+        
+        if (delayed.isEmpty()) {
+            System.out.println("No delayed shipments found.");
         }
     }
     
     // 5. Generate daily shipment volume by origin
     public static void getDailyShipmentVolumeByOrigin() {
-        String query = """
-            SELECT DATE(s.created_at) as shipment_date,
-                   l.location_name as origin_location,
-                   COUNT(s.shipment_id) as shipment_count
-            FROM shipments s
-            JOIN locations l ON s.origin_location_id = l.location_id
-            WHERE s.created_at >= DATE_SUB(CURDATE(), INTERVAL 30 DAY)
-            GROUP BY DATE(s.created_at), l.location_id, l.location_name
-            ORDER BY shipment_date DESC, shipment_count DESC
-        """;
-        
-        try (Connection conn = create.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            
-            System.out.println("\n=== Daily Shipment Volume by Origin (Last 30 Days) ===");
-            System.out.printf("%-15s %-30s %-15s%n", "Date", "Origin Location", "Shipments");
-            System.out.println("=".repeat(60));
-            
-            boolean found = false;
-            while (rs.next()) {
-                found = true;
-                System.out.printf("%-15s %-30s %-15d%n",
-                    rs.getDate("shipment_date"),
-                    rs.getString("origin_location"),
-                    rs.getInt("shipment_count"));
-            }
-            
-            if (!found) {
-                System.out.println("No shipment data found for the last 30 days.");
-            }
-            
+        try {
+            printDailyVolume(ShipmentQueries.getDailyShipmentVolumeByOrigin(),
+                ResultRenderer.format(), ResultRenderer.file());
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
     
+    static void printDailyVolume(List<ShipmentQueries.DailyVolume> volumes) {
+        printDailyVolume(volumes, ResultRenderer.Format.TABLE, null);
+    }
+    
+    static void printDailyVolume(List<ShipmentQueries.DailyVolume> volumes,
+                                 ResultRenderer.Format format, java.nio.file.Path file) {
+        System.out.println("\n=== Daily Shipment Volume by Origin (Last 30 Days) ===");
+        try (ResultRenderer out = ResultRenderer.open(format, file, DAILY_VOLUME_COLUMNS)) {
+            for (ShipmentQueries.DailyVolume v : volumes) {
+                out.cell(v.shipmentDate())
+                    .cell(v.originLocation())
+                    .cell(v.shipmentCount())
+                    .endRow();
+            }
+            reportWritten(out, file);
+        } catch (java.io.IOException e) {
+            e.printStackTrace();
+        }
+        
+        if (volumes.isEmpty()) {
+            System.out.println("No shipment data found for the last 30 days.");
+        }
+    }
+    
     // Additional utility functions for data insertion
     public static void insertSampleData() {
         try (Connection conn = create.getConnection()) {
@@ -251,8 +317,11 @@ public class functions {
                 locStmt.setString(1, locations[i]);
                 locStmt.setString(2, types[i]);
                 locStmt.setString(3, addresses[i]);
-                locStmt.executeUpdate();
+                locStmt.addBatch();
             }
+            locStmt.executeBatch();
+            locStmt.close();
+            LocationDirectory.markStale();
             System.out.println("✓ Inserted 8 locations");
             
             // Insert sample drivers with Indian names
@@ -273,21 +342,25 @@ public class functions {
                 driverStmt.setString(2, licenses[i]);
                 driverStmt.setString(3, phones[i]);
                 driverStmt.setString(4, emails[i]);
-                driverStmt.executeUpdate();
+                driverStmt.addBatch();
             }
+            driverStmt.executeBatch();
+            driverStmt.close();
             System.out.println("✓ Inserted 8 drivers");
             
-            // Insert sample shipments
-            insertSampleShipments(conn);
+            BulkLoader loader = new BulkLoader(conn, 100, true);
+            
+            // Insert sample shipments; generated IDs link the child rows below
+            int[] shipmentIds = insertSampleShipments(loader);
             
             // Insert sample packages
-            insertSamplePackages(conn);
+            insertSamplePackages(loader, shipmentIds);
             
             // Insert sample status logs
-            insertSampleStatusLogs(conn);
+            insertSampleStatusLogs(loader, shipmentIds);
             
             // Insert sample driver assignments
-            insertSampleDriverAssignments(conn);
+            insertSampleDriverAssignments(loader, shipmentIds);
             
             System.out.println("✓ Sample Indian data inserted successfully!");
             
@@ -296,33 +369,29 @@ public class functions {
         }
     }
     
-    private static void insertSampleShipments(Connection conn) throws SQLException {
-        // Execute direct SQL for complex date functions
-        Statement directStmt = conn.createStatement();
+    private static int[] insertSampleShipments(BulkLoader loader) throws SQLException {
+        long now = System.currentTimeMillis();
         
-        String[] shipmentSQL = {
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Harshit Tiwari', 'A-203, Oberoi Heights, Andheri West, Mumbai 400058', '+91-9123456789', 'Viraj Bhanage', 'B-45, Sector 21, Dwarka, New Delhi 110075', '+91-9876543210', 1, 2, NOW(), DATE_ADD(NOW(), INTERVAL 2 DAY), 'in_transit', NULL)",
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Rohan Jangam', '15-4-78, Begumpet, Hyderabad 500016', '+91-9234567890', 'Pratham Jain', '204, Brigade Gateway, Rajajinagar, Bangalore 560010', '+91-9765432109', 5, 3, NOW(), DATE_ADD(NOW(), INTERVAL 1 DAY), 'pending', NULL)",
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Ankit Kumar', 'C-102, Sushant Lok Phase 1, Gurgaon 122009', '+91-9345678901', 'Tejas Varshney', 'Plot 67, Baner Road, Pune 411045', '+91-9654321098', 2, 4, DATE_SUB(NOW(), INTERVAL 2 DAY), DATE_SUB(NOW(), INTERVAL 1 DAY), 'delivered', DATE_SUB(NOW(), INTERVAL 23 HOUR))",
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Saswat Das', '23, Anna Nagar East, Chennai 600102', '+91-9456789012', 'Piyush Kumar', 'Flat 501, New Town Action Area 1, Kolkata 700156', '+91-9543210987', 6, 7, NOW(), DATE_ADD(NOW(), INTERVAL 2 DAY), 'in_transit', NULL)",
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Priya Sharma', '78, CG Road, Navrangpura, Ahmedabad 380009', '+91-9567890123', 'Harshit Tiwari', 'Wakad Road, Hinjewadi Phase 2, Pune 411057', '+91-9432109876', 8, 4, DATE_SUB(NOW(), INTERVAL 3 DAY), DATE_SUB(NOW(), INTERVAL 2 DAY), 'delivered', DATE_SUB(NOW(), INTERVAL 25 HOUR))",
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Viraj Bhanage', 'T-4, Koramangala 4th Block, Bangalore 560034', '+91-9678901234', 'Rohan Jangam', 'Satellite Road, Prahlad Nagar, Ahmedabad 380015', '+91-9321098765', 3, 8, DATE_SUB(NOW(), INTERVAL 4 DAY), DATE_SUB(NOW(), INTERVAL 3 DAY), 'delayed', NULL)",
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Pratham Jain', '456, Marine Drive, Mumbai 400020', '+91-9789012345', 'Ankit Kumar', 'Jubilee Hills, Road No 36, Hyderabad 500033', '+91-9210987654', 1, 5, NOW(), DATE_ADD(NOW(), INTERVAL 2 DAY), 'pending', NULL)",
-            "INSERT INTO shipments (sender_name, sender_address, sender_phone, recipient_name, recipient_address, recipient_phone, origin_location_id, destination_location_id, created_at, estimated_delivery, current_status, actual_delivery) VALUES ('Tejas Varshney', '88, Park Street, Kolkata 700016', '+91-9890123456', 'Saswat Das', 'Anna Salai, Thousand Lights, Chennai 600002', '+91-9109876543', 7, 6, DATE_SUB(NOW(), INTERVAL 2 DAY), DATE_SUB(NOW(), INTERVAL 1 DAY), 'delivered', DATE_SUB(NOW(), INTERVAL 22 HOUR))"
+        BulkLoader.ShipmentRecord[] shipments = {
+            new BulkLoader.ShipmentRecord("Harshit Tiwari", "A-203, Oberoi Heights, Andheri West, Mumbai 400058", "+91-9123456789", "Viraj Bhanage", "B-45, Sector 21, Dwarka, New Delhi 110075", "+91-9876543210", 1, 2, "in_transit", hoursFrom(now, 0), hoursFrom(now, 48), null),
+            new BulkLoader.ShipmentRecord("Rohan Jangam", "15-4-78, Begumpet, Hyderabad 500016", "+91-9234567890", "Pratham Jain", "204, Brigade Gateway, Rajajinagar, Bangalore 560010", "+91-9765432109", 5, 3, "pending", hoursFrom(now, 0), hoursFrom(now, 24), null),
+            new BulkLoader.ShipmentRecord("Ankit Kumar", "C-102, Sushant Lok Phase 1, Gurgaon 122009", "+91-9345678901", "Tejas Varshney", "Plot 67, Baner Road, Pune 411045", "+91-9654321098", 2, 4, "delivered", hoursFrom(now, -48), hoursFrom(now, -24), hoursFrom(now, -23)),
+            new BulkLoader.ShipmentRecord("Saswat Das", "23, Anna Nagar East, Chennai 600102", "+91-9456789012", "Piyush Kumar", "Flat 501, New Town Action Area 1, Kolkata 700156", "+91-9543210987", 6, 7, "in_transit", hoursFrom(now, 0), hoursFrom(now, 48), null),
+            new BulkLoader.ShipmentRecord("Priya Sharma", "78, CG Road, Navrangpura, Ahmedabad 380009", "+91-9567890123", "Harshit Tiwari", "Wakad Road, Hinjewadi Phase 2, Pune 411057", "+91-9432109876", 8, 4, "delivered", hoursFrom(now, -72), hoursFrom(now, -48), hoursFrom(now, -25)),
+            new BulkLoader.ShipmentRecord("Viraj Bhanage", "T-4, Koramangala 4th Block, Bangalore 560034", "+91-9678901234", "Rohan Jangam", "Satellite Road, Prahlad Nagar, Ahmedabad 380015", "+91-9321098765", 3, 8, "delayed", hoursFrom(now, -96), hoursFrom(now, -72), null),
+            new BulkLoader.ShipmentRecord("Pratham Jain", "456, Marine Drive, Mumbai 400020", "+91-9789012345", "Ankit Kumar", "Jubilee Hills, Road No 36, Hyderabad 500033", "+91-9210987654", 1, 5, "pending", hoursFrom(now, 0), hoursFrom(now, 48), null),
+            new BulkLoader.ShipmentRecord("Tejas Varshney", "88, Park Street, Kolkata 700016", "+91-9890123456", "Saswat Das", "Anna Salai, Thousand Lights, Chennai 600002", "+91-9109876543", 7, 6, "delivered", hoursFrom(now, -48), hoursFrom(now, -24), hoursFrom(now, -22))
         };
         
-        for (String sql : shipmentSQL) {
-            directStmt.executeUpdate(sql);
-        }
+        int[] ids = new int[shipments.length];
+        int[] next = {0};
+        loader.loadShipments(Arrays.asList(shipments).iterator(), (row, id) -> ids[next[0]++] = id);
         
         System.out.println("✓ Inserted 8 shipments");
-        directStmt.close();
+        return ids;
     }
     
-    private static void insertSamplePackages(Connection conn) throws SQLException {
-        String packageQuery = "INSERT INTO packages (shipment_id, weight, content_description, package_type) VALUES (?, ?, ?, ?)";
-        PreparedStatement stmt = conn.prepareStatement(packageQuery);
-        
+    private static void insertSamplePackages(BulkLoader loader, int[] shipmentIds) throws SQLException {
         Object[][] packages = {
             {1, 1.5, "Electronics - OnePlus Mobile Phone", "Fragile"},
             {1, 0.2, "Mobile Accessories - Screen Guard & Case", "Standard"},
@@ -341,95 +410,438 @@ public class functions {
             {8, 1.1, "Traditional Items - Handwoven Silk Scarf", "Delicate"}
         };
         
+        List<BulkLoader.PackageRecord> rows = new ArrayList<>();
         for (Object[] pkg : packages) {
-            stmt.setInt(1, (Integer) pkg[0]);
-            stmt.setDouble(2, (Double) pkg[1]);
-            stmt.setString(3, (String) pkg[2]);
-            stmt.setString(4, (String) pkg[3]);
-            stmt.executeUpdate();
+            rows.add(new BulkLoader.PackageRecord(shipmentIds[(Integer) pkg[0] - 1],
+                (Double) pkg[1], (String) pkg[2], (String) pkg[3]));
         }
+        loader.loadPackages(rows.iterator());
         
         System.out.println("✓ Inserted 15 packages");
-        stmt.close();
     }
     
-    private static void insertSampleStatusLogs(Connection conn) throws SQLException {
-        Statement stmt = conn.createStatement();
-        
-        String[] statusLogs = {
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (1, 'pending', 1, 'System', 'Shipment created at Mumbai Central Hub')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (1, 'in_transit', 1, 'Rajesh Kumar Singh', 'Package picked up from Mumbai Central Hub')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (1, 'in_transit', 2, 'Rajesh Kumar Singh', 'Package arrived at Delhi North Hub')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (2, 'pending', 5, 'System', 'Shipment created at Hyderabad HITEC Hub')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (3, 'pending', 2, 'System', 'Shipment created at Delhi North Hub')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (3, 'in_transit', 2, 'Sunil Yadav', 'Out for delivery from Delhi North Hub')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (3, 'in_transit', 4, 'Sunil Yadav', 'Package arrived at Pune Delivery Center')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (3, 'delivered', 4, 'Sunil Yadav', 'Package delivered successfully')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (4, 'pending', 6, 'System', 'Shipment created at Chennai Express Point')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (4, 'in_transit', 6, 'Vinod Gupta', 'Package picked up from Chennai')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (5, 'pending', 8, 'System', 'Shipment created at Ahmedabad Commercial Hub')",
-            "INSERT INTO status_logs (shipment_id, status_update, location_id, agent_name, notes) VALUES (5, 'delivered', 4, 'Ramesh Agarwal', 'Package delivered to recipient')"
+    private static void insertSampleStatusLogs(BulkLoader loader, int[] shipmentIds) throws SQLException {
+        Object[][] statusLogs = {
+            {1, "pending", 1, "System", "Shipment created at Mumbai Central Hub"},
+            {1, "in_transit", 1, "Rajesh Kumar Singh", "Package picked up from Mumbai Central Hub"},
+            {1, "in_transit", 2, "Rajesh Kumar Singh", "Package arrived at Delhi North Hub"},
+            {2, "pending", 5, "System", "Shipment created at Hyderabad HITEC Hub"},
+            {3, "pending", 2, "System", "Shipment created at Delhi North Hub"},
+            {3, "in_transit", 2, "Sunil Yadav", "Out for delivery from Delhi North Hub"},
+            {3, "in_transit", 4, "Sunil Yadav", "Package arrived at Pune Delivery Center"},
+            {3, "delivered", 4, "Sunil Yadav", "Package delivered successfully"},
+            {4, "pending", 6, "System", "Shipment created at Chennai Express Point"},
+            {4, "in_transit", 6, "Vinod Gupta", "Package picked up from Chennai"},
+            {5, "pending", 8, "System", "Shipment created at Ahmedabad Commercial Hub"},
+            {5, "delivered", 4, "Ramesh Agarwal", "Package delivered to recipient"}
         };
         
-        for (String sql : statusLogs) {
-            stmt.executeUpdate(sql);
+        List<BulkLoader.StatusLogRecord> rows = new ArrayList<>();
+        for (Object[] log : statusLogs) {
+            rows.add(new BulkLoader.StatusLogRecord(shipmentIds[(Integer) log[0] - 1],
+                (String) log[1], (Integer) log[2], null, (String) log[3], (String) log[4]));
         }
+        loader.loadStatusLogs(rows.iterator());
         
         System.out.println("✓ Inserted status logs");
-        stmt.close();
     }
     
-    private static void insertSampleDriverAssignments(Connection conn) throws SQLException {
-        Statement stmt = conn.createStatement();
+    private static void insertSampleDriverAssignments(BulkLoader loader, int[] shipmentIds) throws SQLException {
+        long now = System.currentTimeMillis();
         
-        String[] assignments = {
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (1, 1, DATE_ADD(NOW(), INTERVAL 2 DAY), 'active')",
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (5, 2, DATE_ADD(NOW(), INTERVAL 1 DAY), 'active')",
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (4, 3, DATE_SUB(NOW(), INTERVAL 1 DAY), 'completed')",
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (6, 4, DATE_ADD(NOW(), INTERVAL 2 DAY), 'active')",
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (8, 5, DATE_SUB(NOW(), INTERVAL 2 DAY), 'completed')",
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (3, 6, DATE_SUB(NOW(), INTERVAL 3 DAY), 'active')",
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (2, 7, DATE_ADD(NOW(), INTERVAL 2 DAY), 'active')",
-            "INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, status) VALUES (7, 8, DATE_SUB(NOW(), INTERVAL 1 DAY), 'completed')"
+        // {driver_id, shipment (1-based), estimated delivery offset in hours, status}
+        Object[][] assignments = {
+            {1, 1, 48, "active"},
+            {5, 2, 24, "active"},
+            {4, 3, -24, "completed"},
+            {6, 4, 48, "active"},
+            {8, 5, -48, "completed"},
+            {3, 6, -72, "active"},
+            {2, 7, 48, "active"},
+            {7, 8, -24, "completed"}
         };
         
-        for (String sql : assignments) {
-            stmt.executeUpdate(sql);
+        List<BulkLoader.AssignmentRecord> rows = new ArrayList<>();
+        for (Object[] a : assignments) {
+            rows.add(new BulkLoader.AssignmentRecord((Integer) a[0], shipmentIds[(Integer) a[1] - 1],
+                null, hoursFrom(now, (Integer) a[2]), (String) a[3]));
         }
+        loader.loadAssignments(rows.iterator());
         
         System.out.println("✓ Inserted driver assignments");
-        stmt.close();
+    }
+    
+    private static Timestamp hoursFrom(long nowMillis, int hours) {
+        return new Timestamp(nowMillis + hours * 3_600_000L);
     }
     
     // Diagnostic function to check current shipments in database
     public static void showAllShipments() {
-        String query = "SELECT shipment_id, sender_name, recipient_name, current_status FROM shipments ORDER BY shipment_id";
-        
-        try (Connection conn = create.getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
+        java.nio.file.Path file = ResultRenderer.file();
+        try (RowCursor<ShipmentQueries.ShipmentSummary> rows = ShipmentQueries.streamAllShipments()) {
             
             System.out.println("\n=== Current Shipments in Database ===");
-            System.out.printf("%-5s %-20s %-20s %-15s%n", "ID", "Sender", "Recipient", "Status");
-            System.out.println("=".repeat(65));
-            
-            boolean found = false;
-            while (rs.next()) {
-                found = true;
-                System.out.printf("%-5d %-20s %-20s %-15s%n",
-                    rs.getInt("shipment_id"),
-                    rs.getString("sender_name"),
-                    rs.getString("recipient_name"),
-                    rs.getString("current_status"));
+            long written;
+            try (ResultRenderer out = ResultRenderer.open(ResultRenderer.format(), file, SHIPMENT_COLUMNS)) {
+                while (rows.hasNext()) {
+                    ShipmentQueries.ShipmentSummary s = rows.next();
+                    out.cell(s.shipmentId())
+                        .cell(s.senderName())
+                        .cell(s.recipientName())
+                        .cell(s.currentStatus())
+                        .endRow();
+                }
+                written = out.rows();
+                reportWritten(out, file);
             }
             
-            if (!found) {
+            if (written == 0) {
                 System.out.println("No shipments found in database.");
                 System.out.println("Please run 'Insert Sample Data' first.");
             }
             
+        } catch (SQLException | RowCursor.CursorException | java.io.IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Report columns for ResultRenderer; widths match the console tables
+    private static final List<ResultRenderer.Column> SHIPMENT_COLUMNS = List.of(
+        new ResultRenderer.Column("ID", "shipment_id", 5),
+        new ResultRenderer.Column("Sender", "sender_name", 20),
+        new ResultRenderer.Column("Recipient", "recipient_name", 20),
+        new ResultRenderer.Column("Status", "current_status", 15));
+    
+    private static final List<ResultRenderer.Column> HUB_DELIVERY_COLUMNS = List.of(
+        new ResultRenderer.Column("Location", "location_name", 30),
+        new ResultRenderer.Column("Type", "location_type", 15),
+        new ResultRenderer.Column("Deliveries", "total_deliveries", 12),
+        new ResultRenderer.Column("Total Hours", "avg_total_hours", 15),
+        new ResultRenderer.Column("vs Estimate", "avg_variance_hours", 20),
+        new ResultRenderer.Column("p50", "p50_hours", 8),
+        new ResultRenderer.Column("p90", "p90_hours", 8),
+        new ResultRenderer.Column("p99", "p99_hours", 8));
+    
+    private static final List<ResultRenderer.Column> SHIPMENT_PAGE_COLUMNS = List.of(
+        new ResultRenderer.Column("ID", "shipment_id", 10),
+        new ResultRenderer.Column("Sender", "sender_name", 20),
+        new ResultRenderer.Column("Recipient", "recipient_name", 20),
+        new ResultRenderer.Column("Status", "current_status", 15));
+    
+    private static final List<ResultRenderer.Column> DELAYED_PAGE_COLUMNS = List.of(
+        new ResultRenderer.Column("ID", "shipment_id", 10),
+        new ResultRenderer.Column("Sender", "sender_name", 20),
+        new ResultRenderer.Column("Recipient", "recipient_name", 20),
+        new ResultRenderer.Column("Status", "current_status", 15),
+        new ResultRenderer.Column("Estimated Delivery", "estimated_delivery", 22),
+        new ResultRenderer.Column("Delay(hrs)", "delay_hours", 15));
+    
+    private static final List<ResultRenderer.Column> STATUS_COUNT_COLUMNS = List.of(
+        new ResultRenderer.Column("Status", "status", 15),
+        new ResultRenderer.Column("Shipments", "shipment_count", 10));
+    
+    private static final List<ResultRenderer.Column> DELAYED_COLUMNS = List.of(
+        new ResultRenderer.Column("ID", "shipment_id", 10),
+        new ResultRenderer.Column("Sender", "sender_name", 20),
+        new ResultRenderer.Column("Recipient", "recipient_name", 20),
+        new ResultRenderer.Column("Status", "current_status", 15),
+        new ResultRenderer.Column("Delay(hrs)", "delay_hours", 15),
+        new ResultRenderer.Column("Origin", "origin", 10));
+    
+    private static final List<ResultRenderer.Column> DAILY_VOLUME_COLUMNS = List.of(
+        new ResultRenderer.Column("Date", "shipment_date", 15),
+        new ResultRenderer.Column("Origin Location", "origin_location", 30),
+        new ResultRenderer.Column("Shipments", "shipment_count", 15));
+    
+    private static final List<ResultRenderer.Column> REGION_DELIVERY_COLUMNS = List.of(
+        new ResultRenderer.Column("ID", "location_id", 5),
+        new ResultRenderer.Column("Location", "location_name", 34),
+        new ResultRenderer.Column("Type", "location_type", 15),
+        new ResultRenderer.Column("Level", "depth", 5),
+        new ResultRenderer.Column("Deliveries", "total_deliveries", 10),
+        new ResultRenderer.Column("Avg Hours", "avg_total_hours", 10),
+        new ResultRenderer.Column("vs Est", "avg_variance_hours", 8),
+        new ResultRenderer.Column("p50", "p50_hours", 8),
+        new ResultRenderer.Column("p90", "p90_hours", 8),
+        new ResultRenderer.Column("p99", "p99_hours", 8));
+    
+    private static final List<ResultRenderer.Column> ROUTE_LEG_COLUMNS = List.of(
+        new ResultRenderer.Column("From", "from_location", 28),
+        new ResultRenderer.Column("To", "to_location", 28),
+        new ResultRenderer.Column("Legs", "leg_count", 8),
+        new ResultRenderer.Column("Avg Hours", "avg_hours", 10),
+        new ResultRenderer.Column("p50", "p50_hours", 8),
+        new ResultRenderer.Column("p90", "p90_hours", 8),
+        new ResultRenderer.Column("p99", "p99_hours", 8),
+        new ResultRenderer.Column("Max", "max_hours", 8));
+    
+    // Rows written to a file are summarised on the console instead
+    private static void reportWritten(ResultRenderer out, java.nio.file.Path file) {
+        if (file != null) {
+            System.out.println("✓ Wrote " + out.rows() + " rows to " + file);
+        }
+    }
+    
+    // Print one page of shipments; returns the token for the next page, or null at the end.
+    // Like every report, a page written to the output file replaces what was there.
+    public static String showShipmentsPage(String pageToken, int pageSize) {
+        try {
+            ShipmentQueries.Page<ShipmentQueries.ShipmentSummary> page =
+                ShipmentQueries.listShipments(pageToken, pageSize);
+            java.nio.file.Path file = ResultRenderer.file();
+            
+            System.out.println("\n=== Shipments ===");
+            try (ResultRenderer out = ResultRenderer.open(ResultRenderer.format(), file, SHIPMENT_PAGE_COLUMNS)) {
+                for (ShipmentQueries.ShipmentSummary s : page.items()) {
+                    out.cell(s.shipmentId())
+                        .cell(s.senderName())
+                        .cell(s.recipientName())
+                        .cell(s.currentStatus())
+                        .endRow();
+                }
+                reportWritten(out, file);
+            }
+            
+            if (page.items().isEmpty()) {
+                System.out.println("No shipments found in database.");
+            }
+            return page.nextToken();
+            
+        } catch (SQLException | java.io.IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    // Print one page of delayed shipments, earliest promised delivery first
+    public static String showDelayedShipmentsPage(String pageToken, int pageSize) {
+        try {
+            ShipmentQueries.Page<ShipmentQueries.DelayedShipment> page =
+                ShipmentQueries.listDelayedShipments(pageToken, pageSize);
+            java.nio.file.Path file = ResultRenderer.file();
+            
+            System.out.println("\n=== Delayed Shipments ===");
+            try (ResultRenderer out = ResultRenderer.open(ResultRenderer.format(), file, DELAYED_PAGE_COLUMNS)) {
+                for (ShipmentQueries.DelayedShipment d : page.items()) {
+                    out.cell(d.shipmentId())
+                        .cell(d.senderName())
+                        .cell(d.recipientName())
+                        .cell(d.currentStatus())
+                        .cell(d.estimatedDelivery())
+                        .cell(d.delayHours(), 1)
+                        .endRow();
+                }
+                reportWritten(out, file);
+            }
+            
+            if (page.items().isEmpty()) {
+                System.out.println("No delayed shipments found.");
+            }
+            return page.nextToken();
+            
+        } catch (SQLException | java.io.IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    // Reports 3, 4 and 5 plus a status summary, fetched concurrently
+    public static void showOperationsDashboard() {
+        OpsDashboard.Snapshot snapshot = OpsDashboard.capture();
+        
+        System.out.println("\n=== Operations Dashboard ===");
+        System.out.println("Captured at: " + new Timestamp(snapshot.capturedAt()));
+        System.out.println("Total time: " + snapshot.totalMillis() + " ms");
+        
+        OpsDashboard.Section<List<ShipmentQueries.StatusCount>> counts = snapshot.statusCounts();
+        System.out.println("\n=== Shipments by Status ===");
+        if (counts.ok()) {
+            try (ResultRenderer out = ResultRenderer.open(ResultRenderer.Format.TABLE, null, STATUS_COUNT_COLUMNS)) {
+                for (ShipmentQueries.StatusCount c : counts.value()) {
+                    out.cell(c.status())
+                        .cell(c.shipmentCount())
+                        .endRow();
+                }
+            } catch (java.io.IOException e) {
+                e.printStackTrace();
+            }
+        }
+        printSectionStatus(counts);
+        
+        if (snapshot.hubDelivery().ok()) {
+            printHubDeliveryStats(snapshot.hubDelivery().value());
+        } else {
+            System.out.println("\n=== Average Delivery Time Per Hub ===");
+        }
+        printSectionStatus(snapshot.hubDelivery());
+        
+        if (snapshot.delayed().ok()) {
+            printDelayedShipments(snapshot.delayed().value());
+        } else {
+            System.out.println("\n=== Delayed Shipments ===");
+        }
+        printSectionStatus(snapshot.delayed());
+        
+        if (snapshot.dailyVolume().ok()) {
+            printDailyVolume(snapshot.dailyVolume().value());
+        } else {
+            System.out.println("\n=== Daily Shipment Volume by Origin (Last 30 Days) ===");
+        }
+        printSectionStatus(snapshot.dailyVolume());
+    }
+    
+    private static void printSectionStatus(OpsDashboard.Section<?> section) {
+        if (section.ok()) {
+            System.out.println("✓ Loaded in " + section.elapsedMillis() + " ms");
+        } else {
+            System.out.println("✗ Not available (" + section.error() + ")");
+        }
+    }
+    
+    // Recompute report rollups from the base tables
+    public static void rebuildReportRollups() {
+        try {
+            long volumeRows = VolumeRollup.rebuild();
+            System.out.println("✓ Rebuilt daily volume rollup (" + volumeRows + " day/origin rows)");
+            long hubRows = DeliveryStats.rebuild();
+            System.out.println("✓ Rebuilt hub delivery statistics (" + hubRows + " destinations)");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    // Diagnostic function to show connection pool and cache usage
+    public static void showSystemStats() {
+        showConnectionPoolStats();
+        showTrackingCacheStats();
+        showIngestionStats();
+        showAssignmentStats();
+        showQueryMetrics();
+    }
+    
+    private static void showConnectionPoolStats() {
+        ConnectionPool.Stats stats = create.getPoolStats();
+        
+        System.out.println("\n=== Connection Pool Statistics ===");
+        if (stats == null) {
+            System.out.println("Connection pool has not been started yet.");
+            return;
+        }
+        
+        System.out.println("Active connections: " + stats.active());
+        System.out.println("Idle connections: " + stats.idle());
+        System.out.println("Open connections: " + stats.total());
+        System.out.println("Waiting threads: " + stats.waiters());
+        System.out.println("Connections acquired: " + stats.acquired());
+        System.out.println("Acquire timeouts: " + stats.timeouts());
+        System.out.println("Physical connections created: " + stats.created());
+        System.out.println("Idle connections evicted: " + stats.evicted());
+        System.out.printf("Acquire latency: avg %.3f ms, max %.3f ms%n",
+            stats.avgAcquireMillis(), stats.maxAcquireMillis());
+    }
+    
+    private static void showTrackingCacheStats() {
+        TrackingCache.Stats stats = TrackingCache.shared().getStats();
+        
+        System.out.println("\n=== Tracking Cache Statistics ===");
+        System.out.println("Entries: " + stats.size() + " / " + stats.maxSize());
+        System.out.println("Hits: " + stats.hits());
+        System.out.println("Misses: " + stats.misses());
+        System.out.printf("Hit rate: %.1f%%%n", stats.hitRate() * 100);
+        System.out.println("Evictions: " + stats.evictions());
+        System.out.println("Expirations: " + stats.expirations());
+        System.out.println("Invalidations: " + stats.invalidations());
+    }
+    
+    private static void showIngestionStats() {
+        StatusIngestor.Stats stats = StatusIngestor.sharedStats();
+        
+        System.out.println("\n=== Status Ingestion Statistics ===");
+        if (stats == null) {
+            System.out.println("No status events have been ingested yet.");
+            return;
+        }
+        
+        System.out.println("Queue depth: " + stats.queueDepth() + " / " + stats.queueCapacity());
+        System.out.println("Events submitted: " + stats.submitted());
+        System.out.println("Events committed: " + stats.committed());
+        System.out.println("Events failed: " + stats.failed());
+        System.out.println("Events rejected (queue full): " + stats.rejected());
+        System.out.printf("Throughput: %.1f events/s%n", stats.eventsPerSecond());
+        System.out.printf("Batches: %d (avg %.1f events)%n", stats.batches(), stats.avgBatchSize());
+        System.out.printf("Commit latency: avg %.3f ms, max %.3f ms%n",
+            stats.avgCommitMillis(), stats.maxCommitMillis());
+        System.out.printf("Submit-to-commit latency: avg %.3f ms%n", stats.avgLatencyMillis());
+    }
+    
+    private static void showAssignmentStats() {
+        DriverAssignmentEngine.Stats stats = DriverAssignmentEngine.shared().getStats();
+        
+        System.out.println("\n=== Driver Assignment Statistics ===");
+        if (stats == null) {
+            System.out.println("No shipments have been auto-assigned yet.");
+            return;
+        }
+        
+        System.out.println("Drivers: " + stats.drivers() + " (" + stats.fullDrivers() + " at capacity)");
+        System.out.println("Active assignments: " + stats.active() + " / " + stats.capacity());
+        System.out.println("Origins with preferred drivers: " + stats.originsWithAffinity());
+    }
+    
+    // Assigns pending shipments without an active driver, respecting each driver's capacity
+    public static void autoAssignPendingShipments(int limit) {
+        try {
+            long start = System.nanoTime();
+            DriverAssignmentEngine.Result result = DriverAssignmentEngine.shared().assignPending(limit);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            
+            System.out.println("✓ Assigned " + result.assigned().size() + " shipments in " + elapsedMillis + " ms");
+            if (!result.unassigned().isEmpty()) {
+                System.out.println("✗ " + result.unassigned().size()
+                    + " shipments left unassigned (no driver with spare capacity)");
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
+    
+    // Move delivered and returned shipments past the archive age into the archive tables now
+    public static void archiveOldShipments() {
+        try {
+            ShipmentArchiver.Result result = ShipmentArchiver.runOnce();
+            System.out.println("✓ Archived " + result.shipments() + " shipments (" + result.packages() + " packages, "
+                + result.statusLogs() + " status logs, " + result.assignments() + " assignments) in "
+                + result.batches() + " batches, " + result.elapsedMillis() + " ms");
+            PartitionMaintenance.Result partitions = result.partitions();
+            if (partitions.added() > 0 || partitions.merged() > 0) {
+                System.out.println("✓ Partitions: " + partitions.added() + " added, "
+                    + partitions.merged() + " emptied and merged into p_history");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+    
+    private static void showQueryMetrics() {
+        List<QueryMetrics.OperationStats> operations = QueryMetrics.snapshot();
+        
+        System.out.println("\n=== Query Metrics (ms) ===");
+        if (operations.isEmpty()) {
+            System.out.println("No queries have run yet.");
+            return;
+        }
+        
+        System.out.printf("%-26s %8s %6s %10s %9s %9s %9s %9s %9s %9s%n", "Operation", "Calls", "Errors",
+            "Rows", "Acq p99", "Exec p50", "Exec p99", "Fetch p99", "Total p99", "Max");
+        System.out.println("-".repeat(111));
+        for (QueryMetrics.OperationStats op : operations) {
+            System.out.printf("%-26s %8d %6d %10d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", op.name(), op.calls(),
+                op.errors(), op.rows(), op.acquireP99Millis(), op.executeP50Millis(), op.executeP99Millis(),
+                op.fetchP99Millis(), op.totalP99Millis(), op.totalMaxMillis());
+        }
+        if (JdbcTracer.ENABLED) {
+            System.out.println("Statements traced: " + JdbcTracer.tracedCount()
+                + " (" + JdbcTracer.loggedCount() + " written to the slow query log)");
+        }
+    }
 }
@@ -2,6 +2,8 @@ import java.util.Scanner;
 
 public class main {
     private static Scanner scanner = new Scanner(System.in);
+    private static final int PAGE_SIZE = Integer.getInteger("courier.page.size", 20);
+    private static final int ROUTE_LEG_LIMIT = Integer.getInteger("courier.legs.reportLimit", 50);
     
     public static void main(String[] args) {
         System.out.println("=== " + ResourceLoader.getApplicationInfo() + " ===");
@@ -9,6 +11,7 @@ public class main {
         
         // Get MySQL password from user
         getMySQLPassword();
+        ShipmentArchiver.startIfEnabled();
         
         boolean running = true;
         
@@ -27,7 +30,20 @@ public class main {
                     runQueryMenu();
                     break;
                 case 4:
+                    generateLoadTestData();
+                    break;
+                case 5:
+                    rebuildReportRollups();
+                    break;
+                case 6:
+                    autoAssignPendingShipments();
+                    break;
+                case 7:
+                    archiveOldShipments();
+                    break;
+                case 8:
                     System.out.println("Thank you for using Courier Service Management System!");
+                    create.shutdown();
                     running = false;
                     break;
                 default:
@@ -77,9 +93,13 @@ public class main {
         System.out.println("1. Create Database and Tables");
         System.out.println("2. Insert Sample Data");
         System.out.println("3. Run Queries");
-        System.out.println("4. Exit");
+        System.out.println("4. Generate Load-Test Data");
+        System.out.println("5. Rebuild Report Rollups");
+        System.out.println("6. Auto-Assign Pending Shipments");
+        System.out.println("7. Archive Old Shipments");
+        System.out.println("8. Exit");
         System.out.println("=".repeat(50));
-        System.out.print("Enter your choice (1-4): ");
+        System.out.print("Enter your choice (1-8): ");
     }
     
     private static void runQueryMenu() {
@@ -91,9 +111,8 @@ public class main {
             
             switch (choice) {
                 case 1:
-                    System.out.print("Enter Shipment ID: ");
-                    int shipmentId = scanner.nextInt();
-                    functions.getShipmentStatusAndLocation(shipmentId);
+                    System.out.print("Enter Shipment ID (or several, comma-separated): ");
+                    showTracking(scanner.next());
                     break;
                 case 2:
                     System.out.print("Enter Driver ID: ");
@@ -113,6 +132,32 @@ public class main {
                     functions.showAllShipments();
                     break;
                 case 7:
+                    functions.showSystemStats();
+                    break;
+                case 8:
+                    browsePages(false);
+                    continue; // paging already waited for input
+                case 9:
+                    browsePages(true);
+                    continue;
+                case 10:
+                    functions.showOperationsDashboard();
+                    break;
+                case 11:
+                    System.out.print("Enter Location ID (0 for all): ");
+                    functions.getRegionalDeliveryTimes(scanner.nextInt());
+                    break;
+                case 12:
+                    System.out.print("Enter Location ID (0 for all): ");
+                    functions.getRegionalDailyVolume(scanner.nextInt());
+                    break;
+                case 13:
+                    functions.getRouteLegTransitTimes(ROUTE_LEG_LIMIT);
+                    break;
+                case 14:
+                    chooseOutput();
+                    continue; // already read the rest of the line
+                case 15:
                     queryRunning = false;
                     break;
                 default:
@@ -131,15 +176,39 @@ public class main {
         System.out.println("\n" + "=".repeat(50));
         System.out.println("QUERY OPERATIONS");
         System.out.println("=".repeat(50));
-        System.out.println("1. Get Shipment Status and Location Log");
+        System.out.println("1. Get Shipment Status and Location Log (one or many)");
         System.out.println("2. List Pending Shipments for Driver");
         System.out.println("3. Average Delivery Time per Hub");
         System.out.println("4. Show Delayed Shipments");
         System.out.println("5. Daily Shipment Volume by Origin");
         System.out.println("6. Show All Shipments (Diagnostic)");
-        System.out.println("7. Back to Main Menu");
+        System.out.println("7. System Statistics and Query Metrics");
+        System.out.println("8. Browse All Shipments (Paged)");
+        System.out.println("9. Browse Delayed Shipments (Paged)");
+        System.out.println("10. Operations Dashboard");
+        System.out.println("11. Regional Delivery Times (Location Tree)");
+        System.out.println("12. Regional Daily Volume (Location Tree)");
+        System.out.println("13. Route Leg Transit Times");
+        System.out.println("14. Output Format (now: " + outputDescription() + ")");
+        System.out.println("15. Back to Main Menu");
         System.out.println("=".repeat(50));
-        System.out.print("Enter your choice (1-7): ");
+        System.out.print("Enter your choice (1-15): ");
+    }
+    
+    private static void browsePages(boolean delayedOnly) {
+        scanner.nextLine(); // consume newline
+        String token = null;
+        do {
+            token = delayedOnly
+                ? functions.showDelayedShipmentsPage(token, PAGE_SIZE)
+                : functions.showShipmentsPage(token, PAGE_SIZE);
+            if (token == null) {
+                System.out.println("\n(End of list) Press Enter to continue...");
+                scanner.nextLine();
+                return;
+            }
+            System.out.print("\nPress Enter for the next page, or type q to stop: ");
+        } while (!scanner.nextLine().trim().equalsIgnoreCase("q"));
     }
     
     private static void createDatabaseAndTables() {
@@ -167,6 +236,93 @@ public class main {
         }
     }
     
+    private static void showTracking(String input) {
+        java.util.List<Integer> ids = new java.util.ArrayList<>();
+        try {
+            for (String part : input.split(",")) {
+                if (!part.isBlank()) {
+                    ids.add(Integer.parseInt(part.trim()));
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("✗ Please enter whole numbers separated by commas.");
+            return;
+        }
+        if (ids.size() == 1) {
+            functions.getShipmentStatusAndLocation(ids.get(0));
+        } else if (!ids.isEmpty()) {
+            functions.getShipmentStatusAndLocation(ids);
+        }
+    }
+    
+    // Applies to the full listings (4, 5, 6, 11, 12, 13); the dashboard and paged views stay on the console
+    private static void chooseOutput() {
+        scanner.nextLine(); // consume newline
+        System.out.print("Format (table, csv, jsonl) [" + ResultRenderer.format().name().toLowerCase() + "]: ");
+        String formatName = scanner.nextLine().trim();
+        System.out.print("Output file (blank for console): ");
+        String fileName = scanner.nextLine().trim();
+        try {
+            ResultRenderer.Format format = formatName.isEmpty()
+                ? ResultRenderer.format() : ResultRenderer.Format.parse(formatName);
+            ResultRenderer.setOutput(format, fileName.isEmpty() ? null : java.nio.file.Path.of(fileName));
+            System.out.println("✓ Output: " + outputDescription());
+        } catch (IllegalArgumentException e) {
+            System.out.println("✗ " + e.getMessage());
+        }
+    }
+    
+    private static String outputDescription() {
+        java.nio.file.Path file = ResultRenderer.file();
+        return ResultRenderer.format().name().toLowerCase() + (file == null ? " to console" : " to " + file);
+    }
+    
+    private static void autoAssignPendingShipments() {
+        System.out.print("\nMaximum shipments to assign: ");
+        try {
+            int limit = scanner.nextInt();
+            functions.autoAssignPendingShipments(limit);
+        } catch (java.util.InputMismatchException e) {
+            scanner.nextLine(); // clear invalid input
+            System.out.println("✗ Please enter a whole number.");
+        }
+    }
+    
+    private static void archiveOldShipments() {
+        System.out.println("\nArchiving old delivered and returned shipments...");
+        functions.archiveOldShipments();
+    }
+    
+    private static void rebuildReportRollups() {
+        System.out.println("\nRebuilding report rollups...");
+        functions.rebuildReportRollups();
+    }
+    
+    private static void generateLoadTestData() {
+        System.out.println("\nGenerating synthetic load-test data...");
+        try {
+            System.out.print("Number of locations: ");
+            int locations = scanner.nextInt();
+            System.out.print("Number of drivers: ");
+            int drivers = scanner.nextInt();
+            System.out.print("Number of shipments: ");
+            long shipments = scanner.nextLong();
+            System.out.print("Random seed: ");
+            long seed = scanner.nextLong();
+            
+            try (java.sql.Connection conn = create.getConnection()) {
+                DataGenerator.newDefault(seed, 180).generate(conn, locations, drivers, shipments);
+            }
+            System.out.println("✓ Load-test data generated successfully!");
+        } catch (java.util.InputMismatchException e) {
+            scanner.nextLine(); // clear invalid input
+            System.out.println("✗ Please enter whole numbers only.");
+        } catch (Exception e) {
+            System.out.println("✗ Error generating data: " + e.getMessage());
+            System.out.println("Please ensure the database and tables are created first.");
+        }
+    }
+    
     private static int getMenuChoice() {
         try {
             return scanner.nextInt();
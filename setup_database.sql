@@ -6,6 +6,16 @@ CREATE DATABASE courier_service;
 USE courier_service;
 
 -- Drop tables if they exist (in reverse order due to foreign key constraints)
+DROP TABLE IF EXISTS packages_archive;
+DROP TABLE IF EXISTS status_logs_archive;
+DROP TABLE IF EXISTS driver_assignments_archive;
+DROP TABLE IF EXISTS shipments_archive;
+DROP TABLE IF EXISTS analytics_watermarks;
+DROP TABLE IF EXISTS route_leg_histogram;
+DROP TABLE IF EXISTS route_leg_stats;
+DROP TABLE IF EXISTS hub_delivery_histogram;
+DROP TABLE IF EXISTS hub_delivery_stats;
+DROP TABLE IF EXISTS shipment_daily_volume;
 DROP TABLE IF EXISTS driver_assignments;
 DROP TABLE IF EXISTS status_logs;
 DROP TABLE IF EXISTS packages;
@@ -47,6 +57,7 @@ CREATE TABLE shipments (
     destination_location_id INT NOT NULL,
     current_status ENUM('pending', 'in_transit', 'delivered', 'returned', 'delayed') DEFAULT 'pending',
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    created_date DATE GENERATED ALWAYS AS (DATE(created_at)) VIRTUAL,
     estimated_delivery DATETIME,
     actual_delivery DATETIME,
     FOREIGN KEY (origin_location_id) REFERENCES locations(location_id),
@@ -88,12 +99,107 @@ CREATE TABLE driver_assignments (
     FOREIGN KEY (shipment_id) REFERENCES shipments(shipment_id)
 );
 
+-- Create daily volume rollup (maintained by the application on every shipment insert)
+CREATE TABLE shipment_daily_volume (
+    shipment_date DATE NOT NULL,
+    origin_location_id INT NOT NULL,
+    shipment_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (shipment_date, origin_location_id),
+    FOREIGN KEY (origin_location_id) REFERENCES locations(location_id)
+);
+
+-- Create per-destination delivery-time aggregates (maintained by the application when actual_delivery is set)
+CREATE TABLE hub_delivery_stats (
+    destination_location_id INT PRIMARY KEY,
+    delivered_count INT NOT NULL DEFAULT 0,
+    sum_total_hours BIGINT NOT NULL DEFAULT 0,
+    sum_variance_hours BIGINT NOT NULL DEFAULT 0,
+    variance_count INT NOT NULL DEFAULT 0,
+    FOREIGN KEY (destination_location_id) REFERENCES locations(location_id)
+);
+
+CREATE TABLE hub_delivery_histogram (
+    destination_location_id INT NOT NULL,
+    bucket SMALLINT NOT NULL,
+    shipment_count INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (destination_location_id, bucket),
+    FOREIGN KEY (destination_location_id) REFERENCES locations(location_id)
+);
+
+-- Per-leg transit aggregates and the run watermark (maintained by RouteLegAnalytics)
+CREATE TABLE route_leg_stats (
+    from_location_id INT NOT NULL,
+    to_location_id INT NOT NULL,
+    leg_count BIGINT NOT NULL DEFAULT 0,
+    sum_seconds BIGINT NOT NULL DEFAULT 0,
+    min_seconds BIGINT NOT NULL,
+    max_seconds BIGINT NOT NULL,
+    PRIMARY KEY (from_location_id, to_location_id),
+    FOREIGN KEY (from_location_id) REFERENCES locations(location_id),
+    FOREIGN KEY (to_location_id) REFERENCES locations(location_id)
+);
+
+CREATE TABLE route_leg_histogram (
+    from_location_id INT NOT NULL,
+    to_location_id INT NOT NULL,
+    bucket SMALLINT NOT NULL,
+    leg_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (from_location_id, to_location_id, bucket),
+    FOREIGN KEY (from_location_id, to_location_id) REFERENCES route_leg_stats(from_location_id, to_location_id)
+);
+
+CREATE TABLE analytics_watermarks (
+    job_name VARCHAR(64) PRIMARY KEY,
+    watermark TIMESTAMP NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
 -- Create indexes for better performance
+-- (composite indexes follow the query access paths; keep in sync with create.java)
 CREATE INDEX idx_shipment_status ON shipments(current_status);
-CREATE INDEX idx_shipment_created ON shipments(created_at);
-CREATE INDEX idx_status_logs_shipment ON status_logs(shipment_id);
-CREATE INDEX idx_driver_assignments_driver ON driver_assignments(driver_id);
-CREATE INDEX idx_driver_assignments_status ON driver_assignments(status);
+CREATE INDEX idx_shipment_created_date ON shipments(created_date, origin_location_id);
+CREATE INDEX idx_shipment_estimated ON shipments(estimated_delivery);
+CREATE INDEX idx_shipment_open ON shipments(actual_delivery, estimated_delivery);
+CREATE INDEX idx_status_logs_shipment_time ON status_logs(shipment_id, update_timestamp, log_id, location_id);
+CREATE INDEX idx_status_logs_time ON status_logs(update_timestamp, shipment_id, location_id);
+CREATE INDEX idx_driver_assignments_pending ON driver_assignments(driver_id, status, estimated_delivery);
+
+-- Archive tables for ShipmentArchiver: same columns and indexes, no foreign keys
+CREATE TABLE packages_archive LIKE packages;
+CREATE TABLE status_logs_archive LIKE status_logs;
+CREATE TABLE driver_assignments_archive LIKE driver_assignments;
+CREATE TABLE shipments_archive LIKE shipments;
+
+-- Optional: monthly range partitioning of shipments and status_logs, the layout
+-- create.java builds with -Dcourier.schema.partitioned=true. MySQL cannot partition
+-- a table that has or is referenced by a foreign key, and the primary key must
+-- include the partitioning column, so the foreign keys into and out of these two
+-- tables are dropped (their indexes stay) and the primary keys are widened.
+-- Uncomment, make the months cover your data, and run before loading data; the
+-- archiver adds upcoming months from then on and merges emptied old months into
+-- p_history with REORGANIZE PARTITION (which keeps any rows written into them
+-- meanwhile), so no partition is ever dropped.
+--
+-- ALTER TABLE packages DROP FOREIGN KEY packages_ibfk_1;
+-- ALTER TABLE driver_assignments DROP FOREIGN KEY driver_assignments_ibfk_2;
+-- ALTER TABLE status_logs DROP FOREIGN KEY status_logs_ibfk_1, DROP FOREIGN KEY status_logs_ibfk_2;
+-- ALTER TABLE shipments DROP FOREIGN KEY shipments_ibfk_1, DROP FOREIGN KEY shipments_ibfk_2;
+-- ALTER TABLE shipments DROP PRIMARY KEY, ADD PRIMARY KEY (shipment_id, created_at)
+--     PARTITION BY RANGE (UNIX_TIMESTAMP(created_at)) (
+--         PARTITION p_history VALUES LESS THAN (UNIX_TIMESTAMP('2026-01-01 00:00:00')),
+--         PARTITION p202601 VALUES LESS THAN (UNIX_TIMESTAMP('2026-02-01 00:00:00')),
+--         PARTITION p202602 VALUES LESS THAN (UNIX_TIMESTAMP('2026-03-01 00:00:00')),
+--         PARTITION p202603 VALUES LESS THAN (UNIX_TIMESTAMP('2026-04-01 00:00:00')),
+--         PARTITION p_future VALUES LESS THAN MAXVALUE
+--     );
+-- ALTER TABLE status_logs DROP PRIMARY KEY, ADD PRIMARY KEY (log_id, update_timestamp)
+--     PARTITION BY RANGE (UNIX_TIMESTAMP(update_timestamp)) (
+--         PARTITION p_history VALUES LESS THAN (UNIX_TIMESTAMP('2026-01-01 00:00:00')),
+--         PARTITION p202601 VALUES LESS THAN (UNIX_TIMESTAMP('2026-02-01 00:00:00')),
+--         PARTITION p202602 VALUES LESS THAN (UNIX_TIMESTAMP('2026-03-01 00:00:00')),
+--         PARTITION p202603 VALUES LESS THAN (UNIX_TIMESTAMP('2026-04-01 00:00:00')),
+--         PARTITION p_future VALUES LESS THAN MAXVALUE
+--     );
 
 -- Reset AUTO_INCREMENT to ensure consistent IDs
 ALTER TABLE locations AUTO_INCREMENT = 1;
@@ -240,6 +346,64 @@ INSERT INTO driver_assignments (driver_id, shipment_id, estimated_delivery, stat
 (1, 14, DATE_SUB(NOW(), INTERVAL 8 DAY), 'completed'),  -- Rajesh Kumar Singh (completed)
 (4, 15, DATE_SUB(NOW(), INTERVAL 3 DAY), 'completed');  -- Sunil Yadav (returned)
 
+-- Build the daily volume rollup for the shipments inserted above
+INSERT INTO shipment_daily_volume (shipment_date, origin_location_id, shipment_count)
+SELECT created_date, origin_location_id, COUNT(*)
+FROM shipments
+GROUP BY created_date, origin_location_id;
+
+-- Build the hub delivery statistics for the delivered shipments inserted above
+INSERT INTO hub_delivery_stats
+    (destination_location_id, delivered_count, sum_total_hours, sum_variance_hours, variance_count)
+SELECT destination_location_id, COUNT(*),
+       SUM(TIMESTAMPDIFF(HOUR, created_at, actual_delivery)),
+       COALESCE(SUM(TIMESTAMPDIFF(HOUR, estimated_delivery, actual_delivery)), 0),
+       COUNT(estimated_delivery)
+FROM shipments
+WHERE actual_delivery IS NOT NULL
+GROUP BY destination_location_id;
+
+-- Bucket bounds (hours) must match DeliveryStats.BUCKET_BOUNDS_HOURS
+INSERT INTO hub_delivery_histogram (destination_location_id, bucket, shipment_count)
+SELECT destination_location_id, bucket, COUNT(*)
+FROM (
+    SELECT destination_location_id,
+        CASE
+        WHEN hours < 1 THEN 0
+        WHEN hours < 2 THEN 1
+        WHEN hours < 4 THEN 2
+        WHEN hours < 6 THEN 3
+        WHEN hours < 8 THEN 4
+        WHEN hours < 12 THEN 5
+        WHEN hours < 16 THEN 6
+        WHEN hours < 20 THEN 7
+        WHEN hours < 24 THEN 8
+        WHEN hours < 30 THEN 9
+        WHEN hours < 36 THEN 10
+        WHEN hours < 42 THEN 11
+        WHEN hours < 48 THEN 12
+        WHEN hours < 60 THEN 13
+        WHEN hours < 72 THEN 14
+        WHEN hours < 84 THEN 15
+        WHEN hours < 96 THEN 16
+        WHEN hours < 120 THEN 17
+        WHEN hours < 144 THEN 18
+        WHEN hours < 168 THEN 19
+        WHEN hours < 216 THEN 20
+        WHEN hours < 264 THEN 21
+        WHEN hours < 336 THEN 22
+        WHEN hours < 504 THEN 23
+        WHEN hours < 720 THEN 24
+        ELSE 25
+        END AS bucket
+    FROM (
+        SELECT destination_location_id, TIMESTAMPDIFF(HOUR, created_at, actual_delivery) AS hours
+        FROM shipments
+        WHERE actual_delivery IS NOT NULL
+    ) d
+) b
+GROUP BY destination_location_id, bucket;
+
 SELECT 'Database setup completed successfully!' as Status;
 
 -- Verification queries to check data integrity